@@ -0,0 +1,50 @@
+package com.example.benchmark;
+
+import com.example.workload.RingRetention;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同大小byte[]的分配吞吐，大小覆盖分配画像（profiles/*.properties）中的区间
+ * transient：分配后立即成为垃圾，只在年轻代回收；
+ * retained：放入128槽的环形保留区，和GCCollectorDemo中medium对象一样存活一段时间，会被复制甚至晋升
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AllocationBenchmark {
+
+    @Param({"64", "1024", "16384", "262144", "1048576"})
+    private int size;
+
+    private RingRetention retention;
+
+    @Setup
+    public void setUp() {
+        retention = new RingRetention(128);
+    }
+
+    @Benchmark
+    public byte[] allocateTransient() {
+        return new byte[size];
+    }
+
+    @Benchmark
+    public byte[] allocateRetained() {
+        return retention.retain(new byte[size]);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 用不同的垃圾收集器分别在独立的JVM中运行全部基准测试，并开启-prof gc
+ * 每个收集器的完整结果写入 jmh-&lt;收集器&gt;.json，所有收集器的汇总写入 jmh-summary.csv，便于调优前后对比
+ * 运行方式：
+ *    mvn install                          (在jvm-tuning目录)
+ *    mvn package                          (在jvm-tuning/benchmarks目录)
+ *    java -Dgcs=Serial,Parallel,G1,Z -Dheap=1g -Dresults.dir=target/jmh -jar target/benchmarks.jar [基准名正则]
+ * 也可以直接使用JMH自带的命令行：java -cp target/benchmarks.jar org.openjdk.jmh.Main -prof gc ...
+ */
+public class CollectorBenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String include = args.length > 0 ? args[0] : "com\\.example\\.benchmark\\..*";
+        String heap = System.getProperty("heap", "1g");
+        Path resultsDir = Paths.get(System.getProperty("results.dir", "target/jmh"));
+        Files.createDirectories(resultsDir);
+
+        List<String> rows = new ArrayList<>();
+        for (String gc : System.getProperty("gcs", "Serial,Parallel,G1").split(",")) {
+            gc = gc.trim();
+            Path json = resultsDir.resolve("jmh-" + gc.toLowerCase(Locale.ROOT) + ".json");
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .jvmArgsAppend(gcFlags(gc, heap))
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(json.toString())
+                    .build();
+            System.out.println("==== " + gc + " GC, 结果: " + json + " ====");
+            Collection<RunResult> results = new Runner(options).run();
+            for (RunResult result : results) {
+                rows.add(csvRow(gc, result));
+            }
+        }
+
+        Path summary = resultsDir.resolve("jmh-summary.csv");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(summary), false, StandardCharsets.UTF_8.name())) {
+            out.println("gc,benchmark,params,score,error,unit,alloc_bytes_per_op,gc_count,gc_time_ms");
+            rows.forEach(out::println);
+        }
+        System.out.println("汇总已写入: " + summary.toAbsolutePath());
+    }
+
+    private static String[] gcFlags(String gc, String heap) {
+        List<String> flags = new ArrayList<>();
+        flags.add("-Xms" + heap);
+        flags.add("-Xmx" + heap);
+        // ZGC在JDK 15之前是实验特性
+        if ("Z".equals(gc) && Runtime.version().feature() < 15) {
+            flags.add("-XX:+UnlockExperimentalVMOptions");
+        }
+        flags.add("-XX:+Use" + gc + "GC");
+        return flags.toArray(new String[0]);
+    }
+
+    private static String csvRow(String gc, RunResult result) {
+        BenchmarkParams params = result.getParams();
+        StringBuilder paramText = new StringBuilder();
+        for (String key : params.getParamsKeys()) {
+            paramText.append(paramText.length() == 0 ? "" : ";").append(key).append('=').append(params.getParam(key));
+        }
+        Result<?> primary = result.getPrimaryResult();
+        return String.format(Locale.ROOT, "%s,%s,%s,%.3f,%.3f,%s,%s,%s,%s", gc, params.getBenchmark(), paramText,
+                primary.getScore(), primary.getScoreError(), primary.getScoreUnit(),
+                secondary(result, "gc.alloc.rate.norm"), secondary(result, "gc.count"), secondary(result, "gc.time"));
+    }
+
+    private static String secondary(RunResult result, String name) {
+        Result<?> value = result.getSecondaryResults().get(name);
+        return value == null ? "" : String.format(Locale.ROOT, "%.3f", value.getScore());
+    }
+}
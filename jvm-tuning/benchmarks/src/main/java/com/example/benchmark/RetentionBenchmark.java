@@ -0,0 +1,59 @@
+package com.example.benchmark;
+
+import com.example.workload.RingRetention;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 固定容量的"保留最近N个对象"：ArrayList.remove(0)与环形缓冲的对比
+ * 每次操作放入同一个预先分配的对象，只测量数据结构本身的开销；remove(0)需要搬移整个数组，耗时随N线性增长
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetentionBenchmark {
+
+    @Param({"128", "1024", "8192", "65536"})
+    private int slots;
+
+    private final byte[] object = new byte[16];
+    private List<byte[]> list;
+    private RingRetention ring;
+
+    @Setup
+    public void setUp() {
+        list = new ArrayList<>(slots + 1);
+        ring = new RingRetention(slots);
+        for (int i = 0; i < slots; i++) {
+            list.add(object);
+            ring.retain(object);
+        }
+    }
+
+    @Benchmark
+    public byte[] arrayListRemoveFirst() {
+        list.add(object);
+        return list.remove(0);
+    }
+
+    @Benchmark
+    public byte[] ringBuffer() {
+        return ring.retain(object);
+    }
+}
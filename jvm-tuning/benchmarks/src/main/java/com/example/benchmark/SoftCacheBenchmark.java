@@ -0,0 +1,64 @@
+package com.example.benchmark;
+
+import com.example.cache.ReferenceValueCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryManagementDemo中软引用缓存的并发读写：100个条目、4个段、4个线程，与示例的配置一致
+ * 值较大时软引用会在GC压力下被回收，get的命中率和put的开销都会受所用收集器影响
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class SoftCacheBenchmark {
+    private static final int MAX_ENTRIES = 100;
+
+    @Param({"1024", "1048576"})
+    private int valueSize;
+
+    private ReferenceValueCache<Integer, byte[]> cache;
+
+    @Setup
+    public void setUp() {
+        cache = new ReferenceValueCache<>(ReferenceValueCache.Strength.SOFT, MAX_ENTRIES, 4);
+        for (int i = 0; i < MAX_ENTRIES; i++) {
+            cache.put(i, new byte[valueSize]);
+        }
+    }
+
+    @Benchmark
+    public byte[] get() {
+        return cache.get(ThreadLocalRandom.current().nextInt(MAX_ENTRIES));
+    }
+
+    // 读多写少：90%读，未命中或10%的情况下写入新值
+    @Benchmark
+    public byte[] readMostly() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int key = random.nextInt(MAX_ENTRIES * 2);
+        byte[] value = cache.get(key);
+        if (value == null || random.nextInt(10) == 0) {
+            value = new byte[valueSize];
+            cache.put(key, value);
+        }
+        return value;
+    }
+}
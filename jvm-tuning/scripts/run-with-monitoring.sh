@@ -6,12 +6,29 @@
 MAIN_CLASS="com.example.MemoryLeakDemo"
 
 # JVM参数配置
+# HeapDumpOnOutOfMemoryError只在进程崩溃时转储；leak.*参数让程序在推算即将OOM时提前转储
 JVM_OPTS="-Xmx256m -Xms256m \
-    -XX:+PrintGCDetails \
-    -XX:+PrintGCDateStamps \
     -XX:+HeapDumpOnOutOfMemoryError \
     -XX:HeapDumpPath=./dump.hprof \
+    -Dleak.dump.dir=./dumps \
+    -Dleak.horizon.seconds=30"
+
+# GC日志旁边同时记录安全点和JIT编译，供StopTheWorldAnalyzer按运行时间对齐分析：
+#    java -cp target/classes com.example.jit.StopTheWorldAnalyzer gc.log
+# JDK 9+用统一日志写进同一个文件；JDK 8用旧参数，安全点只有停顿总时间，编译信息打到标准输出
+JAVA_MAJOR=$(java -version 2>&1 | head -1 | sed -E 's/.*version "(1\.)?([0-9]+).*/\2/')
+if [ "$JAVA_MAJOR" -ge 9 ]; then
+    JVM_OPTS="$JVM_OPTS \
+    -Xlog:gc*,safepoint,jit+compilation=debug:file=./gc.log:uptime,level,tags \
+    -XX:+PrintCodeCache"
+else
+    JVM_OPTS="$JVM_OPTS \
+    -XX:+PrintGCDetails \
+    -XX:+PrintGCDateStamps \
+    -XX:+PrintGCApplicationStoppedTime \
+    -XX:+PrintCompilation \
     -Xloggc:./gc.log"
+fi
 
 # 运行程序
 java $JVM_OPTS -cp target/java-jvm-tuning-1.0-SNAPSHOT.jar $MAIN_CLASS
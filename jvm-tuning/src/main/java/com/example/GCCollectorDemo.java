@@ -1,8 +1,19 @@
 package com.example;
 
+import com.example.cache.BufferPool;
+import com.example.telemetry.GcTelemetry;
+import com.example.telemetry.GcTelemetryReporter;
+import com.example.workload.AllocationProfile;
+import com.example.workload.AllocationWorkload;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 垃圾收集器性能对比Demo
@@ -16,42 +27,106 @@ import java.util.Random;
  *    java -XX:+UseG1GC -Xms512m -Xmx512m -XX:MaxGCPauseMillis=200 -XX:+PrintGCDetails -XX:+PrintGCDateStamps -Xloggc:gc_g1.log GCCollectorDemo
  * 4. ZGC(jdk11+):
  *    java -XX:+UseZGC -Xms512m -Xmx512m -Xlog:gc*=info:file=gc_zgc.log GCCollectorDemo
+ * 分配模式由分配画像决定，可在命令行末尾指定画像名称或文件路径（默认 default）：
+ *    java ... com.example.GCCollectorDemo web-service
+ *    java ... com.example.GCCollectorDemo /path/to/my-profile.properties
+ * 运行期间可通过GC通知实时输出停顿分位数和分配速率（间隔秒数，0表示只在结束时输出一次）：
+ *    java -Dtelemetry.interval.seconds=5 -Dtelemetry.csv=gc_telemetry.csv ... com.example.GCCollectorDemo
+ * 对象默认直接new，也可以从按2的幂分级的缓冲池中取（pooled），或者先后各跑一遍对比GC次数、停顿和吞吐（compare）；
+ * 对比吞吐时应使用不限速的画像（allocation.rate.mb=0）：
+ *    java -Dbuffers=compare -Dbuffers.max.kb=1024 -Dbuffers.shared.mb=64 ... com.example.GCCollectorDemo
  */
 public class GCCollectorDemo {
-    // 模拟对象大小范围
-    private static final int MIN_SIZE = 1024; // 1KB
     private static final int MAX_SIZE = 1024 * 1024; // 1MB
 
-    // 用于存储对象的列表
-    private static List<byte[]> objects = new ArrayList<>();
-    
     // 模拟不同生命周期的对象
     private static List<byte[]> longLivedObjects = new ArrayList<>();
-    
-    private static Random random = new Random();
 
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) throws InterruptedException, IOException {
         System.out.println("Starting GC Collector Demo...");
         System.out.println("VM Options: " + System.getProperty("sun.java.command"));
-        
-        // 创建一些长期存活的对象（老年代对象）
-        createLongLivedObjects();
-        
-        // 模拟应用程序的正常运行
-        for (int i = 0; i < 100; i++) {
-            // 创建一批对象
-            allocateObjects();
-            
-            // 清理一些对象，模拟对象被回收
-            clearSomeObjects();
-            
-            // 每轮暂停一小段时间
-            Thread.sleep(100);
+
+        GcTelemetry telemetry = GcTelemetry.install();
+        long interval = Long.getLong("telemetry.interval.seconds", 0);
+        String csv = System.getProperty("telemetry.csv");
+        Path csvFile = csv == null ? null : Paths.get(csv);
+        try (GcTelemetryReporter reporter = new GcTelemetryReporter(telemetry, System.out, csvFile)) {
+            if (interval > 0) {
+                reporter.start(interval, TimeUnit.SECONDS);
+            }
+
+            // 创建一些长期存活的对象（老年代对象）
+            createLongLivedObjects();
+
+            // 按分配画像模拟应用程序的正常运行
+            AllocationProfile profile = AllocationProfile.load(args.length > 0 ? args[0] : "default");
+            System.out.println("Allocation profile: " + profile);
+            String buffers = System.getProperty("buffers", "alloc");
+            if ("compare".equals(buffers)) {
+                WorkloadRun allocating = runWorkload(profile, null);
+                WorkloadRun pooled = runWorkload(profile, newBufferPool());
+                System.out.println("---- 直接分配 vs 缓冲池 ----");
+                System.out.println("直接分配: " + allocating);
+                System.out.println("缓冲池:   " + pooled);
+            } else {
+                runWorkload(profile, "pooled".equals(buffers) ? newBufferPool() : null);
+            }
+
+            // 结束时输出一次完整快照
+            reporter.report();
+        } finally {
+            telemetry.close();
         }
-        
+
         System.out.println("Demo completed.");
     }
-    
+
+    private static BufferPool newBufferPool() {
+        int maxSize = Integer.getInteger("buffers.max.kb", 1024) * 1024;
+        long sharedBytes = Long.getLong("buffers.shared.mb", 64) * 1024 * 1024;
+        return new BufferPool(1024, maxSize, sharedBytes, 1024 * 1024);
+    }
+
+    // 运行一遍负载，统计期间所有收集器的GC次数和累计耗时
+    private static WorkloadRun runWorkload(AllocationProfile profile, BufferPool pool) throws InterruptedException {
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount -= gc.getCollectionCount();
+            gcMillis -= gc.getCollectionTime();
+        }
+        AllocationWorkload.Result result = new AllocationWorkload(profile, pool).run();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += gc.getCollectionCount();
+            gcMillis += gc.getCollectionTime();
+        }
+        System.out.println("Workload result" + (pool == null ? "" : " (pooled)") + ": " + result);
+        if (pool != null) {
+            System.out.println("Buffer pool: " + pool.stats());
+        }
+        return new WorkloadRun(result, gcCount, gcMillis);
+    }
+
+    private static class WorkloadRun {
+        private final AllocationWorkload.Result result;
+        private final long gcCount;
+        private final long gcMillis;
+
+        WorkloadRun(AllocationWorkload.Result result, long gcCount, long gcMillis) {
+            this.result = result;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = result.getElapsedNanos() / 1e9;
+            return String.format("GC %d 次, GC耗时 %d ms (占 %.1f%%), 吞吐 %.0f 对象/s, %.1f MB/s",
+                    gcCount, gcMillis, seconds == 0 ? 0 : gcMillis / 10.0 / seconds,
+                    seconds == 0 ? 0 : result.getObjectCount() / seconds, result.getAllocationRateMbPerSecond());
+        }
+    }
+
     // 创建长期存活的对象
     private static void createLongLivedObjects() {
         for (int i = 0; i < 10; i++) {
@@ -59,21 +134,4 @@ public class GCCollectorDemo {
         }
         System.out.println("Created long-lived objects: " + longLivedObjects.size());
     }
-    
-    // 分配新对象
-    private static void allocateObjects() {
-        int objectCount = random.nextInt(100) + 50; // 每次分配50-150个对象
-        for (int i = 0; i < objectCount; i++) {
-            int size = random.nextInt(MAX_SIZE - MIN_SIZE) + MIN_SIZE;
-            objects.add(new byte[size]);
-        }
-    }
-    
-    // 清理一些对象
-    private static void clearSomeObjects() {
-        int removeCount = objects.size() / 2;
-        for (int i = 0; i < removeCount; i++) {
-            objects.remove(0);
-        }
-    }
 }
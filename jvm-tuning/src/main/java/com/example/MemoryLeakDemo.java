@@ -1,21 +1,60 @@
 package com.example;
 
+import com.example.cache.SpillingBlockStore;
+import com.example.leak.HeapDumper;
+import com.example.leak.HeapLeakDetector;
+import com.example.nativemem.NativeMemoryMonitor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 
 /**
  * @author laiu
  * 这是一个演示内存泄漏的示例程序
  * 可以用来学习JVM内存分析和调优
+ * 运行期间由HeapLeakDetector跟踪老年代GC后占用的增长趋势，
+ * 推算即将耗尽时提前做堆转储（限流，超出时改为类直方图），不必等到OOM：
+ *    java -Xmx256m -Dleak.dump.dir=./dumps -Dleak.horizon.seconds=30 -cp target/classes com.example.MemoryLeakDemo
+ * 对于确实需要保留的大量数据，spill模式演示另一种做法：只在堆上保留最近的一小段，
+ * 更早的块溢出到内存映射文件，保留的数据可以远大于-Xmx，并与ArrayList对比顺序读和随机读的性能：
+ *    java -Xmx256m -Dspill.hot.mb=32 -Dspill.dir=/tmp -cp target/classes com.example.MemoryLeakDemo spill [总MB] [块KB]
+ * direct模式泄漏的是直接内存：堆几乎不变，只有RSS在涨，由NativeMemoryMonitor按堆外增长告警，
+ * 开启NMT时告警附带各类别的变化，最终以"Direct buffer memory"的OOM结束（不设上限时默认等于-Xmx）：
+ *    java -Xmx256m -XX:MaxDirectMemorySize=512m -XX:NativeMemoryTracking=summary -Dnative.limit.mb=64
+ *         -Dnative.csv=native.csv -cp target/classes com.example.MemoryLeakDemo direct
+ * 容器里常见的-Xms等于-Xmx时，已提交的堆比RSS还大，堆外增长不能用RSS减去堆来算，告警同样应该触发：
+ *    java -Xms256m -Xmx256m -XX:MaxDirectMemorySize=512m -Dnative.limit.mb=64
+ *         -cp target/classes com.example.MemoryLeakDemo direct
  */
 public class MemoryLeakDemo {
     private static List<byte[]> list = new ArrayList<>();
 
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) throws InterruptedException, IOException {
+        if (args.length > 0 && "spill".equals(args[0])) {
+            runSpillStore(args.length > 1 ? Integer.parseInt(args[1]) : 1024,
+                args.length > 2 ? Integer.parseInt(args[2]) : 1024);
+            return;
+        }
+        if (args.length > 0 && "direct".equals(args[0])) {
+            runDirectLeak();
+            return;
+        }
         System.out.println("开始运行内存泄漏演示程序...");
         System.out.println("当前JVM的最大堆内存: " + 
             Runtime.getRuntime().maxMemory() / 1024 / 1024 + "MB");
 
+        // 两次堆转储至少间隔5分钟，最多3个；类直方图至少间隔10秒
+        HeapDumper dumper = new HeapDumper(Paths.get(System.getProperty("leak.dump.dir", ".")),
+            TimeUnit.MINUTES.toMillis(5), 3, TimeUnit.SECONDS.toMillis(10));
+        HeapLeakDetector.install(dumper,
+            Double.parseDouble(System.getProperty("leak.horizon.seconds", "30")), 20);
+
         int count = 0;
         try {
             while (true) {
@@ -34,4 +73,109 @@ public class MemoryLeakDemo {
             throw e;
         }
     }
+
+    // 每次分配1MB直接缓冲区并一直持有，堆上只有ByteBuffer对象本身
+    private static void runDirectLeak() throws InterruptedException, IOException {
+        System.out.println("开始运行直接内存泄漏演示程序...");
+        String csv = System.getProperty("native.csv");
+        List<ByteBuffer> buffers = new ArrayList<>();
+        try (NativeMemoryMonitor monitor = new NativeMemoryMonitor(Long.getLong("native.limit.mb", 64) * 1024 * 1024,
+                null, csv == null ? null : Paths.get(csv))) {
+            monitor.start(1, TimeUnit.SECONDS);
+            try {
+                while (true) {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+                    // 写满每一页，让内存真正驻留，RSS才会上涨
+                    for (int offset = 0; offset < buffer.capacity(); offset += 4096) {
+                        buffer.put(offset, (byte) 1);
+                    }
+                    buffers.add(buffer);
+                    if (buffers.size() % 10 == 0) {
+                        monitor.sample().print(System.out);
+                        Thread.sleep(100); // 添加延迟，方便观察
+                    }
+                }
+            } catch (OutOfMemoryError e) {
+                System.out.println("发生内存溢出错误: " + e.getMessage());
+                System.out.printf("总共泄漏了: %d MB 的直接内存, 告警 %d 次%n", buffers.size(), monitor.getAlarms());
+                throw e;
+            }
+        }
+    }
+
+    // 把totalMb的数据写入溢出存储，堆上只保留spill.hot.mb的窗口，然后与ArrayList对比读取性能
+    private static void runSpillStore(int totalMb, int blockKb) throws IOException {
+        long hotBytes = Long.getLong("spill.hot.mb", 32) * 1024 * 1024;
+        int blocks = (int) ((long) totalMb * 1024 / blockKb);
+        System.out.printf("写入 %d 个 %dKB 的块（共 %dMB），堆上窗口 %dMB，最大堆 %dMB%n",
+            blocks, blockKb, totalMb, hotBytes / 1024 / 1024, Runtime.getRuntime().maxMemory() / 1024 / 1024);
+
+        try (SpillingBlockStore store = new SpillingBlockStore(
+                Paths.get(System.getProperty("spill.dir", System.getProperty("java.io.tmpdir"))),
+                hotBytes, 256 * 1024 * 1024)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < blocks; i++) {
+                store.append(newBlock(i, blockKb * 1024));
+            }
+            System.out.printf("写入耗时 %d ms, %s, 堆已用 %dMB%n",
+                (System.nanoTime() - start) / 1_000_000, store, usedHeapMb());
+            benchmark("溢出存储", store::get, blocks);
+        }
+
+        // ArrayList需要把全部数据放在堆上，放不下时跳过
+        if ((long) totalMb * 1024 * 1024 > Runtime.getRuntime().maxMemory() / 2) {
+            System.out.printf("ArrayList: %dMB超过最大堆的一半，直接保留在堆上会OOM，跳过对比%n", totalMb);
+            return;
+        }
+        List<byte[]> plain = new ArrayList<>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            plain.add(newBlock(i, blockKb * 1024));
+        }
+        System.out.printf("ArrayList: 堆已用 %dMB%n", usedHeapMb());
+        benchmark("ArrayList", i -> ByteBuffer.wrap(plain.get(i)), blocks);
+    }
+
+    private static byte[] newBlock(int index, int size) {
+        byte[] block = new byte[size];
+        for (int offset = 0; offset + 8 <= size; offset += 4096) {
+            ByteBuffer.wrap(block).putLong(offset, (long) index * size + offset);
+        }
+        return block;
+    }
+
+    // 顺序读每个块的全部内容，随机读按块号和块内偏移各取一个long；先预热一轮
+    private static void benchmark(String name, IntFunction<ByteBuffer> reader, int blocks) {
+        for (int round = 0; round < 2; round++) {
+            long checksum = 0;
+            long bytes = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < blocks; i++) {
+                ByteBuffer block = reader.apply(i);
+                int limit = block.limit() - 7;
+                for (int offset = 0; offset < limit; offset += 8) {
+                    checksum += block.getLong(offset);
+                }
+                bytes += block.limit();
+            }
+            long sequentialNanos = System.nanoTime() - start;
+
+            int reads = 1_000_000;
+            Random random = new Random(42);
+            start = System.nanoTime();
+            for (int i = 0; i < reads; i++) {
+                ByteBuffer block = reader.apply(random.nextInt(blocks));
+                checksum += block.getLong(random.nextInt(block.limit() / 8) * 8);
+            }
+            long randomNanos = System.nanoTime() - start;
+            if (round == 1) {
+                System.out.printf("%s: 顺序读 %.0f MB/s, 随机读 %.0f ns/次 (校验和 %d)%n", name,
+                    bytes / 1024.0 / 1024.0 / (sequentialNanos / 1e9), (double) randomNanos / reads, checksum);
+            }
+        }
+    }
+
+    private static long usedHeapMb() {
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024;
+    }
 }
@@ -1,69 +1,116 @@
 package com.example;
 
-import java.lang.ref.SoftReference;
-import java.util.ArrayList;
-import java.util.List;
+import com.example.cache.OffHeapByteCache;
+import com.example.cache.ReferenceValueCache;
+import com.example.nativemem.NativeMemoryMonitor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author laiu
  * 这是一个展示正确内存管理的示例程序
  * 使用软引用和限制集合大小来避免内存泄漏
+ * 运行方式：
+ *    java -Xmx256m -cp target/classes com.example.MemoryManagementDemo [soft|offheap] [线程数]
+ * soft（默认）：软引用缓存，数据在堆上，由GC决定何时回收，可指定并发读写的线程数
+ * offheap：堆外缓存，数据在直接内存中，按字节预算做LRU淘汰，需保证 -XX:MaxDirectMemorySize 不小于预算，
+ *          同时每5秒输出一次RSS与堆外内存分解，可以看到直接内存稳定在预算附近
  */
 public class MemoryManagementDemo {
-    // 使用软引用存储大对象
-    private static List<SoftReference<byte[]>> list = new ArrayList<>();
     // 限制最大缓存对象数量
     private static final int MAX_CACHE_SIZE = 100;
+    // 使用软引用存储大对象，被GC回收的条目通过ReferenceQueue精确统计
+    private static final ReferenceValueCache<Integer, byte[]> softCache =
+        new ReferenceValueCache<>(ReferenceValueCache.Strength.SOFT, MAX_CACHE_SIZE, 4);
     // 使用原子计数器跟踪创建的对象总数
     private static AtomicInteger totalCreated = new AtomicInteger(0);
-    // 使用原子计数器跟踪被GC回收的对象数
-    private static AtomicInteger totalReclaimed = new AtomicInteger(0);
 
-    public static void main(String[] args) throws InterruptedException {
-        System.out.println("开始运行内存管理示例程序...");
+    public static void main(String[] args) throws InterruptedException, IOException {
+        String mode = args.length > 0 ? args[0] : "soft";
+        System.out.println("开始运行内存管理示例程序, 缓存模式: " + mode);
         System.out.println("当前JVM的最大堆内存: " + 
             Runtime.getRuntime().maxMemory() / 1024 / 1024 + "MB");
-        
+
+        if ("offheap".equals(mode)) {
+            runOffHeapCache();
+        } else {
+            runSoftReferenceCache(args.length > 1 ? Integer.parseInt(args[1]) : 1);
+        }
+    }
+
+    // 软引用缓存：缓存的数据都在堆上，多个线程并发读写
+    private static void runSoftReferenceCache(int threads) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.execute(MemoryManagementDemo::softCacheWorker);
+        }
+        workers.shutdown();
+        // 主线程每秒输出一次状态，直到工作线程全部退出
+        while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+            System.out.printf("状态报告：已创建 %d MB, %s, 堆已用 %d MB%n",
+                totalCreated.get(), softCache.stats(), usedHeapMb());
+        }
+    }
+
+    private static void softCacheWorker() {
         try {
             while (true) {
-                // 创建1MB的字节数组
+                // 创建1MB的字节数组，以软引用的形式放入缓存
                 byte[] data = new byte[1024 * 1024];
-                totalCreated.incrementAndGet();
-                
-                // 使用软引用包装对象
-                SoftReference<byte[]> ref = new SoftReference<>(data);
-                
-                // 限制集合大小
-                if (list.size() >= MAX_CACHE_SIZE) {
-                    list.remove(0);
-                }
-                list.add(ref);
-                
-                // 检查有多少对象被回收了
-                int reclaimed = 0;
-                for (SoftReference<byte[]> item : list) {
-                    if (item.get() == null) {
-                        reclaimed++;
-                    }
-                }
-                totalReclaimed.addAndGet(reclaimed);
-                
-                // 每10MB输出一次状态
-                if (totalCreated.get() % 10 == 0) {
-                    System.out.printf("状态报告：已创建 %d MB, 已回收 %d MB, 当前缓存大小 %d%n",
-                        totalCreated.get(), totalReclaimed.get(), list.size());
+                int id = totalCreated.incrementAndGet();
+                softCache.put(id, data);
+
+                // 随机读取最近1.5倍缓存容量范围内的数据，统计命中率
+                int lookup = id - ThreadLocalRandom.current().nextInt(MAX_CACHE_SIZE * 3 / 2);
+                softCache.get(lookup);
+
+                if (id % 10 == 0) {
                     Thread.sleep(100); // 添加延迟，方便观察
                 }
-                
-                // 清理已被回收的引用
-                list.removeIf(item -> item.get() == null);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (OutOfMemoryError e) {
             System.out.println("发生内存溢出错误！");
-            System.out.printf("总共创建了: %d MB的内存，回收了: %d MB%n",
-                totalCreated.get(), totalReclaimed.get());
+            System.out.printf("总共创建了: %d MB的内存，%s%n", totalCreated.get(), softCache.stats());
             throw e;
         }
     }
+
+    // 堆外缓存：与软引用缓存相同的容量（MAX_CACHE_SIZE个1MB块），数据放在直接内存中
+    private static void runOffHeapCache() throws InterruptedException, IOException {
+        OffHeapByteCache<Integer> cache = new OffHeapByteCache<>(MAX_CACHE_SIZE * 1024L * 1024L);
+        // 缓存预算之外再多出一半就告警
+        new NativeMemoryMonitor(MAX_CACHE_SIZE * 1024L * 1024L * 3 / 2, System.out, null).start(5, TimeUnit.SECONDS);
+        // 读取复用同一个缓冲区，命中时不在堆上分配
+        ByteBuffer readBuffer = ByteBuffer.allocate(1024 * 1024);
+        while (true) {
+            // 创建1MB的字节数组，写入缓存后堆上的副本即成为垃圾
+            byte[] data = new byte[1024 * 1024];
+            int id = totalCreated.incrementAndGet();
+            cache.put(id, data);
+
+            // 随机读取最近1.5倍缓存容量范围内的数据，统计命中率
+            int lookup = id - ThreadLocalRandom.current().nextInt(MAX_CACHE_SIZE * 3 / 2);
+            readBuffer.clear();
+            cache.get(lookup, readBuffer);
+
+            if (totalCreated.get() % 10 == 0) {
+                System.out.printf("状态报告：已创建 %d MB, %s, 堆已用 %d MB%n",
+                    totalCreated.get(), cache.stats(), usedHeapMb());
+                Thread.sleep(100); // 添加延迟，方便观察
+            }
+        }
+    }
+
+    private static long usedHeapMb() {
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) / 1024 / 1024;
+    }
 }
@@ -0,0 +1,190 @@
+package com.example.agent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * 分配采样agent，默认用JFR的TLAB分配事件记录真实的分配位置（JfrAllocationRecorder），用法：
+ *    mvn package
+ *    java -javaagent:target/java-jvm-tuning-1.0-SNAPSHOT.jar=interval=512k,out=alloc.collapsed \
+ *         -cp target/classes com.example.GCCollectorDemo
+ *    flamegraph.pl --countname=bytes alloc.collapsed > alloc.svg
+ * 参数（逗号分隔）：
+ *    mode      jfr（默认）或poll；poll按线程分配量轮询抓栈（AllocationSampler），
+ *              栈是轮询时刻的位置而不是分配位置，每次抓栈都要进安全点，只在没有JFR的JVM上使用
+ *    flush     jfr模式下轮换录制、汇总事件的间隔（秒），默认5
+ *    interval  每个线程每分配多少字节采样一次，可带k/m后缀，默认512k
+ *    period    poll模式下采样线程的轮询间隔（毫秒），默认10
+ *    depth     调用栈最大深度，默认64（jfr模式下还受-XX:FlightRecorderOptions=stackdepth限制，默认64）
+ *    capacity  采样缓冲区容量，默认65536
+ *    out       退出时写出的collapsed文件，默认alloc-<pid>.collapsed
+ *    threads   带上该参数时以线程名作为火焰图的根
+ *    top       退出时在控制台输出分配最多的栈数量，默认10
+ * 也可以用Attach API在运行中加载（agentmain），效果相同
+ */
+public class AllocationAgent {
+    private static boolean started;
+
+    public static void premain(String args, Instrumentation instrumentation) {
+        start(args);
+    }
+
+    public static void agentmain(String args, Instrumentation instrumentation) {
+        start(args);
+    }
+
+    private static synchronized void start(String args) {
+        if (started) {
+            System.out.println("分配采样agent已在运行，忽略重复加载");
+            return;
+        }
+        String mode = "jfr";
+        long flush = 5;
+        long interval = 512 * 1024;
+        long period = 10;
+        int depth = 64;
+        int capacity = 65536;
+        int top = 10;
+        boolean threads = false;
+        Path out = Paths.get("alloc-" + ProcessHandle.current().pid() + ".collapsed");
+        if (args != null && !args.isEmpty()) {
+            for (String option : args.split(",")) {
+                int eq = option.indexOf('=');
+                String key = eq < 0 ? option.trim() : option.substring(0, eq).trim();
+                String value = eq < 0 ? "" : option.substring(eq + 1).trim();
+                switch (key) {
+                    case "mode":
+                        mode = value;
+                        break;
+                    case "flush":
+                        flush = Long.parseLong(value);
+                        break;
+                    case "interval":
+                        interval = parseBytes(value);
+                        break;
+                    case "period":
+                        period = Long.parseLong(value);
+                        break;
+                    case "depth":
+                        depth = Integer.parseInt(value);
+                        break;
+                    case "capacity":
+                        capacity = Integer.parseInt(value);
+                        break;
+                    case "out":
+                        out = Paths.get(value);
+                        break;
+                    case "threads":
+                        threads = true;
+                        break;
+                    case "top":
+                        top = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知的agent参数: " + option);
+                }
+            }
+        }
+
+        CollapsedStacks stacks = new CollapsedStacks(threads);
+        if ("jfr".equals(mode)) {
+            startJfr(stacks, interval, depth, flush, capacity, out, top);
+        } else if ("poll".equals(mode)) {
+            startPoll(stacks, interval, period, depth, capacity, out, top);
+        } else {
+            throw new IllegalArgumentException("未知的采样模式: " + mode);
+        }
+        started = true;
+    }
+
+    private static void startJfr(CollapsedStacks stacks, long interval, int depth, long flush, int capacity,
+                                 Path out, int top) {
+        AllocationSampleBuffer buffer = new AllocationSampleBuffer(capacity);
+        JfrAllocationRecorder recorder;
+        try {
+            recorder = new JfrAllocationRecorder(buffer, interval, depth, flush).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("启动JFR分配录制失败", e);
+        }
+        startDrainer(buffer, stacks);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                recorder.stop();
+            } catch (IOException | RuntimeException e) {
+                // JFR自己的关闭钩子可能先停掉了录制，最后一段丢失，之前汇总的仍然写出
+                System.out.println("汇总最后一段分配事件失败: " + e);
+            }
+            buffer.drain(stacks::add);
+            try {
+                stacks.write(out);
+                System.out.printf("分配位置已写入 %s（%d 个JFR分配事件，丢弃 %d 次采样）%n", out.toAbsolutePath(),
+                        recorder.getEvents(), buffer.getDropped());
+            } catch (IOException e) {
+                System.out.println("写入分配采样失败: " + e);
+            }
+            stacks.printTop(System.out, top, 4);
+        }, "allocation-recorder-shutdown"));
+        System.out.printf("分配采样agent已启动：JFR分配事件，每 %d KB 采样一次，每 %d 秒汇总一次，输出 %s%n",
+                interval / 1024, flush, out.toAbsolutePath());
+    }
+
+    private static void startPoll(CollapsedStacks stacks, long interval, long period, int depth, int capacity,
+                                  Path out, int top) {
+        AllocationSampleBuffer buffer = new AllocationSampleBuffer(capacity);
+        AllocationSampler sampler = new AllocationSampler(interval, period, depth, buffer).start();
+        startDrainer(buffer, stacks);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            sampler.stop();
+            buffer.drain(stacks::add);
+            try {
+                stacks.write(out);
+                System.out.printf("轮询时刻的线程栈已写入 %s，不是分配位置（丢弃 %d 次采样，%d/%d 次采样时线程在等待，"
+                                + "已去掉等待帧）%n", out.toAbsolutePath(), buffer.getDropped(),
+                        sampler.getBlockedSamples(), sampler.getSamplesTaken());
+            } catch (IOException e) {
+                System.out.println("写入分配采样失败: " + e);
+            }
+            stacks.printTop(System.out, top, 4);
+        }, "allocation-sampler-shutdown"));
+        System.out.printf("分配采样agent已启动：轮询模式，每 %d KB 抓一次线程栈（需要安全点），轮询间隔 %d ms，输出 %s%n",
+                interval / 1024, period, out.toAbsolutePath());
+    }
+
+    // 每秒把缓冲区里的采样汇总一次，缓冲区只需要容纳一秒的采样
+    private static void startDrainer(AllocationSampleBuffer buffer, CollapsedStacks stacks) {
+        Thread drainer = new Thread(() -> {
+            while (true) {
+                buffer.drain(stacks::add);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "allocation-sampler-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    static long parseBytes(String value) {
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (text.endsWith("k")) {
+            unit = 1024;
+        } else if (text.endsWith("m")) {
+            unit = 1024 * 1024;
+        }
+        if (unit > 1) {
+            text = text.substring(0, text.length() - 1);
+        }
+        long bytes = Long.parseLong(text) * unit;
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("采样间隔必须大于0: " + value);
+        }
+        return bytes;
+    }
+}
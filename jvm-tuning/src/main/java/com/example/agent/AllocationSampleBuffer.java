@@ -0,0 +1,100 @@
+package com.example.agent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 有界无锁环形缓冲区，多个生产者、一个消费者
+ * 生产者CAS推进写游标占位后再发布元素，消费者看到槽位为空说明生产者还没写完，下次再取。
+ * 满了直接丢弃并计数，采样线程永远不会因为消费者跟不上而阻塞
+ */
+public class AllocationSampleBuffer {
+    private final AtomicReferenceArray<Sample> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // 只有消费者推进，先清空槽位再推进，生产者据此判断是否已满
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity 向上取整为2的幂
+     */
+    public AllocationSampleBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public boolean offer(Sample sample) {
+        while (true) {
+            long current = tail.get();
+            // 读到的head可能偏旧，只会更早判满，不会覆盖未消费的槽位
+            if (current - head.get() > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (tail.compareAndSet(current, current + 1)) {
+                slots.lazySet((int) (current & mask), sample);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 取出所有已发布的元素；加锁保证定期汇总和退出时的汇总不会同时消费
+     */
+    public synchronized int drain(Consumer<Sample> consumer) {
+        int drained = 0;
+        while (true) {
+            long current = head.get();
+            int index = (int) (current & mask);
+            Sample sample = slots.get(index);
+            // 写游标已推进但元素还没发布，下次再取
+            if (sample == null) {
+                return drained;
+            }
+            slots.set(index, null);
+            head.set(current + 1);
+            consumer.accept(sample);
+            drained++;
+        }
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 一次采样：线程名、采样时的调用栈（栈顶在前），以及归到这个栈上的分配字节数
+     */
+    public static class Sample {
+        private final String thread;
+        private final StackTraceElement[] stack;
+        private final long bytes;
+        private final int count;
+
+        public Sample(String thread, StackTraceElement[] stack, long bytes, int count) {
+            this.thread = thread;
+            this.stack = stack;
+            this.bytes = bytes;
+            this.count = count;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public StackTraceElement[] getStack() {
+            return stack;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
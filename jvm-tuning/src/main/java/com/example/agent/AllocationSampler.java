@@ -0,0 +1,165 @@
+package com.example.agent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按字节数间隔轮询线程的分配量，把分配记到线程在轮询时刻的调用栈上（agent的mode=poll）
+ * 后台线程定期读取各线程的累计分配字节数（ThreadMXBean.getThreadAllocatedBytes），
+ * 某个线程自上次轮询以来分配满intervalBytes时，抓取它当前的调用栈，把这段分配记到这个栈上。
+ * 这不是分配位置分析：栈是轮询时刻线程恰好所在的位置，分配早已发生，
+ * 分配集中的方法和耗时长的方法交替执行时，字节几乎都会记到耗时长的一方；
+ * 而且带栈深度的getThreadInfo要进入安全点，栈只会停在安全点轮询处，每次轮询都是一次全局停顿（ThreadDump），
+ * 轮询间隔10ms时每秒几十次。结果只能看作"分配多的线程大致在做什么"，
+ * 要看真实的分配位置用基于JFR分配事件的JfrAllocationRecorder（默认的mode=jfr）。
+ * 线程此刻若处于等待/阻塞状态，去掉栈顶的park、sleep、wait等帧，记到发起等待的方法上
+ */
+public class AllocationSampler implements Runnable {
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final long intervalBytes;
+    private final long periodMillis;
+    private final int maxDepth;
+    private final AllocationSampleBuffer buffer;
+    private volatile boolean running = true;
+    private volatile Thread thread;
+
+    // 每个线程未被采样的分配：{上次读到的累计值, 累积的未采样字节}
+    private Map<Long, long[]> pending = new HashMap<>();
+    private long samplesTaken;
+    private long blockedSamples;
+
+    public AllocationSampler(long intervalBytes, long periodMillis, int maxDepth, AllocationSampleBuffer buffer) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("当前JVM不支持按线程统计分配字节数");
+        }
+        this.threadBean = (com.sun.management.ThreadMXBean) bean;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        this.intervalBytes = intervalBytes;
+        this.periodMillis = periodMillis;
+        this.maxDepth = maxDepth;
+        this.buffer = buffer;
+    }
+
+    public AllocationSampler start() {
+        Thread sampler = new Thread(this, "allocation-sampler");
+        sampler.setDaemon(true);
+        thread = sampler;
+        sampler.start();
+        return this;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            sampleOnce();
+            try {
+                Thread.sleep(periodMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    void sampleOnce() {
+        long self = Thread.currentThread().getId();
+        long[] ids = threadBean.getAllThreadIds();
+        long[] allocated = threadBean.getThreadAllocatedBytes(ids);
+        Map<Long, long[]> current = new HashMap<>(ids.length * 2);
+        long[] due = new long[ids.length];
+        long[] dueBytes = new long[ids.length];
+        int dueCount = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] < 0 || ids[i] == self) {
+                continue;
+            }
+            long[] state = pending.get(ids[i]);
+            // 第一次看到的线程从当前值算起，不把agent启动前的分配算进来
+            if (state == null) {
+                state = new long[]{allocated[i], 0};
+            } else {
+                state[1] += allocated[i] - state[0];
+                state[0] = allocated[i];
+            }
+            if (state[1] >= intervalBytes) {
+                due[dueCount] = ids[i];
+                // 按整数个间隔记账，余数留到下次
+                dueBytes[dueCount] = state[1] - state[1] % intervalBytes;
+                state[1] %= intervalBytes;
+                dueCount++;
+            }
+            current.put(ids[i], state);
+        }
+        pending = current;
+        if (dueCount == 0) {
+            return;
+        }
+        long[] targets = new long[dueCount];
+        System.arraycopy(due, 0, targets, 0, dueCount);
+        // 一次调用抓取所有到期线程的栈，只需要一次安全点
+        ThreadInfo[] infos = threadBean.getThreadInfo(targets, maxDepth);
+        for (int i = 0; i < dueCount; i++) {
+            if (infos[i] == null) {
+                continue;
+            }
+            StackTraceElement[] stack = infos[i].getStackTrace();
+            if (infos[i].getThreadState() != Thread.State.RUNNABLE) {
+                stack = trimBlocking(stack);
+                blockedSamples++;
+            }
+            buffer.offer(new AllocationSampleBuffer.Sample(infos[i].getThreadName(), stack,
+                    dueBytes[i], (int) (dueBytes[i] / intervalBytes)));
+            samplesTaken++;
+        }
+    }
+
+    // 去掉栈顶属于等待机制的帧，至少保留一帧
+    static StackTraceElement[] trimBlocking(StackTraceElement[] stack) {
+        int start = 0;
+        while (start < stack.length - 1 && isBlockingFrame(stack[start])) {
+            start++;
+        }
+        if (start == 0) {
+            return stack;
+        }
+        StackTraceElement[] trimmed = new StackTraceElement[stack.length - start];
+        System.arraycopy(stack, start, trimmed, 0, trimmed.length);
+        return trimmed;
+    }
+
+    private static boolean isBlockingFrame(StackTraceElement frame) {
+        String className = frame.getClassName();
+        return className.startsWith("jdk.internal.misc.Unsafe")
+                || className.startsWith("sun.misc.Unsafe")
+                || className.startsWith("java.util.concurrent.locks.")
+                || "java.lang.Object".equals(className) && "wait".equals(frame.getMethodName())
+                || "java.lang.Thread".equals(className) && "sleep".equals(frame.getMethodName());
+    }
+
+    public long getSamplesTaken() {
+        return samplesTaken;
+    }
+
+    /**
+     * 采样时线程处于等待/阻塞状态、栈被修剪过的采样数
+     */
+    public long getBlockedSamples() {
+        return blockedSamples;
+    }
+
+    public void stop() {
+        running = false;
+        Thread sampler = thread;
+        if (sampler != null) {
+            sampler.interrupt();
+            try {
+                sampler.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.agent;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按调用栈汇总分配字节数，输出火焰图工具（flamegraph.pl、speedscope等）能直接读取的collapsed格式：
+ * 每行一个栈，从根到叶用分号连接，最后是空格和权重（这里是字节数）
+ */
+public class CollapsedStacks {
+    // 不同栈的上限，超出后新出现的栈计入"<其他>"
+    private static final int MAX_STACKS = 50_000;
+    private static final String OTHER = "<其他>";
+
+    private final boolean threadRoot;
+    // 值为{字节数, 采样数}
+    private final Map<String, long[]> stacks = new HashMap<>();
+    private long totalBytes;
+    private long totalSamples;
+
+    /**
+     * @param threadRoot 为true时把线程名作为根帧，按线程分开
+     */
+    public CollapsedStacks(boolean threadRoot) {
+        this.threadRoot = threadRoot;
+    }
+
+    public synchronized void add(AllocationSampleBuffer.Sample sample) {
+        StringBuilder key = new StringBuilder();
+        if (threadRoot) {
+            key.append(sample.getThread().replace(';', '_').replace(' ', '_'));
+        }
+        StackTraceElement[] stack = sample.getStack();
+        for (int i = stack.length - 1; i >= 0; i--) {
+            if (key.length() > 0) {
+                key.append(';');
+            }
+            key.append(stack[i].getClassName()).append('.').append(stack[i].getMethodName());
+        }
+        if (key.length() == 0) {
+            key.append("<无栈>");
+        }
+        String collapsed = key.toString();
+        long[] counts = stacks.get(collapsed);
+        if (counts == null) {
+            counts = stacks.computeIfAbsent(stacks.size() < MAX_STACKS ? collapsed : OTHER, k -> new long[2]);
+        }
+        counts[0] += sample.getBytes();
+        counts[1] += sample.getCount();
+        totalBytes += sample.getBytes();
+        totalSamples += sample.getCount();
+    }
+
+    public synchronized void write(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, long[]> entry : sorted()) {
+                writer.write(entry.getKey());
+                writer.write(' ');
+                writer.write(Long.toString(entry.getValue()[0]));
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * 输出分配最多的栈，每个栈只显示叶子端的几帧
+     */
+    public synchronized void printTop(PrintStream out, int top, int frames) {
+        out.printf("采样分配 %d MB, %d 次采样, %d 个不同的栈%n", totalBytes / 1024 / 1024, totalSamples, stacks.size());
+        List<Map.Entry<String, long[]>> entries = sorted();
+        for (int i = 0; i < Math.min(top, entries.size()); i++) {
+            Map.Entry<String, long[]> entry = entries.get(i);
+            String[] parts = entry.getKey().split(";");
+            StringBuilder leaf = new StringBuilder();
+            for (int j = parts.length - 1; j >= Math.max(0, parts.length - frames); j--) {
+                leaf.append(j == parts.length - 1 ? "" : " <- ").append(parts[j]);
+            }
+            out.printf("%10d KB %5.1f%%  %s%n", entry.getValue()[0] / 1024,
+                    totalBytes == 0 ? 0 : entry.getValue()[0] * 100.0 / totalBytes, leaf);
+        }
+    }
+
+    private List<Map.Entry<String, long[]>> sorted() {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(stacks.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        return entries;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getTotalSamples() {
+        return totalSamples;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.agent;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于JFR的分配采样，记录真实的分配位置
+ * 开启jdk.ObjectAllocationInNewTLAB和jdk.ObjectAllocationOutsideTLAB（JDK 11起可用）并带上调用栈：
+ * 线程的TLAB用完、申请新TLAB时记一次，栈就是触发这次申请的new所在的位置，按新TLAB的大小计权重；
+ * 大对象直接在TLAB外分配，按对象大小计权重。两者合起来按字节数近似各分配位置的占比。
+ * 事件在线程分配时就地写入JFR的线程本地缓冲区，不需要安全点。
+ * 和轮询模式一样按线程累计字节数，每满intervalBytes把这段分配记到当时事件的栈上，作为一次采样放入缓冲区，
+ * 不足一个间隔的部分留到下一个事件。
+ * 每隔flushSeconds轮换一次录制：先启动新录制，再停止旧录制，解析它停止时写出的临时文件，
+ * 以新录制启动后的时刻为界，旧录制只取之前的事件、新录制只取之后的，两次录制重叠的部分不会重复计入。
+ * 进程退出时JFR自己的关闭钩子可能先停止录制并清理仓库，所以每个录制都设置了destination，由停止它的一方写出
+ */
+public class JfrAllocationRecorder implements Runnable {
+    private static final String IN_NEW_TLAB = "jdk.ObjectAllocationInNewTLAB";
+    private static final String OUTSIDE_TLAB = "jdk.ObjectAllocationOutsideTLAB";
+
+    private final AllocationSampleBuffer buffer;
+    private final long intervalBytes;
+    private final int maxDepth;
+    private final long flushMillis;
+    private final Object lock = new Object();
+    private volatile boolean running = true;
+    private volatile Thread thread;
+
+    // 以下状态在lock内读写
+    private Recording recording;
+    private Path recordingFile;
+    private Instant recordingFrom = Instant.MIN;
+    private long events;
+    private boolean stopped;
+    // 每个线程（按线程id）还不足一个采样间隔的字节数，只保留上一段录制里有分配的线程
+    private Map<Long, Long> pendingBytes = new HashMap<>();
+
+    public JfrAllocationRecorder(AllocationSampleBuffer buffer, long intervalBytes, int maxDepth, long flushSeconds) {
+        if (!FlightRecorder.isAvailable()) {
+            throw new IllegalStateException("当前JVM不支持JFR");
+        }
+        this.buffer = buffer;
+        this.intervalBytes = intervalBytes;
+        this.maxDepth = maxDepth;
+        this.flushMillis = flushSeconds * 1000;
+    }
+
+    public JfrAllocationRecorder start() throws IOException {
+        synchronized (lock) {
+            startRecording();
+        }
+        Thread flusher = new Thread(this, "allocation-recorder");
+        flusher.setDaemon(true);
+        thread = flusher;
+        flusher.start();
+        return this;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(flushMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                rotate(true);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("分配采样录制轮换失败: " + e);
+            }
+        }
+    }
+
+    /**
+     * 停止录制并汇总最后一段，可重复调用
+     */
+    public void stop() throws IOException {
+        running = false;
+        Thread flusher = thread;
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                // 等正在进行的轮换汇总完
+                flusher.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        rotate(false);
+    }
+
+    public long getEvents() {
+        synchronized (lock) {
+            return events;
+        }
+    }
+
+    private void rotate(boolean restart) throws IOException {
+        Recording previous;
+        Path file;
+        Instant from;
+        Instant until;
+        Map<Long, Long> pending;
+        synchronized (lock) {
+            if (stopped) {
+                return;
+            }
+            pending = pendingBytes;
+            previous = recording;
+            file = recordingFile;
+            from = recordingFrom;
+            if (restart) {
+                startRecording();
+                until = Instant.now();
+                recordingFrom = until;
+            } else {
+                recording = null;
+                until = Instant.MAX;
+                stopped = true;
+            }
+        }
+        try {
+            if (previous.getState() == RecordingState.RUNNING) {
+                previous.stop();
+            } else {
+                awaitWritten(file);
+            }
+            previous.close();
+            long count = 0;
+            Map<Long, Long> next = new HashMap<>();
+            try (RecordingFile in = new RecordingFile(file)) {
+                while (in.hasMoreEvents()) {
+                    RecordedEvent event = in.readEvent();
+                    Instant time = event.getStartTime();
+                    if (time.isBefore(from) || !time.isBefore(until)) {
+                        continue;
+                    }
+                    long bytes = allocatedBytes(event);
+                    if (bytes < 0) {
+                        continue;
+                    }
+                    count++;
+                    RecordedThread thread = event.getThread();
+                    long threadId = thread == null ? -1 : thread.getJavaThreadId();
+                    long accumulated = next.getOrDefault(threadId, pending.getOrDefault(threadId, 0L)) + bytes;
+                    if (accumulated >= intervalBytes) {
+                        long due = accumulated - accumulated % intervalBytes;
+                        accumulated %= intervalBytes;
+                        buffer.offer(toSample(event, thread, due));
+                    }
+                    next.put(threadId, accumulated);
+                }
+            }
+            synchronized (lock) {
+                events += count;
+                pendingBytes = next;
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void startRecording() throws IOException {
+        Path file = Files.createTempFile("alloc-", ".jfr");
+        Recording next = new Recording();
+        next.setName("allocation-agent");
+        next.enable(IN_NEW_TLAB).withStackTrace();
+        next.enable(OUTSIDE_TLAB).withStackTrace();
+        next.setDestination(file);
+        next.start();
+        recording = next;
+        recordingFile = file;
+    }
+
+    // 录制已被JFR的关闭钩子停止，等它把文件写完：大小不再变化为止，最多等3秒
+    private static void awaitWritten(Path file) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        long size = -1;
+        while (System.nanoTime() < deadline) {
+            long current = Files.size(file);
+            if (current > 0 && current == size) {
+                return;
+            }
+            size = current;
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 事件代表的分配字节数，不是分配事件时返回-1
+    private static long allocatedBytes(RecordedEvent event) {
+        String type = event.getEventType().getName();
+        if (IN_NEW_TLAB.equals(type)) {
+            return event.getLong("tlabSize");
+        }
+        if (OUTSIDE_TLAB.equals(type)) {
+            return event.getLong("allocationSize");
+        }
+        return -1;
+    }
+
+    private AllocationSampleBuffer.Sample toSample(RecordedEvent event, RecordedThread thread, long bytes) {
+        RecordedStackTrace trace = event.getStackTrace();
+        List<RecordedFrame> frames = trace == null ? List.of() : trace.getFrames();
+        int depth = Math.min(maxDepth, frames.size());
+        StackTraceElement[] stack = new StackTraceElement[depth];
+        for (int i = 0; i < depth; i++) {
+            RecordedFrame frame = frames.get(i);
+            stack[i] = new StackTraceElement(frame.getMethod().getType().getName(), frame.getMethod().getName(),
+                    null, frame.getLineNumber());
+        }
+        String name = thread == null || thread.getJavaName() == null ? "<未知线程>" : thread.getJavaName();
+        return new AllocationSampleBuffer.Sample(name, stack, bytes, (int) (bytes / intervalBytes));
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按2的幂分级的byte[]缓冲池
+ * 申请的大小向上取整到最近的2的幂，每一级先查线程本地的小栈，再查所有线程共享的槽位数组；
+ * 共享槽位用CAS取放，不加锁。每一级在本地和共享两层各有字节预算，超出预算归还的缓冲直接丢给GC，
+ * 池本身占用的内存有上限。超过最大级别的申请不入池，直接分配。
+ * 取出的缓冲不清零，调用方不能假设内容为0
+ */
+public class BufferPool {
+    private final int minShift;
+    private final int maxShift;
+    private final AtomicReferenceArray<byte[]>[] shared;
+    private final int[] localSlots;
+    private final ThreadLocal<LocalCache> local;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder oversized = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param minSize            最小级别，更小的申请也按这个大小分配
+     * @param maxSize            最大级别，更大的申请不入池
+     * @param sharedBytes        共享层的总字节预算，平均分给各级
+     * @param localBytesPerLevel 每个线程在每一级本地缓存的字节预算，每级至少缓存1个
+     */
+    public BufferPool(int minSize, int maxSize, long sharedBytes, long localBytesPerLevel) {
+        if (minSize <= 0 || maxSize < minSize || maxSize > 1 << 30 || sharedBytes < 0 || localBytesPerLevel < 0) {
+            throw new IllegalArgumentException("非法的缓冲池参数");
+        }
+        this.minShift = shift(minSize);
+        this.maxShift = shift(maxSize);
+        int levels = maxShift - minShift + 1;
+        // 泛型数组只能按通配符类型创建，元素都是AtomicReferenceArray<byte[]>
+        @SuppressWarnings("unchecked")
+        AtomicReferenceArray<byte[]>[] shared = (AtomicReferenceArray<byte[]>[]) new AtomicReferenceArray<?>[levels];
+        this.shared = shared;
+        this.localSlots = new int[levels];
+        for (int i = 0; i < levels; i++) {
+            long size = 1L << (minShift + i);
+            shared[i] = new AtomicReferenceArray<>((int) Math.min(1024, sharedBytes / levels / size));
+            localSlots[i] = (int) Math.max(1, Math.min(64, localBytesPerLevel / size));
+        }
+        this.local = ThreadLocal.withInitial(() -> new LocalCache(localSlots));
+    }
+
+    // 不小于size的最小2的幂的指数
+    private static int shift(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * 取一个长度不小于size的缓冲，长度为2的幂（超过最大级别时正好为size）
+     */
+    public byte[] acquire(int size) {
+        int level = shift(size) - minShift;
+        if (level < 0) {
+            level = 0;
+        } else if (level >= shared.length) {
+            oversized.increment();
+            return new byte[size];
+        }
+        byte[] buffer = local.get().pop(level);
+        if (buffer != null) {
+            localHits.increment();
+            return buffer;
+        }
+        AtomicReferenceArray<byte[]> slots = shared[level];
+        int length = slots.length();
+        if (length > 0) {
+            // 从随机位置开始扫描，减少多个线程争抢同一个槽位
+            int start = ThreadLocalRandom.current().nextInt(length);
+            for (int i = 0; i < length; i++) {
+                int index = start + i < length ? start + i : start + i - length;
+                buffer = slots.get(index);
+                if (buffer != null && slots.compareAndSet(index, buffer, null)) {
+                    sharedHits.increment();
+                    return buffer;
+                }
+            }
+        }
+        misses.increment();
+        return new byte[1 << (minShift + level)];
+    }
+
+    /**
+     * 归还缓冲；不是本池级别大小的缓冲会被忽略。归还后调用方不能再使用它
+     */
+    public void release(byte[] buffer) {
+        int length = buffer.length;
+        if (Integer.bitCount(length) != 1) {
+            return;
+        }
+        int level = Integer.numberOfTrailingZeros(length) - minShift;
+        if (level < 0 || level >= shared.length) {
+            return;
+        }
+        if (local.get().push(level, buffer)) {
+            return;
+        }
+        AtomicReferenceArray<byte[]> slots = shared[level];
+        int size = slots.length();
+        if (size > 0) {
+            int start = ThreadLocalRandom.current().nextInt(size);
+            for (int i = 0; i < size; i++) {
+                int index = start + i < size ? start + i : start + i - size;
+                if (slots.get(index) == null && slots.compareAndSet(index, null, buffer)) {
+                    return;
+                }
+            }
+        }
+        dropped.increment();
+    }
+
+    public Stats stats() {
+        return new Stats(localHits.sum(), sharedHits.sum(), misses.sum(), oversized.sum(), dropped.sum());
+    }
+
+    /**
+     * 线程本地的每级小栈，只由所属线程访问
+     */
+    private static class LocalCache {
+        private final byte[][][] stacks;
+        private final int[] sizes;
+
+        LocalCache(int[] slots) {
+            stacks = new byte[slots.length][][];
+            for (int i = 0; i < slots.length; i++) {
+                stacks[i] = new byte[slots[i]][];
+            }
+            sizes = new int[slots.length];
+        }
+
+        byte[] pop(int level) {
+            if (sizes[level] == 0) {
+                return null;
+            }
+            int top = --sizes[level];
+            byte[] buffer = stacks[level][top];
+            stacks[level][top] = null;
+            return buffer;
+        }
+
+        boolean push(int level, byte[] buffer) {
+            if (sizes[level] == stacks[level].length) {
+                return false;
+            }
+            stacks[level][sizes[level]++] = buffer;
+            return true;
+        }
+    }
+
+    /**
+     * 缓冲池统计快照
+     */
+    public static class Stats {
+        private final long localHits;
+        private final long sharedHits;
+        private final long misses;
+        private final long oversized;
+        private final long dropped;
+
+        Stats(long localHits, long sharedHits, long misses, long oversized, long dropped) {
+            this.localHits = localHits;
+            this.sharedHits = sharedHits;
+            this.misses = misses;
+            this.oversized = oversized;
+            this.dropped = dropped;
+        }
+
+        public long getLocalHits() {
+            return localHits;
+        }
+
+        public long getSharedHits() {
+            return sharedHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getOversized() {
+            return oversized;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public double getHitRate() {
+            long requests = localHits + sharedHits + misses + oversized;
+            return requests == 0 ? 0 : (double) (localHits + sharedHits) / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("本地命中 %d, 共享命中 %d, 新分配 %d, 超大直接分配 %d, 超出预算丢弃 %d, 命中率 %.2f%%",
+                    localHits, sharedHits, misses, oversized, dropped, getHitRate() * 100);
+        }
+    }
+}
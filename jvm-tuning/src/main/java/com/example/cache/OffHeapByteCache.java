@@ -0,0 +1,284 @@
+package com.example.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 堆外字节缓存
+ * 数据存放在直接内存（DirectByteBuffer）切分出的固定大小页中，堆上只保存键和页号索引，
+ * 因此缓存的数据既不占用堆空间，也不会增加GC的标记和复制开销。
+ * 缓存有明确的字节预算，超出预算时按LRU淘汰，而不是像SoftReference那样由GC决定何时回收。
+ * 读取用get(key, dst)复制到调用方复用的缓冲区，命中时不在堆上分配；get(key)每次返回新数组，只是便捷方法
+ */
+public class OffHeapByteCache<K> {
+    private static final int DEFAULT_PAGE_SIZE = 64 * 1024;
+    private static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+    private final int pageSize;
+    private final int pagesPerSlab;
+    private final int totalPages;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    // 每个slab一个共享视图，只在持有锁时使用，读写页时不再创建新的ByteBuffer
+    private final List<ByteBuffer> slabViews = new ArrayList<>();
+
+    // 空闲页栈
+    private final int[] freePages;
+    private int freeCount;
+    // 已经切分过的页数，页按需从slab中切分
+    private int carvedPages;
+
+    // accessOrder=true的LinkedHashMap即LRU顺序，最久未访问的在最前面
+    private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long residentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejected;
+
+    public OffHeapByteCache(long budgetBytes) {
+        this(budgetBytes, DEFAULT_PAGE_SIZE, DEFAULT_SLAB_SIZE);
+    }
+
+    public OffHeapByteCache(long budgetBytes, int pageSize, int slabSize) {
+        if (pageSize <= 0 || slabSize < pageSize || budgetBytes < pageSize) {
+            throw new IllegalArgumentException("非法的缓存参数: budget=" + budgetBytes
+                    + " page=" + pageSize + " slab=" + slabSize);
+        }
+        this.pageSize = pageSize;
+        this.pagesPerSlab = slabSize / pageSize;
+        this.totalPages = (int) Math.min(Integer.MAX_VALUE - 8, budgetBytes / pageSize);
+        this.freePages = new int[totalPages];
+    }
+
+    /**
+     * 写入缓存，空间不足时淘汰最久未访问的条目
+     * @return 数据超过缓存总预算时返回false
+     */
+    public synchronized boolean put(K key, byte[] value) {
+        int pagesNeeded = pagesFor(value.length);
+        if (pagesNeeded > totalPages) {
+            rejected++;
+            return false;
+        }
+        Entry old = entries.remove(key);
+        if (old != null) {
+            release(old);
+        }
+        while (availablePages() < pagesNeeded) {
+            evictEldest();
+        }
+        int[] pages = new int[pagesNeeded];
+        for (int i = 0; i < pagesNeeded; i++) {
+            pages[i] = allocatePage();
+            int offset = i * pageSize;
+            int length = Math.min(pageSize, value.length - offset);
+            ByteBuffer page = page(pages[i]);
+            page.put(value, offset, length);
+        }
+        entries.put(key, new Entry(pages, value.length));
+        residentBytes += value.length;
+        return true;
+    }
+
+    /**
+     * 读取缓存，把数据复制到dst的当前位置（堆内或直接缓冲区都可以），不分配新对象
+     * @return 未命中时返回-1；否则返回数据长度，大于dst.remaining()时不复制、dst不变，调用方扩容后重试
+     */
+    public synchronized int get(K key, ByteBuffer dst) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return -1;
+        }
+        if (entry.length > dst.remaining()) {
+            return entry.length;
+        }
+        hits++;
+        for (int i = 0; i < entry.pages.length; i++) {
+            int length = Math.min(pageSize, entry.length - i * pageSize);
+            ByteBuffer page = page(entry.pages[i]);
+            page.limit(page.position() + length);
+            dst.put(page);
+        }
+        return entry.length;
+    }
+
+    /**
+     * 读取缓存，命中时把数据复制到新的堆数组中；每次命中都在堆上分配整个值，频繁读取时用get(key, dst)
+     */
+    public synchronized byte[] get(K key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        byte[] value = new byte[entry.length];
+        for (int i = 0; i < entry.pages.length; i++) {
+            int offset = i * pageSize;
+            int length = Math.min(pageSize, entry.length - offset);
+            page(entry.pages[i]).get(value, offset, length);
+        }
+        return value;
+    }
+
+    public synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized boolean remove(K key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        release(entry);
+        return true;
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            returnPages(entry);
+        }
+        entries.clear();
+        residentBytes = 0;
+    }
+
+    private void evictEldest() {
+        Iterator<Map.Entry<K, Entry>> eldest = entries.entrySet().iterator();
+        Entry entry = eldest.next().getValue();
+        eldest.remove();
+        release(entry);
+        evictions++;
+    }
+
+    private void release(Entry entry) {
+        returnPages(entry);
+        residentBytes -= entry.length;
+    }
+
+    private void returnPages(Entry entry) {
+        for (int page : entry.pages) {
+            freePages[freeCount++] = page;
+        }
+    }
+
+    private int availablePages() {
+        return freeCount + (totalPages - carvedPages);
+    }
+
+    private int allocatePage() {
+        if (freeCount > 0) {
+            return freePages[--freeCount];
+        }
+        int page = carvedPages++;
+        if (page / pagesPerSlab >= slabs.size()) {
+            int pagesInSlab = Math.min(pagesPerSlab, totalPages - page);
+            ByteBuffer slab = ByteBuffer.allocateDirect(pagesInSlab * pageSize);
+            slabs.add(slab);
+            slabViews.add(slab.duplicate());
+        }
+        return page;
+    }
+
+    // 返回定位到页起始处的slab共享视图，下一次调用前有效
+    private ByteBuffer page(int page) {
+        ByteBuffer view = slabViews.get(page / pagesPerSlab);
+        view.clear();
+        view.position((page % pagesPerSlab) * pageSize);
+        return view;
+    }
+
+    private int pagesFor(int length) {
+        return Math.max(1, (length + pageSize - 1) / pageSize);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), residentBytes, (long) carvedPages * pageSize,
+                (long) totalPages * pageSize, hits, misses, evictions, rejected);
+    }
+
+    private static class Entry {
+        final int[] pages;
+        final int length;
+
+        Entry(int[] pages, int length) {
+            this.pages = pages;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 缓存统计快照
+     */
+    public static class Stats {
+        private final int entries;
+        private final long residentBytes;
+        private final long reservedBytes;
+        private final long budgetBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long rejected;
+
+        Stats(int entries, long residentBytes, long reservedBytes, long budgetBytes,
+              long hits, long misses, long evictions, long rejected) {
+            this.entries = entries;
+            this.residentBytes = residentBytes;
+            this.reservedBytes = reservedBytes;
+            this.budgetBytes = budgetBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.rejected = rejected;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getResidentBytes() {
+            return residentBytes;
+        }
+
+        public long getReservedBytes() {
+            return reservedBytes;
+        }
+
+        public long getBudgetBytes() {
+            return budgetBytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("条目 %d, 驻留 %d MB / 预算 %d MB (已申请直接内存 %d MB), 命中率 %.2f%%, 淘汰 %d",
+                    entries, residentBytes / 1024 / 1024, budgetBytes / 1024 / 1024,
+                    reservedBytes / 1024 / 1024, getHitRate() * 100, evictions);
+        }
+    }
+}
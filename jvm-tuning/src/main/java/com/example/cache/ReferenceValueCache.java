@@ -0,0 +1,282 @@
+package com.example.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 并发的软引用/弱引用值缓存
+ * 值被GC回收后，引用会进入ReferenceQueue，缓存在写操作时顺带处理队列，
+ * 每个被回收的条目只处理一次，回收计数是精确的，不需要遍历整个缓存。
+ * 键按哈希分到多个段，每段独立加读写锁，多线程读写互不阻塞；
+ * 容量按段平均分配，段满时淘汰该段最早写入的条目
+ */
+public class ReferenceValueCache<K, V> {
+
+    public enum Strength { SOFT, WEAK }
+
+    private final Strength strength;
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder reclaimed = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public ReferenceValueCache(Strength strength, int maxEntries) {
+        this(strength, maxEntries, 16);
+    }
+
+    public ReferenceValueCache(Strength strength, int maxEntries, int concurrencyLevel) {
+        if (maxEntries <= 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("maxEntries和concurrencyLevel必须为正数");
+        }
+        int segmentCount = Integer.highestOneBit(Math.min(concurrencyLevel, maxEntries));
+        if (segmentCount < Math.min(concurrencyLevel, maxEntries)) {
+            segmentCount <<= 1;
+        }
+        this.strength = strength;
+        // 不能直接new Segment<K, V>[]，数组里只会放入new Segment<>(perSegment)
+        @SuppressWarnings("unchecked")
+        Segment<K, V>[] segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        this.segments = segments;
+        this.segmentMask = segmentCount - 1;
+        int perSegment = (maxEntries + segmentCount - 1) / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(perSegment);
+        }
+    }
+
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        ValueReference<K, V> ref;
+        segment.lock.readLock().lock();
+        try {
+            ref = segment.map.get(key);
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+        V value = ref == null ? null : ref.get();
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.writeLock().lock();
+        try {
+            drain(segment);
+            ValueReference<K, V> ref = strength == Strength.SOFT
+                    ? new SoftValue<>(key, value, segment.queue)
+                    : new WeakValue<>(key, value, segment.queue);
+            ValueReference<K, V> old = segment.map.put(key, ref);
+            if (old != null) {
+                discard(old, false);
+            }
+            while (segment.map.size() > segment.capacity) {
+                Iterator<ValueReference<K, V>> eldest = segment.map.values().iterator();
+                ValueReference<K, V> victim = eldest.next();
+                eldest.remove();
+                discard(victim, true);
+            }
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+        puts.increment();
+    }
+
+    public V remove(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.writeLock().lock();
+        try {
+            drain(segment);
+            ValueReference<K, V> ref = segment.map.remove(key);
+            if (ref == null) {
+                return null;
+            }
+            V value = ref.get();
+            discard(ref, false);
+            return value;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 主动处理所有段中已被GC回收的条目
+     */
+    public void cleanUp() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.writeLock().lock();
+            try {
+                drain(segment);
+            } finally {
+                segment.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.readLock().lock();
+            try {
+                size += segment.map.size();
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    public Stats stats() {
+        return new Stats(size(), hits.sum(), misses.sum(), puts.sum(), reclaimed.sum(), evicted.sum());
+    }
+
+    // 调用方需持有段的写锁
+    private void drain(Segment<K, V> segment) {
+        Reference<? extends V> polled;
+        while ((polled = segment.queue.poll()) != null) {
+            @SuppressWarnings("unchecked")
+            ValueReference<K, V> ref = (ValueReference<K, V>) polled;
+            // 只有仍在映射中的引用才算作被GC回收，已被覆盖或淘汰的不重复计数
+            if (segment.map.get(ref.key()) == ref) {
+                segment.map.remove(ref.key());
+                reclaimed.increment();
+            }
+        }
+    }
+
+    // 从映射中移除的引用：清除后不会再进入队列；如果值已被GC回收则计入回收数
+    private void discard(ValueReference<K, V> ref, boolean capacityEviction) {
+        boolean alreadyCleared = ref.get() == null;
+        ref.clear();
+        if (alreadyCleared) {
+            reclaimed.increment();
+        } else if (capacityEviction) {
+            evicted.increment();
+        }
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    private static class Segment<K, V> {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final ReferenceQueue<V> queue = new ReferenceQueue<>();
+        // 插入顺序，段满时淘汰最早写入的条目
+        final LinkedHashMap<K, ValueReference<K, V>> map = new LinkedHashMap<>();
+        final int capacity;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    private interface ValueReference<K, V> {
+        K key();
+
+        V get();
+
+        void clear();
+    }
+
+    private static class SoftValue<K, V> extends SoftReference<V> implements ValueReference<K, V> {
+        private final K key;
+
+        SoftValue(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        @Override
+        public K key() {
+            return key;
+        }
+    }
+
+    private static class WeakValue<K, V> extends WeakReference<V> implements ValueReference<K, V> {
+        private final K key;
+
+        WeakValue(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        @Override
+        public K key() {
+            return key;
+        }
+    }
+
+    /**
+     * 缓存统计快照
+     */
+    public static class Stats {
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long puts;
+        private final long reclaimed;
+        private final long evicted;
+
+        Stats(int size, long hits, long misses, long puts, long reclaimed, long evicted) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.puts = puts;
+            this.reclaimed = reclaimed;
+            this.evicted = evicted;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getPuts() {
+            return puts;
+        }
+
+        public long getReclaimed() {
+            return reclaimed;
+        }
+
+        public long getEvicted() {
+            return evicted;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("条目 %d, 写入 %d, GC回收 %d, 容量淘汰 %d, 命中率 %.2f%%",
+                    size, puts, reclaimed, evicted, getHitRate() * 100);
+        }
+    }
+}
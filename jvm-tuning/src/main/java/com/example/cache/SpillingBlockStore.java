@@ -0,0 +1,172 @@
+package com.example.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 只追加的块存储，超出堆上窗口的旧块溢出到内存映射文件
+ * 最近追加的块留在堆上，总字节数超过窗口预算时，最老的块按顺序写入当前段文件（FileChannel.map），
+ * 堆上只剩每块12字节的位置索引，数据总量不再受-Xmx限制，换入换出交给操作系统的页缓存。
+ * 读取返回只读的ByteBuffer视图，不复制数据。段文件是临时文件，关闭时删除，关闭后不能再追加或读取
+ */
+public class SpillingBlockStore implements Closeable {
+    private final Path directory;
+    private final long hotBytesLimit;
+    private final int segmentSize;
+
+    // 堆上窗口：编号从spilledCount开始的块，环形数组按需扩容
+    private byte[][] hot = new byte[64][];
+    private int hotHead;
+    private int hotCount;
+    private long hotBytes;
+    private int spilledCount;
+
+    // 已溢出块的位置：高32位为段号，低32位为段内偏移
+    private long[] positions = new long[1024];
+    private int[] lengths = new int[1024];
+
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private int writeOffset;
+    private long spilledBytes;
+    private boolean closed;
+
+    /**
+     * @param hotBytesLimit 堆上窗口的字节预算
+     * @param segmentSize   段文件大小，块不会跨段，超过段大小的块单独占一个段
+     */
+    public SpillingBlockStore(Path directory, long hotBytesLimit, int segmentSize) {
+        if (hotBytesLimit < 0 || segmentSize <= 0) {
+            throw new IllegalArgumentException("非法的块存储参数");
+        }
+        this.directory = directory;
+        this.hotBytesLimit = hotBytesLimit;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 追加一个块并返回其编号；块直接放入堆上窗口而不复制，追加后调用方不能再修改它
+     */
+    public synchronized int append(byte[] block) throws IOException {
+        ensureOpen();
+        if (hotCount == hot.length) {
+            byte[][] grown = new byte[hot.length * 2][];
+            for (int i = 0; i < hotCount; i++) {
+                grown[i] = hot[(hotHead + i) % hot.length];
+            }
+            hot = grown;
+            hotHead = 0;
+        }
+        hot[(hotHead + hotCount) % hot.length] = block;
+        hotCount++;
+        hotBytes += block.length;
+        while (hotBytes > hotBytesLimit && hotCount > 0) {
+            byte[] oldest = hot[hotHead];
+            hot[hotHead] = null;
+            hotHead = (hotHead + 1) % hot.length;
+            hotCount--;
+            spill(oldest);
+        }
+        return size() - 1;
+    }
+
+    private void spill(byte[] block) throws IOException {
+        hotBytes -= block.length;
+        if (segments.isEmpty() || writeOffset + block.length > segments.get(segments.size() - 1).capacity()) {
+            newSegment(Math.max(segmentSize, block.length));
+        }
+        int segment = segments.size() - 1;
+        ByteBuffer target = segments.get(segment).duplicate();
+        target.position(writeOffset);
+        target.put(block);
+
+        if (spilledCount == positions.length) {
+            positions = Arrays.copyOf(positions, spilledCount * 2);
+            lengths = Arrays.copyOf(lengths, spilledCount * 2);
+        }
+        positions[spilledCount] = (long) segment << 32 | writeOffset;
+        lengths[spilledCount] = block.length;
+        spilledCount++;
+        writeOffset += block.length;
+        spilledBytes += block.length;
+    }
+
+    private void newSegment(int size) throws IOException {
+        Files.createDirectories(directory);
+        Path file = Files.createTempFile(directory, "spill-", ".seg");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        channels.add(channel);
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        writeOffset = 0;
+    }
+
+    /**
+     * 按编号读取块，返回只读视图：堆上的块包装原数组，已溢出的块是映射段的切片
+     */
+    public synchronized ByteBuffer get(int index) {
+        ensureOpen();
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+        }
+        if (index >= spilledCount) {
+            return ByteBuffer.wrap(hot[(hotHead + index - spilledCount) % hot.length]).asReadOnlyBuffer();
+        }
+        long position = positions[index];
+        ByteBuffer view = segments.get((int) (position >>> 32)).duplicate();
+        int offset = (int) position;
+        view.position(offset).limit(offset + lengths[index]);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    public synchronized int size() {
+        return spilledCount + hotCount;
+    }
+
+    public synchronized long getHotBytes() {
+        return hotBytes;
+    }
+
+    public synchronized long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("块存储已关闭");
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // 已溢出的块随段文件一起删除，编号不再有效
+        closed = true;
+        Arrays.fill(hot, null);
+        hotCount = 0;
+        hotBytes = 0;
+        segments.clear();
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+        channels.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("块 %d 个, 堆上 %d 个 (%d MB), 已溢出 %d MB / %d 个段",
+                size(), hotCount, hotBytes / 1024 / 1024, spilledBytes / 1024 / 1024, segments.size());
+    }
+}
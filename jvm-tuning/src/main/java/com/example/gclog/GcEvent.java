@@ -0,0 +1,147 @@
+package com.example.gclog;
+
+/**
+ * 从GC日志中解析出的一次GC事件
+ * 内存大小统一以KB为单位，未知的值为-1
+ */
+public class GcEvent {
+    private final long gcId;
+    private final double timestampSeconds;
+    private final String name;
+    // true表示并发周期的汇总（如ZGC的Garbage Collection），不计入停顿
+    private final boolean concurrent;
+    private final double pauseMillis;
+
+    long heapBeforeKb = -1;
+    long heapAfterKb = -1;
+    long heapCommittedKb = -1;
+    long youngBeforeKb = -1;
+    long youngAfterKb = -1;
+    long oldBeforeKb = -1;
+    long oldAfterKb = -1;
+    int humongousRegionsBefore = -1;
+    int humongousRegionsAfter = -1;
+    double cpuUserSeconds = -1;
+    double cpuSysSeconds = -1;
+    double cpuRealSeconds = -1;
+
+    GcEvent(long gcId, double timestampSeconds, String name, boolean concurrent, double pauseMillis) {
+        this.gcId = gcId;
+        this.timestampSeconds = timestampSeconds;
+        this.name = name;
+        this.concurrent = concurrent;
+        this.pauseMillis = pauseMillis;
+    }
+
+    public long getGcId() {
+        return gcId;
+    }
+
+    public double getTimestampSeconds() {
+        return timestampSeconds;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    public boolean isPause() {
+        return !concurrent;
+    }
+
+    public boolean isFull() {
+        return name.contains("Full");
+    }
+
+    public boolean isYoung() {
+        if (concurrent || isFull()) {
+            return false;
+        }
+        // 统一日志：Pause Young；旧格式：GC (Allocation Failure) / GC pause (...) (young)
+        return name.contains("Young") || name.contains("young")
+                || (name.startsWith("GC (") && !name.contains("CMS"));
+    }
+
+    public double getPauseMillis() {
+        return pauseMillis;
+    }
+
+    public long getHeapBeforeKb() {
+        return heapBeforeKb;
+    }
+
+    public long getHeapAfterKb() {
+        return heapAfterKb;
+    }
+
+    public long getHeapCommittedKb() {
+        return heapCommittedKb;
+    }
+
+    public long getYoungBeforeKb() {
+        return youngBeforeKb;
+    }
+
+    public long getYoungAfterKb() {
+        return youngAfterKb;
+    }
+
+    public long getOldBeforeKb() {
+        return oldBeforeKb;
+    }
+
+    public long getOldAfterKb() {
+        return oldAfterKb;
+    }
+
+    public int getHumongousRegionsBefore() {
+        return humongousRegionsBefore;
+    }
+
+    public int getHumongousRegionsAfter() {
+        return humongousRegionsAfter;
+    }
+
+    public double getCpuUserSeconds() {
+        return cpuUserSeconds;
+    }
+
+    public double getCpuSysSeconds() {
+        return cpuSysSeconds;
+    }
+
+    public double getCpuRealSeconds() {
+        return cpuRealSeconds;
+    }
+
+    public boolean hasHeap() {
+        return heapBeforeKb >= 0 && heapAfterKb >= 0;
+    }
+
+    /**
+     * 本次GC晋升到老年代的大小，无法计算时返回-1
+     */
+    public long promotedKb() {
+        if (!isYoung()) {
+            return -1;
+        }
+        if (oldBeforeKb >= 0 && oldAfterKb >= 0) {
+            return Math.max(0, oldAfterKb - oldBeforeKb);
+        }
+        if (youngBeforeKb >= 0 && youngAfterKb >= 0 && hasHeap()) {
+            return Math.max(0, (youngBeforeKb - youngAfterKb) - (heapBeforeKb - heapAfterKb));
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GC(%d) %.3fs %s %s %dK->%dK(%dK) %.3fms",
+                gcId, timestampSeconds, concurrent ? "concurrent" : "pause", name,
+                heapBeforeKb, heapAfterKb, heapCommittedKb, pauseMillis);
+    }
+}
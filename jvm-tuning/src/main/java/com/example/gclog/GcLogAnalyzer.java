@@ -0,0 +1,39 @@
+package com.example.gclog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * GC日志分析工具
+ * 同时支持 -Xlog:gc* 统一日志和 -XX:+PrintGCDetails 旧格式，日志通过内存映射逐行读取，
+ * 不会整体加载到堆上，可以直接分析生产环境的大日志
+ * 运行方式：
+ *    java -cp target/classes com.example.gclog.GcLogAnalyzer gc_g1.log gc_cms.log ...
+ */
+public class GcLogAnalyzer {
+
+    public static GcStatistics analyze(Path path) throws IOException {
+        GcStatistics statistics = new GcStatistics(path.toString());
+        GcLogParser parser = new GcLogParser(statistics);
+        try (MappedLineReader reader = new MappedLineReader(path)) {
+            reader.forEachLine(parser::accept);
+        }
+        parser.finish();
+        statistics.complete(parser);
+        return statistics;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("用法: GcLogAnalyzer <gc日志文件>...");
+            return;
+        }
+        for (String file : args) {
+            long start = System.nanoTime();
+            GcStatistics statistics = analyze(Paths.get(file));
+            statistics.print(System.out);
+            System.out.printf("解析耗时: %d ms%n%n", (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
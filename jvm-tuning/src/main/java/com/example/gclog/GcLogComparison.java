@@ -0,0 +1,146 @@
+package com.example.gclog;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * 多收集器GC日志对比
+ * 在ForkJoin线程池上并行分析多份日志，输出一张横向对比表和每个收集器的结论
+ * 运行方式（在jvm-tuning目录下，默认对比目录下的5份 gc_*.log）：
+ *    java -cp target/classes com.example.gclog.GcLogComparison [gc日志文件...]
+ */
+public class GcLogComparison {
+    private static final List<String> DEFAULT_LOGS = Arrays.asList(
+            "gc_parallel.log", "gc_cms.log", "gc_g1.log", "gc_zgc.log", "gc_manage.log");
+
+    // GC后堆占用增长超过该值（MB/min）时提示可能存在泄漏
+    private static final double LEAK_SLOPE_MB_PER_MINUTE = 60;
+    // GC线程平均占用超过该核数时提示CPU开销过高
+    private static final double HIGH_CPU_OVERHEAD = 0.5;
+
+    public static List<GcStatistics> compare(List<Path> logs, ForkJoinPool pool) {
+        if (logs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return pool.invoke(new AnalyzeTask(logs, 0, logs.size()));
+    }
+
+    /**
+     * 二分拆分日志列表，单个文件作为叶子任务
+     */
+    private static class AnalyzeTask extends RecursiveTask<List<GcStatistics>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> logs;
+        private final int from;
+        private final int to;
+
+        AnalyzeTask(List<Path> logs, int from, int to) {
+            this.logs = logs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<GcStatistics> compute() {
+            if (to - from == 1) {
+                try {
+                    List<GcStatistics> result = new ArrayList<>(1);
+                    result.add(GcLogAnalyzer.analyze(logs.get(from)));
+                    return result;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("分析日志失败: " + logs.get(from), e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            AnalyzeTask left = new AnalyzeTask(logs, from, middle);
+            AnalyzeTask right = new AnalyzeTask(logs, middle, to);
+            left.fork();
+            List<GcStatistics> result = new ArrayList<>(right.compute());
+            result.addAll(0, left.join());
+            return result;
+        }
+    }
+
+    public static void printReport(List<GcStatistics> results, PrintStream out) {
+        out.printf("%-20s %-24s %7s %9s %9s %9s %11s %8s %8s %10s%n",
+                "日志", "收集器", "停顿数", "p50(ms)", "p99(ms)", "max(ms)", "总STW(ms)", "吞吐量", "GC核数", "堆趋势MB/m");
+        for (GcStatistics s : results) {
+            PauseHistogram pauses = s.getPauses();
+            out.printf("%-20s %-24s %7d %9.3f %9.3f %9.3f %11.1f %7.2f%% %8s %10s%n",
+                    Paths.get(s.getSource()).getFileName(), shorten(s.getCollector(), 24), pauses.count(),
+                    pauses.percentileMillis(50), pauses.percentileMillis(99), pauses.maxMicros() / 1000.0,
+                    s.getTotalPauseMillis(), s.getThroughput() * 100,
+                    s.hasCpuTimes() ? String.format("%.2f", s.getCpuOverhead()) : "n/a",
+                    s.hasHeapTrend() ? String.format("%+.1f", s.getHeapAfterGcSlopeMbPerMinute()) : "n/a");
+        }
+        out.println();
+        out.println("结论:");
+        for (GcStatistics s : results) {
+            out.printf("  %s (%s): %s%n", Paths.get(s.getSource()).getFileName(), s.getCollector(),
+                    verdict(s, results));
+        }
+    }
+
+    static String verdict(GcStatistics s, List<GcStatistics> all) {
+        List<String> notes = new ArrayList<>();
+        long bestP99 = all.stream().mapToLong(r -> r.getPauses().percentile(99)).min().orElse(0);
+        double bestThroughput = all.stream().mapToDouble(GcStatistics::getThroughput).max().orElse(0);
+        if (all.size() > 1 && s.getPauses().percentile(99) == bestP99) {
+            notes.add("p99停顿最低，适合延迟敏感服务");
+        }
+        if (all.size() > 1 && s.getThroughput() == bestThroughput) {
+            notes.add("吞吐量最高，适合批处理服务");
+        }
+        if (s.getFullGcCount() > 0) {
+            notes.add("出现" + s.getFullGcCount() + "次Full GC，堆可能偏小或老年代回收跟不上");
+        }
+        if (s.hasHeapTrend() && s.getHeapAfterGcSlopeMbPerMinute() > LEAK_SLOPE_MB_PER_MINUTE) {
+            notes.add("GC后堆占用持续上升，需排查内存泄漏");
+        }
+        if (s.hasCpuTimes() && s.getCpuOverhead() > HIGH_CPU_OVERHEAD) {
+            notes.add(String.format("GC线程平均占用%.2f核，CPU开销偏高", s.getCpuOverhead()));
+        }
+        if (s.getPeakHumongousRegions() > 0) {
+            notes.add("存在humongous对象，可考虑调大G1HeapRegionSize");
+        }
+        if (notes.isEmpty()) {
+            notes.add("表现中规中矩");
+        }
+        return String.join("；", notes);
+    }
+
+    private static String shorten(String text, int width) {
+        return text.length() <= width ? text : text.substring(0, width - 2) + "..";
+    }
+
+    public static void main(String[] args) {
+        List<Path> logs = (args.length > 0 ? Arrays.asList(args) : DEFAULT_LOGS).stream()
+                .map(Paths::get)
+                .filter(Files::isRegularFile)
+                .collect(Collectors.toList());
+        if (logs.isEmpty()) {
+            System.out.println("用法: GcLogComparison <gc日志文件>...");
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.min(logs.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            long start = System.nanoTime();
+            List<GcStatistics> results = compare(logs, pool);
+            printReport(results, System.out);
+            System.out.printf("%n共分析 %d 份日志，耗时 %d ms%n", results.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,555 @@
+package com.example.gclog;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * GC日志解析器，逐行喂入，解析完成的事件交给sink
+ * 支持两种格式：
+ * 1. jdk9+ 统一日志：-Xlog:gc*（Parallel、CMS、G1、ZGC、Shenandoah）
+ * 2. jdk8 旧格式：-XX:+PrintGCDetails [-XX:+PrintGCDateStamps]
+ * 解析器只保存当前GC的少量状态，内存占用与日志大小无关
+ */
+public class GcLogParser {
+    // ---------- 统一日志 ----------
+    private static final String SIZE = "(\\d+)([BKMG])";
+    private static final Pattern UNIFIED_PAUSE = Pattern.compile(
+            "GC\\((\\d+)\\) (Pause .*?)(?: " + SIZE + "->" + SIZE + "\\(" + SIZE + "\\))? (\\d+(?:\\.\\d+)?)ms$");
+    private static final Pattern UNIFIED_CYCLE = Pattern.compile(
+            "GC\\((\\d+)\\) (Garbage Collection .*?) " + SIZE + "\\(\\d+%\\)->" + SIZE + "\\(\\d+%\\)");
+    private static final Pattern UNIFIED_GENERATION = Pattern.compile(
+            "GC\\((\\d+)\\) (\\w+): (\\d+)K->(\\d+)K\\((\\d+)K\\)");
+    private static final Pattern UNIFIED_REGIONS = Pattern.compile(
+            "GC\\((\\d+)\\) (Eden|Survivor|Old|Humongous) regions: (\\d+)->(\\d+)");
+    private static final Pattern UNIFIED_CPU = Pattern.compile(
+            "GC\\((\\d+)\\) User=(\\d+(?:\\.\\d+)?)s Sys=(\\d+(?:\\.\\d+)?)s Real=(\\d+(?:\\.\\d+)?)s");
+    private static final Pattern ZGC_CAPACITY = Pattern.compile(
+            "GC\\((\\d+)\\)\\s+Capacity:\\s+(\\d+)([BKMG])");
+    private static final Pattern REGION_SIZE = Pattern.compile("Heap [Rr]egion [Ss]ize: (\\d+)([BKMG])");
+    private static final Pattern USING = Pattern.compile("^Using (.+)$");
+
+    // ---------- 旧格式 ----------
+    private static final Pattern LEGACY_START = Pattern.compile(
+            "^(?:(\\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\d\\.\\d{3}[+-]\\d{4}): )?(?:(\\d+\\.\\d+): )?(\\[(?:Full GC|GC).*)$");
+    private static final Pattern LEGACY_NAME = Pattern.compile(
+            "^\\[((?:Full GC|GC)[^\\[,]*?)(?= \\[| \\d+(?:\\.\\d+)?[BKMG]->|,|\\]|$)");
+    private static final String LEGACY_SIZE = "(\\d+(?:\\.\\d+)?)([BKMG])";
+    private static final Pattern LEGACY_GENERATION = Pattern.compile(
+            "\\[(\\w[\\w ]*?): (\\d+)K->(\\d+)K\\((\\d+)K\\)");
+    private static final Pattern LEGACY_HEAP = Pattern.compile(
+            "(?<!: )(?<![\\d.])" + LEGACY_SIZE + "->" + LEGACY_SIZE + "\\(" + LEGACY_SIZE + "\\)");
+    private static final Pattern LEGACY_G1_HEAP = Pattern.compile(
+            "Eden: " + LEGACY_SIZE + "\\(" + LEGACY_SIZE + "\\)->" + LEGACY_SIZE + "\\(" + LEGACY_SIZE + "\\)"
+                    + " Survivors: " + LEGACY_SIZE + "->" + LEGACY_SIZE
+                    + " Heap: " + LEGACY_SIZE + "\\(" + LEGACY_SIZE + "\\)->" + LEGACY_SIZE + "\\(" + LEGACY_SIZE + "\\)");
+    private static final Pattern LEGACY_PAUSE = Pattern.compile(", (\\d+(?:\\.\\d+)?) secs\\]");
+    private static final Pattern LEGACY_TIMES = Pattern.compile(
+            "\\[Times: user=(\\d+(?:\\.\\d+)?) sys=(\\d+(?:\\.\\d+)?), real=(\\d+(?:\\.\\d+)?) secs\\]");
+    // 一个旧格式事件最多跨越的行数，防止日志损坏时无限拼接
+    private static final int MAX_PENDING_LINES = 256;
+
+    private static final DateTimeFormatter LEGACY_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+
+    private final Consumer<GcEvent> sink;
+
+    private String collector = "Unknown";
+    private long regionSizeKb = -1;
+    private double firstTimestamp = Double.NaN;
+    private double lastTimestamp = Double.NaN;
+    private double firstEpochSeconds = Double.NaN;
+    private long legacyGcId;
+
+    // 当前尚可补充信息（cpu、G1旧格式的堆信息）的事件
+    private GcEvent current;
+    // 统一日志中先于停顿汇总行出现的分代信息
+    private final Map<Long, GcEvent> details = new HashMap<>();
+    // 旧格式中跨行的事件文本
+    private StringBuilder pendingLegacy;
+    private double pendingLegacyTimestamp;
+    private int pendingLegacyLines;
+
+    public GcLogParser(Consumer<GcEvent> sink) {
+        this.sink = sink;
+    }
+
+    public void accept(String line) {
+        if (line.isEmpty()) {
+            return;
+        }
+        if (pendingLegacy != null) {
+            appendLegacy(line);
+        } else if (line.charAt(0) == '[' && parseUnified(line)) {
+            return;
+        } else {
+            parseLegacy(line);
+        }
+    }
+
+    /**
+     * 日志读取结束时调用，输出最后一个事件
+     */
+    public void finish() {
+        if (pendingLegacy != null) {
+            completeLegacy(pendingLegacy.toString(), pendingLegacyTimestamp);
+        }
+        flush();
+    }
+
+    public String getCollector() {
+        return collector;
+    }
+
+    public long getRegionSizeKb() {
+        return regionSizeKb;
+    }
+
+    public double getFirstTimestamp() {
+        return Double.isNaN(firstTimestamp) ? 0 : firstTimestamp;
+    }
+
+    public double getLastTimestamp() {
+        return Double.isNaN(lastTimestamp) ? 0 : lastTimestamp;
+    }
+
+    // ======================== 统一日志 ========================
+
+    private boolean parseUnified(String line) {
+        // 解析行首的装饰器：[time][uptime][level][tags]
+        int position = 0;
+        double timestamp = Double.NaN;
+        double epoch = Double.NaN;
+        boolean decorated = false;
+        while (position < line.length() && line.charAt(position) == '[') {
+            int end = line.indexOf(']', position);
+            if (end < 0) {
+                break;
+            }
+            String decoration = line.substring(position + 1, end).trim();
+            if (decoration.endsWith("ms") && isDigits(decoration, decoration.length() - 2)) {
+                long millis = Long.parseLong(decoration.substring(0, decoration.length() - 2));
+                // 大于约30年的毫秒数视为timemillis，否则为uptimemillis
+                if (millis > 1_000_000_000_000L) {
+                    epoch = millis / 1000.0;
+                } else {
+                    timestamp = millis / 1000.0;
+                }
+                decorated = true;
+            } else if (decoration.endsWith("s") && isUptime(decoration)) {
+                timestamp = Double.parseDouble(decoration.substring(0, decoration.length() - 1));
+                decorated = true;
+            } else if (decoration.length() > 19 && decoration.charAt(4) == '-' && decoration.charAt(10) == 'T') {
+                epoch = parseEpoch(decoration);
+                decorated = true;
+            } else if (isTagSet(decoration) || isDigits(decoration, decoration.length())) {
+                // 日志级别、标签、pid/tid
+                decorated = true;
+            } else {
+                break;
+            }
+            position = end + 1;
+        }
+        if (!decorated) {
+            return false;
+        }
+        if (Double.isNaN(timestamp)) {
+            timestamp = relativeTo(epoch);
+        }
+        observe(timestamp);
+
+        String message = line.substring(position).trim();
+        if (message.startsWith("GC(")) {
+            parseUnifiedGcMessage(message, timestamp);
+        } else {
+            Matcher using = USING.matcher(message);
+            if (using.find()) {
+                collector = using.group(1);
+            }
+            Matcher regionSize = REGION_SIZE.matcher(message);
+            if (regionSize.find()) {
+                regionSizeKb = toKb(Long.parseLong(regionSize.group(1)), regionSize.group(2));
+            }
+        }
+        return true;
+    }
+
+    private void parseUnifiedGcMessage(String message, double timestamp) {
+        Matcher m = UNIFIED_PAUSE.matcher(message);
+        if (m.find()) {
+            long gcId = Long.parseLong(m.group(1));
+            GcEvent event = new GcEvent(gcId, timestamp, m.group(2).trim(), false,
+                    Double.parseDouble(m.group(9)));
+            if (m.group(3) != null) {
+                event.heapBeforeKb = toKb(Long.parseLong(m.group(3)), m.group(4));
+                event.heapAfterKb = toKb(Long.parseLong(m.group(5)), m.group(6));
+                event.heapCommittedKb = toKb(Long.parseLong(m.group(7)), m.group(8));
+            }
+            mergeDetails(event);
+            begin(event);
+            return;
+        }
+        m = UNIFIED_CYCLE.matcher(message);
+        if (m.find()) {
+            long gcId = Long.parseLong(m.group(1));
+            GcEvent event = new GcEvent(gcId, timestamp, m.group(2).trim(), true, 0);
+            event.heapBeforeKb = toKb(Long.parseLong(m.group(3)), m.group(4));
+            event.heapAfterKb = toKb(Long.parseLong(m.group(5)), m.group(6));
+            mergeDetails(event);
+            begin(event);
+            return;
+        }
+        m = UNIFIED_CPU.matcher(message);
+        if (m.find()) {
+            if (current != null && current.getGcId() == Long.parseLong(m.group(1))) {
+                current.cpuUserSeconds = Double.parseDouble(m.group(2));
+                current.cpuSysSeconds = Double.parseDouble(m.group(3));
+                current.cpuRealSeconds = Double.parseDouble(m.group(4));
+            }
+            return;
+        }
+        m = UNIFIED_GENERATION.matcher(message);
+        if (m.find()) {
+            GcEvent detail = detailFor(Long.parseLong(m.group(1)));
+            long before = Long.parseLong(m.group(3));
+            long after = Long.parseLong(m.group(4));
+            switch (generationOf(m.group(2))) {
+                case YOUNG:
+                    detail.youngBeforeKb = before;
+                    detail.youngAfterKb = after;
+                    break;
+                case OLD:
+                    detail.oldBeforeKb = before;
+                    detail.oldAfterKb = after;
+                    break;
+                default:
+                    break;
+            }
+            return;
+        }
+        m = UNIFIED_REGIONS.matcher(message);
+        if (m.find()) {
+            GcEvent detail = detailFor(Long.parseLong(m.group(1)));
+            int before = Integer.parseInt(m.group(3));
+            int after = Integer.parseInt(m.group(4));
+            switch (m.group(2)) {
+                case "Humongous":
+                    detail.humongousRegionsBefore = before;
+                    detail.humongousRegionsAfter = after;
+                    break;
+                case "Old":
+                    if (regionSizeKb > 0) {
+                        detail.oldBeforeKb = before * regionSizeKb;
+                        detail.oldAfterKb = after * regionSizeKb;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return;
+        }
+        m = ZGC_CAPACITY.matcher(message);
+        if (m.find()) {
+            detailFor(Long.parseLong(m.group(1))).heapCommittedKb = toKb(Long.parseLong(m.group(2)), m.group(3));
+        }
+    }
+
+    private GcEvent detailFor(long gcId) {
+        return details.computeIfAbsent(gcId, id -> new GcEvent(id, 0, "", false, 0));
+    }
+
+    private void mergeDetails(GcEvent event) {
+        GcEvent detail = details.remove(event.getGcId());
+        if (detail == null) {
+            return;
+        }
+        event.youngBeforeKb = detail.youngBeforeKb;
+        event.youngAfterKb = detail.youngAfterKb;
+        event.oldBeforeKb = detail.oldBeforeKb;
+        event.oldAfterKb = detail.oldAfterKb;
+        event.humongousRegionsBefore = detail.humongousRegionsBefore;
+        event.humongousRegionsAfter = detail.humongousRegionsAfter;
+        if (event.heapCommittedKb < 0) {
+            event.heapCommittedKb = detail.heapCommittedKb;
+        }
+    }
+
+    // ======================== 旧格式 ========================
+
+    private void parseLegacy(String line) {
+        Matcher start = LEGACY_START.matcher(line);
+        if (start.find() && !isConcurrentPhase(start.group(3))) {
+            double timestamp;
+            if (start.group(2) != null) {
+                timestamp = Double.parseDouble(start.group(2));
+            } else {
+                timestamp = relativeTo(parseEpoch(start.group(1)));
+            }
+            observe(timestamp);
+            if ("Unknown".equals(collector)) {
+                collector = guessLegacyCollector(start.group(3));
+            }
+            pendingLegacy = new StringBuilder(start.group(3));
+            pendingLegacyTimestamp = timestamp;
+            pendingLegacyLines = 1;
+            if (isBalanced(pendingLegacy)) {
+                String text = pendingLegacy.toString();
+                pendingLegacy = null;
+                completeLegacy(text, timestamp);
+            }
+            return;
+        }
+        // 非事件起始行：补充到当前事件上（G1的Eden/Heap行、Times行）
+        if (current == null) {
+            return;
+        }
+        Matcher g1 = LEGACY_G1_HEAP.matcher(line);
+        if (g1.find()) {
+            current.youngBeforeKb = legacyKb(g1, 1) + legacyKb(g1, 9);
+            current.youngAfterKb = legacyKb(g1, 5) + legacyKb(g1, 11);
+            current.heapBeforeKb = legacyKb(g1, 13);
+            current.heapAfterKb = legacyKb(g1, 17);
+            current.heapCommittedKb = legacyKb(g1, 19);
+        }
+        if (current.cpuUserSeconds < 0 && !line.contains("-concurrent-")) {
+            applyLegacyTimes(line, current);
+        }
+    }
+
+    private void appendLegacy(String line) {
+        Matcher start = LEGACY_START.matcher(line);
+        if (start.find() && !isConcurrentPhase(start.group(3)) && pendingLegacyLines >= MAX_PENDING_LINES) {
+            // 损坏或被截断的事件，丢弃后按新事件处理
+            pendingLegacy = null;
+            parseLegacy(line);
+            return;
+        }
+        pendingLegacy.append(' ').append(line.trim());
+        pendingLegacyLines++;
+        if (isBalanced(pendingLegacy) || pendingLegacyLines >= MAX_PENDING_LINES) {
+            String text = pendingLegacy.toString();
+            pendingLegacy = null;
+            completeLegacy(text, pendingLegacyTimestamp);
+        }
+    }
+
+    private void completeLegacy(String text, double timestamp) {
+        int eventEnd = closingBracket(text);
+        String body = eventEnd < 0 ? text : text.substring(0, eventEnd + 1);
+
+        Matcher nameMatcher = LEGACY_NAME.matcher(body);
+        String name = nameMatcher.find() ? nameMatcher.group(1).trim() : "GC";
+
+        double pauseSeconds = 0;
+        Matcher pause = LEGACY_PAUSE.matcher(body);
+        while (pause.find()) {
+            pauseSeconds = Double.parseDouble(pause.group(1));
+        }
+        GcEvent event = new GcEvent(legacyGcId++, timestamp, name, false, pauseSeconds * 1000);
+
+        Matcher generation = LEGACY_GENERATION.matcher(body);
+        while (generation.find()) {
+            long before = Long.parseLong(generation.group(2));
+            long after = Long.parseLong(generation.group(3));
+            Generation kind = generationOf(generation.group(1));
+            if (kind == Generation.YOUNG) {
+                event.youngBeforeKb = before;
+                event.youngAfterKb = after;
+            } else if (kind == Generation.OLD) {
+                event.oldBeforeKb = before;
+                event.oldAfterKb = after;
+            }
+        }
+        Matcher heap = LEGACY_HEAP.matcher(body);
+        while (heap.find()) {
+            event.heapBeforeKb = legacyKb(heap, 1);
+            event.heapAfterKb = legacyKb(heap, 3);
+            event.heapCommittedKb = legacyKb(heap, 5);
+        }
+        begin(event);
+        applyLegacyTimes(text, event);
+    }
+
+    private static void applyLegacyTimes(String text, GcEvent event) {
+        Matcher times = LEGACY_TIMES.matcher(text);
+        if (times.find()) {
+            event.cpuUserSeconds = Double.parseDouble(times.group(1));
+            event.cpuSysSeconds = Double.parseDouble(times.group(2));
+            event.cpuRealSeconds = Double.parseDouble(times.group(3));
+        }
+    }
+
+    // G1旧格式的并发阶段行：[GC concurrent-mark-end, 0.0123 secs]
+    private static boolean isConcurrentPhase(String text) {
+        return text.startsWith("[GC concurrent");
+    }
+
+    private static String guessLegacyCollector(String text) {
+        if (text.contains("PSYoungGen")) {
+            return "Parallel";
+        } else if (text.contains("ParNew") || text.contains("CMS")) {
+            return "Concurrent Mark Sweep";
+        } else if (text.contains("G1") || text.startsWith("[GC pause")) {
+            return "G1";
+        } else if (text.contains("DefNew")) {
+            return "Serial";
+        }
+        return "Unknown";
+    }
+
+    private static boolean isBalanced(CharSequence text) {
+        return closingBracket(text) >= 0;
+    }
+
+    // 返回与首个'['配对的']'位置，未闭合时返回-1
+    private static int closingBracket(CharSequence text) {
+        int depth = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // ======================== 公共 ========================
+
+    private void begin(GcEvent event) {
+        flush();
+        current = event;
+    }
+
+    private void flush() {
+        if (current != null) {
+            GcEvent event = current;
+            current = null;
+            sink.accept(event);
+        }
+    }
+
+    private void observe(double timestamp) {
+        if (Double.isNaN(timestamp)) {
+            return;
+        }
+        if (Double.isNaN(firstTimestamp)) {
+            firstTimestamp = timestamp;
+        }
+        lastTimestamp = Double.isNaN(lastTimestamp) ? timestamp : Math.max(lastTimestamp, timestamp);
+    }
+
+    // 只有墙钟时间时，以第一次出现的时间为起点
+    private double relativeTo(double epochSeconds) {
+        if (Double.isNaN(epochSeconds)) {
+            return Double.NaN;
+        }
+        if (Double.isNaN(firstEpochSeconds)) {
+            firstEpochSeconds = epochSeconds;
+        }
+        return epochSeconds - firstEpochSeconds;
+    }
+
+    private static double parseEpoch(String text) {
+        // 既没有日期也没有时间戳的旧格式日志
+        if (text == null) {
+            return Double.NaN;
+        }
+        try {
+            OffsetDateTime time = OffsetDateTime.parse(text, LEGACY_DATE);
+            return time.toEpochSecond() + time.getNano() / 1e9;
+        } catch (DateTimeParseException e) {
+            return Double.NaN;
+        }
+    }
+
+    private enum Generation { YOUNG, OLD, OTHER }
+
+    private static Generation generationOf(String name) {
+        switch (name) {
+            case "PSYoungGen":
+            case "ParNew":
+            case "DefNew":
+            case "ASParNew":
+                return Generation.YOUNG;
+            case "ParOldGen":
+            case "PSOldGen":
+            case "CMS":
+            case "Tenured":
+            case "ASCMS":
+                return Generation.OLD;
+            default:
+                return Generation.OTHER;
+        }
+    }
+
+    private static long legacyKb(Matcher m, int group) {
+        double value = Double.parseDouble(m.group(group));
+        switch (m.group(group + 1)) {
+            case "B":
+                return (long) (value / 1024);
+            case "M":
+                return (long) (value * 1024);
+            case "G":
+                return (long) (value * 1024 * 1024);
+            default:
+                return (long) value;
+        }
+    }
+
+    static long toKb(long value, String unit) {
+        switch (unit) {
+            case "B":
+                return value / 1024;
+            case "M":
+                return value * 1024;
+            case "G":
+                return value * 1024 * 1024;
+            default:
+                return value;
+        }
+    }
+
+    private static boolean isDigits(String text, int end) {
+        if (end <= 0) {
+            return false;
+        }
+        for (int i = 0; i < end; i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUptime(String text) {
+        int dot = text.indexOf('.');
+        int end = text.length() - 1;
+        if (dot < 0) {
+            return isDigits(text, end);
+        }
+        return isDigits(text, dot) && isDigits(text.substring(dot + 1), end - dot - 1);
+    }
+
+    // 形如 info、gc,heap、safepoint 的级别或标签装饰器
+    private static boolean isTagSet(String text) {
+        if (text.isEmpty() || !Character.isLowerCase(text.charAt(0))) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!(Character.isLowerCase(c) || Character.isDigit(c) || c == ',' || c == '_' || c == ' ')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
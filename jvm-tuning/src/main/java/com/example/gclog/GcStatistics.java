@@ -0,0 +1,255 @@
+package com.example.gclog;
+
+import java.io.PrintStream;
+import java.util.function.Consumer;
+
+/**
+ * 对GC事件做流式汇总，只保存计数器和一个固定大小的直方图
+ */
+public class GcStatistics implements Consumer<GcEvent> {
+    private final String source;
+    private final PauseHistogram pauses = new PauseHistogram();
+
+    private String collector = "Unknown";
+    private long regionSizeKb = -1;
+    private double startSeconds;
+    private double endSeconds;
+
+    private long eventCount;
+    private long fullGcCount;
+    private double totalPauseMillis;
+
+    // 分配速率：本次GC前的堆 - 上次GC后的堆
+    private long lastHeapAfterKb = -1;
+    private long allocatedKb;
+
+    // 晋升速率：只统计能算出晋升量的年轻代GC
+    private long promotedKb;
+    private long promotionSamples;
+
+    // 大对象（humongous）区域
+    private int peakHumongousRegions;
+    private int lastHumongousAfter = -1;
+    private long humongousAllocatedRegions;
+
+    // GC后堆占用的线性趋势（最小二乘），只保存累加和
+    private long trendSamples;
+    private double sumT;
+    private double sumHeap;
+    private double sumTT;
+    private double sumTHeap;
+    private long firstHeapAfterKb = -1;
+
+    private double cpuUserSeconds;
+    private double cpuSysSeconds;
+    private long cpuSamples;
+
+    public GcStatistics(String source) {
+        this.source = source;
+    }
+
+    @Override
+    public void accept(GcEvent event) {
+        eventCount++;
+        if (event.isPause()) {
+            pauses.recordMillis(event.getPauseMillis());
+            totalPauseMillis += event.getPauseMillis();
+            if (event.isFull()) {
+                fullGcCount++;
+            }
+        }
+
+        if (event.hasHeap()) {
+            if (lastHeapAfterKb >= 0 && event.getHeapBeforeKb() > lastHeapAfterKb) {
+                allocatedKb += event.getHeapBeforeKb() - lastHeapAfterKb;
+            }
+            lastHeapAfterKb = event.getHeapAfterKb();
+            recordTrend(event.getTimestampSeconds(), event.getHeapAfterKb());
+        }
+
+        long promoted = event.promotedKb();
+        if (promoted >= 0) {
+            promotedKb += promoted;
+            promotionSamples++;
+        }
+
+        if (event.getHumongousRegionsBefore() >= 0) {
+            peakHumongousRegions = Math.max(peakHumongousRegions, event.getHumongousRegionsBefore());
+            if (lastHumongousAfter >= 0 && event.getHumongousRegionsBefore() > lastHumongousAfter) {
+                humongousAllocatedRegions += event.getHumongousRegionsBefore() - lastHumongousAfter;
+            }
+            lastHumongousAfter = event.getHumongousRegionsAfter();
+        }
+
+        if (event.getCpuUserSeconds() >= 0) {
+            cpuUserSeconds += event.getCpuUserSeconds();
+            cpuSysSeconds += event.getCpuSysSeconds();
+            cpuSamples++;
+        }
+    }
+
+    private void recordTrend(double seconds, long heapAfterKb) {
+        if (Double.isNaN(seconds)) {
+            return;
+        }
+        if (firstHeapAfterKb < 0) {
+            firstHeapAfterKb = heapAfterKb;
+        }
+        trendSamples++;
+        sumT += seconds;
+        sumHeap += heapAfterKb;
+        sumTT += seconds * seconds;
+        sumTHeap += seconds * heapAfterKb;
+    }
+
+    /**
+     * 日志解析结束后调用，记录收集器和时间范围
+     */
+    public void complete(GcLogParser parser) {
+        this.collector = parser.getCollector();
+        this.regionSizeKb = parser.getRegionSizeKb();
+        this.startSeconds = parser.getFirstTimestamp();
+        this.endSeconds = parser.getLastTimestamp();
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getCollector() {
+        return collector;
+    }
+
+    public PauseHistogram getPauses() {
+        return pauses;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public long getFullGcCount() {
+        return fullGcCount;
+    }
+
+    public double getTotalPauseMillis() {
+        return totalPauseMillis;
+    }
+
+    public double getDurationSeconds() {
+        return Math.max(0, endSeconds - startSeconds);
+    }
+
+    /**
+     * 吞吐量：非GC停顿时间占运行时间的比例
+     */
+    public double getThroughput() {
+        double duration = getDurationSeconds();
+        if (duration <= 0) {
+            return 1.0;
+        }
+        return Math.max(0, 1.0 - totalPauseMillis / 1000.0 / duration);
+    }
+
+    public long getAllocatedKb() {
+        return allocatedKb;
+    }
+
+    public double getAllocationRateMbPerSecond() {
+        double duration = getDurationSeconds();
+        return duration <= 0 ? 0 : allocatedKb / 1024.0 / duration;
+    }
+
+    public long getPromotedKb() {
+        return promotedKb;
+    }
+
+    public double getPromotionRateMbPerSecond() {
+        double duration = getDurationSeconds();
+        return duration <= 0 || promotionSamples == 0 ? 0 : promotedKb / 1024.0 / duration;
+    }
+
+    public int getPeakHumongousRegions() {
+        return peakHumongousRegions;
+    }
+
+    public long getHumongousAllocatedRegions() {
+        return humongousAllocatedRegions;
+    }
+
+    public long getRegionSizeKb() {
+        return regionSizeKb;
+    }
+
+    /**
+     * GC后堆占用的变化趋势（MB/分钟），正值表示存活对象在持续增长
+     */
+    public double getHeapAfterGcSlopeMbPerMinute() {
+        if (trendSamples < 2) {
+            return 0;
+        }
+        double denominator = trendSamples * sumTT - sumT * sumT;
+        if (denominator == 0) {
+            return 0;
+        }
+        double kbPerSecond = (trendSamples * sumTHeap - sumT * sumHeap) / denominator;
+        return kbPerSecond * 60 / 1024;
+    }
+
+    public boolean hasHeapTrend() {
+        return trendSamples >= 2;
+    }
+
+    public long getFirstHeapAfterKb() {
+        return firstHeapAfterKb;
+    }
+
+    public long getLastHeapAfterKb() {
+        return lastHeapAfterKb;
+    }
+
+    public boolean hasCpuTimes() {
+        return cpuSamples > 0;
+    }
+
+    public double getCpuSeconds() {
+        return cpuUserSeconds + cpuSysSeconds;
+    }
+
+    /**
+     * GC线程CPU时间占运行时间的比例，1.0表示平均占满一个核
+     */
+    public double getCpuOverhead() {
+        double duration = getDurationSeconds();
+        return duration <= 0 ? 0 : getCpuSeconds() / duration;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("==== GC日志分析: %s ====%n", source);
+        out.printf("收集器: %s%n", collector);
+        out.printf("日志时间跨度: %.3f s, GC事件数: %d, 停顿次数: %d (Full GC: %d)%n",
+                getDurationSeconds(), eventCount, pauses.count(), fullGcCount);
+        out.printf("停顿时间(ms): p50=%.3f p90=%.3f p95=%.3f p99=%.3f p99.9=%.3f max=%.3f avg=%.3f%n",
+                pauses.percentileMillis(50), pauses.percentileMillis(90), pauses.percentileMillis(95),
+                pauses.percentileMillis(99), pauses.percentileMillis(99.9),
+                pauses.maxMicros() / 1000.0, pauses.meanMicros() / 1000.0);
+        out.printf("总停顿时间: %.3f ms, 吞吐量: %.2f%%%n", totalPauseMillis, getThroughput() * 100);
+        out.printf("分配速率: %.2f MB/s (共 %d MB)%n", getAllocationRateMbPerSecond(), allocatedKb / 1024);
+        if (hasHeapTrend()) {
+            out.printf("GC后堆占用: %d MB -> %d MB, 趋势 %+.2f MB/min%n",
+                    firstHeapAfterKb / 1024, lastHeapAfterKb / 1024, getHeapAfterGcSlopeMbPerMinute());
+        }
+        if (promotionSamples > 0) {
+            out.printf("晋升速率: %.2f MB/s (共 %d MB)%n", getPromotionRateMbPerSecond(), promotedKb / 1024);
+        } else {
+            out.println("晋升速率: 日志中无分代信息");
+        }
+        if (peakHumongousRegions > 0 || humongousAllocatedRegions > 0) {
+            out.printf("Humongous区域: 峰值 %d 个, 新分配 %d 个 (region大小 %d KB)%n",
+                    peakHumongousRegions, humongousAllocatedRegions, regionSizeKb);
+        }
+        if (hasCpuTimes()) {
+            out.printf("GC线程CPU时间: user+sys=%.2f s, 平均占用 %.2f 核%n", getCpuSeconds(), getCpuOverhead());
+        }
+    }
+}
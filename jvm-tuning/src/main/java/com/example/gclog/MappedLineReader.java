@@ -0,0 +1,97 @@
+package com.example.gclog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * 基于内存映射的按行读取器
+ * 以固定大小的窗口分段映射文件，文件内容不会整体进入堆内存，
+ * 堆上只保留当前行的字节缓冲，适合读取GB级别的GC日志
+ */
+public class MappedLineReader implements Closeable {
+    // 单个映射窗口大小
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+
+    // 复用的行缓冲，按需扩容
+    private byte[] lineBuffer = new byte[512];
+
+    public MappedLineReader(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedLineReader(Path path, int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    public long size() {
+        return fileSize;
+    }
+
+    /**
+     * 逐行回调，行尾的\r\n或\n会被去掉
+     * 跨越窗口边界的行会从行首重新映射，超过窗口大小的行按窗口大小截断
+     */
+    public void forEachLine(Consumer<String> action) throws IOException {
+        long position = 0;
+        while (position < fileSize) {
+            int length = (int) Math.min(windowSize, fileSize - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            boolean lastWindow = position + length == fileSize;
+
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (window.get(i) == '\n') {
+                    emit(window, lineStart, i, action);
+                    lineStart = i + 1;
+                }
+            }
+
+            if (lastWindow) {
+                if (lineStart < length) {
+                    emit(window, lineStart, length, action);
+                }
+                position = fileSize;
+            } else if (lineStart == 0) {
+                // 整个窗口内没有换行符，按窗口截断
+                emit(window, 0, length, action);
+                position += length;
+            } else {
+                // 未结束的行留到下一个窗口重新读取
+                position += lineStart;
+            }
+        }
+    }
+
+    private void emit(MappedByteBuffer window, int start, int end, Consumer<String> action) {
+        if (end > start && window.get(end - 1) == '\r') {
+            end--;
+        }
+        int length = end - start;
+        if (length > lineBuffer.length) {
+            lineBuffer = new byte[Math.max(length, lineBuffer.length * 2)];
+        }
+        window.position(start);
+        window.get(lineBuffer, 0, length);
+        action.accept(new String(lineBuffer, 0, length, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.gclog;
+
+import java.util.Arrays;
+
+/**
+ * 固定内存的停顿时间直方图（单位：微秒）
+ * 采用对数-线性分桶：小于128us的值精确记录，更大的值按2的幂分段，
+ * 每段再线性切成64个子桶，相对误差不超过1/64，总共不到4000个桶
+ */
+public class PauseHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int MAX_SHIFT = 63 - SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + MAX_SHIFT * HALF_SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long totalMicros;
+    private long minMicros = Long.MAX_VALUE;
+    private long maxMicros;
+
+    public synchronized void record(long micros) {
+        long value = Math.max(0, micros);
+        counts[indexOf(value)]++;
+        totalCount++;
+        totalMicros += value;
+        minMicros = Math.min(minMicros, value);
+        maxMicros = Math.max(maxMicros, value);
+    }
+
+    public void recordMillis(double millis) {
+        record(Math.round(millis * 1000));
+    }
+
+    public synchronized void merge(PauseHistogram other) {
+        PauseHistogram copy = other.copy();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += copy.counts[i];
+        }
+        totalCount += copy.totalCount;
+        totalMicros += copy.totalMicros;
+        minMicros = Math.min(minMicros, copy.minMicros);
+        maxMicros = Math.max(maxMicros, copy.maxMicros);
+    }
+
+    public synchronized PauseHistogram copy() {
+        PauseHistogram copy = new PauseHistogram();
+        System.arraycopy(counts, 0, copy.counts, 0, BUCKET_COUNT);
+        copy.totalCount = totalCount;
+        copy.totalMicros = totalMicros;
+        copy.minMicros = minMicros;
+        copy.maxMicros = maxMicros;
+        return copy;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        totalMicros = 0;
+        minMicros = Long.MAX_VALUE;
+        maxMicros = 0;
+    }
+
+    public synchronized long count() {
+        return totalCount;
+    }
+
+    public synchronized long totalMicros() {
+        return totalMicros;
+    }
+
+    public synchronized long minMicros() {
+        return totalCount == 0 ? 0 : minMicros;
+    }
+
+    public synchronized long maxMicros() {
+        return maxMicros;
+    }
+
+    public synchronized double meanMicros() {
+        return totalCount == 0 ? 0 : (double) totalMicros / totalCount;
+    }
+
+    /**
+     * 返回百分位对应的停顿时间（桶上界，不超过实际最大值）
+     * @param percentile 0-100
+     */
+    public synchronized long percentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100.0 * totalCount);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(maxMicros, Math.max(minMicros, upperBoundOf(i)));
+            }
+        }
+        return maxMicros;
+    }
+
+    public double percentileMillis(double percentile) {
+        return percentile(percentile) / 1000.0;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift) - HALF_SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / HALF_SUB_BUCKET_COUNT + 1;
+        long subBucket = offset % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
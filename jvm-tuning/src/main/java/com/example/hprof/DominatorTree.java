@@ -0,0 +1,178 @@
+package com.example.hprof;
+
+import java.util.Arrays;
+
+/**
+ * 支配树计算（Semi-NCA算法：Lengauer-Tarjan求半支配者，再沿DFS树求最近公共祖先得到直接支配者）
+ * 图以CSR形式给出：节点v的后继为 targets[offsets[v] .. offsets[v+1])。
+ * 后继表和前驱表都在内存映射文件中，后继表会被就地改写；
+ * 节点按DFS先序重新编号，之后的数组都以先序编号为下标，计算期间堆上每个节点约占6个int。
+ * DFS和路径压缩都不递归，不会因对象图过深而栈溢出
+ */
+class DominatorTree {
+    private final int n;
+    private final int root;
+    private final MappedIntArray offsets;
+    private final MappedIntArray targets;
+    private final MappedIntArray preds;
+
+    // 先序编号 -> 节点，只有前reachable个有效
+    private int[] order;
+    // 先序编号 -> 直接支配者的先序编号，根为0
+    private int[] idom;
+    private int reachable;
+    private int[] compressStack = new int[1024];
+
+    /**
+     * @param preds 存放前驱表的映射数组，长度不小于targets中的有效引用数
+     */
+    DominatorTree(int n, int root, MappedIntArray offsets, MappedIntArray targets, MappedIntArray preds) {
+        this.n = n;
+        this.root = root;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.preds = preds;
+    }
+
+    void compute() {
+        order = new int[n];
+        int[] parent = new int[n];
+        int[] semi = new int[n];
+        int[] number = numberNodes(parent, semi);
+
+        // 后继表就地改写为先序编号，不可达的目标记为-1
+        for (int r = 0; r < reachable; r++) {
+            int v = order[r];
+            for (int e = offsets.get(v); e < offsets.get(v + 1); e++) {
+                targets.set(e, number[targets.get(e)]);
+            }
+        }
+        number = null;
+
+        // 前驱表：先计数，前缀和得到起点，填充后整体右移一位还原起点
+        int[] predStart = new int[reachable + 1];
+        for (int r = 0; r < reachable; r++) {
+            int v = order[r];
+            for (int e = offsets.get(v); e < offsets.get(v + 1); e++) {
+                if (targets.get(e) >= 0) {
+                    predStart[targets.get(e) + 1]++;
+                }
+            }
+        }
+        for (int r = 0; r < reachable; r++) {
+            predStart[r + 1] += predStart[r];
+        }
+        for (int r = 0; r < reachable; r++) {
+            int v = order[r];
+            for (int e = offsets.get(v); e < offsets.get(v + 1); e++) {
+                int w = targets.get(e);
+                if (w >= 0) {
+                    preds.set(predStart[w]++, r);
+                }
+            }
+        }
+        System.arraycopy(predStart, 0, predStart, 1, reachable);
+        predStart[0] = 0;
+
+        // 半支配者：按先序倒序处理，处理完的节点链接到DFS森林中
+        int[] ancestor = new int[reachable];
+        int[] label = new int[reachable];
+        Arrays.fill(ancestor, -1);
+        for (int w = 0; w < reachable; w++) {
+            semi[w] = w;
+            label[w] = w;
+        }
+        for (int w = reachable - 1; w > 0; w--) {
+            for (int e = predStart[w]; e < predStart[w + 1]; e++) {
+                int u = eval(preds.get(e), ancestor, label, semi);
+                if (semi[u] < semi[w]) {
+                    semi[w] = semi[u];
+                }
+            }
+            ancestor[w] = parent[w];
+        }
+        label = null;
+
+        // 直接支配者：从DFS父节点沿已求出的支配链上溯，直到不大于半支配者
+        idom = ancestor;
+        idom[0] = 0;
+        for (int w = 1; w < reachable; w++) {
+            int d = parent[w];
+            while (d > semi[w]) {
+                d = idom[d];
+            }
+            idom[w] = d;
+        }
+    }
+
+    // 从根做DFS，parent按先序编号记录；semi在这一阶段暂作每个节点的后继游标
+    private int[] numberNodes(int[] parent, int[] cursor) {
+        int[] number = new int[n];
+        Arrays.fill(number, -1);
+        int count = 0;
+        number[root] = count;
+        order[count] = root;
+        parent[count] = -1;
+        cursor[count] = offsets.get(root);
+        count++;
+        // DFS栈就是当前节点的父链
+        int current = 0;
+        while (current >= 0) {
+            int v = order[current];
+            int e = cursor[current];
+            if (e == offsets.get(v + 1)) {
+                current = parent[current];
+                continue;
+            }
+            cursor[current] = e + 1;
+            int w = targets.get(e);
+            if (number[w] == -1) {
+                number[w] = count;
+                order[count] = w;
+                parent[count] = current;
+                cursor[count] = offsets.get(w);
+                current = count;
+                count++;
+            }
+        }
+        reachable = count;
+        return number;
+    }
+
+    private int eval(int v, int[] ancestor, int[] label, int[] semi) {
+        if (ancestor[v] == -1) {
+            return v;
+        }
+        // 路径压缩：先收集祖先链，再从靠近根的一端向下更新
+        int top = 0;
+        int u = v;
+        while (ancestor[ancestor[u]] != -1) {
+            if (top == compressStack.length) {
+                compressStack = Arrays.copyOf(compressStack, top * 2);
+            }
+            compressStack[top++] = u;
+            u = ancestor[u];
+        }
+        while (top > 0) {
+            int x = compressStack[--top];
+            int a = ancestor[x];
+            if (semi[label[a]] < semi[label[x]]) {
+                label[x] = label[a];
+            }
+            ancestor[x] = ancestor[a];
+        }
+        return label[v];
+    }
+
+    int[] getOrder() {
+        return order;
+    }
+
+    int[] getIdom() {
+        return idom;
+    }
+
+    int getReachable() {
+        return reachable;
+    }
+}
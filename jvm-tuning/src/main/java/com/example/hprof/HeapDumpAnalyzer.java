@@ -0,0 +1,620 @@
+package com.example.hprof;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式HPROF分析工具
+ * 堆转储通过内存映射顺序读取，不整体加载到堆上，按需读三遍：
+ * 第一遍读出类信息、GC Root和类直方图；
+ * 第二遍把对象ID存入按对象数量精确分配的long数组并排序，作为ID到对象编号的索引，
+ * 所属类和浅大小写入内存映射的索引文件；
+ * 第三遍把引用关系转换为按对象编号的CSR数组（同样在索引文件中），求出支配树，
+ * 得到每个对象的保留大小（近似）和顶层支配者。
+ * 只做类直方图时（--histogram）只需第一遍，内存只与类的数量有关；
+ * 计算支配树时堆内存约为每个对象24字节，与对象数量有关而与转储文件大小无关，
+ * 索引文件写在转储文件所在目录，结束后删除。
+ * 运行方式：
+ *    java -Xmx2g -cp target/classes com.example.hprof.HeapDumpAnalyzer dump.hprof [--histogram] [--top=20]
+ */
+public class HeapDumpAnalyzer {
+    // 顶层记录
+    private static final int TAG_STRING = 0x01;
+    private static final int TAG_LOAD_CLASS = 0x02;
+    private static final int TAG_HEAP_DUMP = 0x0C;
+    private static final int TAG_HEAP_DUMP_SEGMENT = 0x1C;
+
+    // HEAP_DUMP中的子记录
+    private static final int ROOT_UNKNOWN = 0xFF;
+    private static final int ROOT_JNI_GLOBAL = 0x01;
+    private static final int ROOT_JNI_LOCAL = 0x02;
+    private static final int ROOT_JAVA_FRAME = 0x03;
+    private static final int ROOT_NATIVE_STACK = 0x04;
+    private static final int ROOT_STICKY_CLASS = 0x05;
+    private static final int ROOT_THREAD_BLOCK = 0x06;
+    private static final int ROOT_MONITOR_USED = 0x07;
+    private static final int ROOT_THREAD_OBJECT = 0x08;
+    private static final int CLASS_DUMP = 0x20;
+    private static final int INSTANCE_DUMP = 0x21;
+    private static final int OBJ_ARRAY_DUMP = 0x22;
+    private static final int PRIM_ARRAY_DUMP = 0x23;
+
+    // 基本类型编码
+    private static final int TYPE_OBJECT = 2;
+    private static final String[] PRIMITIVE_NAMES = {null, null, null, null,
+            "boolean", "char", "float", "double", "byte", "short", "int", "long"};
+    private static final int[] PRIMITIVE_SIZES = {0, 0, 0, 0, 1, 2, 4, 8, 1, 2, 4, 8};
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private enum Pass { HISTOGRAM, OBJECTS, REFERENCES }
+
+    private final Path path;
+    private final boolean dominators;
+    private final HprofInput input;
+    private int idSize;
+
+    private final Map<Long, String> strings = new HashMap<>();
+    private final Map<Long, Long> classNameIds = new HashMap<>();
+    private final Map<Long, ClassInfo> classesById = new HashMap<>();
+    private final List<ClassInfo> classes = new ArrayList<>();
+    private final ClassInfo[] primitiveArrays = new ClassInfo[PRIMITIVE_NAMES.length];
+    private ClassInfo classClass;
+    // Class对象的计数，读完所有类后归入java.lang.Class
+    private long pendingClassObjects;
+    private long pendingClassSize;
+    private long[] rootIds = new long[1024];
+    private int rootCount;
+    // 第一遍统计的引用槽位数，作为第三遍引用数组的容量上限
+    private long classReferenceSlots;
+    private long arrayReferenceSlots;
+
+    // 第二遍：按文件顺序编号的对象；类和浅大小只在最后汇总时按编号读取，放在映射文件中
+    private long[] objectIds;
+    private MappedIntArray objectClasses;
+    private MappedIntArray objectSizes;
+    private int objectCount;
+    // 排序后每个位置对应的文件顺序编号，ID本来有序时为null
+    private int[] perm;
+
+    // 第三遍：引用关系，同样放在映射文件中
+    private MappedIntArray edgeOffsets;
+    private MappedIntArray edges;
+    private int edgeCount;
+    private final List<MappedIntArray> indexFiles = new ArrayList<>();
+
+    private HeapDumpAnalyzer(Path path, boolean dominators) throws IOException {
+        this.path = path;
+        this.dominators = dominators;
+        this.input = new HprofInput(path);
+    }
+
+    public static HeapDumpSummary analyze(Path path, boolean dominators) throws IOException {
+        HeapDumpAnalyzer analyzer = new HeapDumpAnalyzer(path, dominators);
+        try {
+            return analyzer.run();
+        } finally {
+            analyzer.input.close();
+            for (MappedIntArray indexFile : analyzer.indexFiles) {
+                indexFile.close();
+            }
+        }
+    }
+
+    private HeapDumpSummary run() throws IOException {
+        long dataStart = readHeader();
+        scan(dataStart, Pass.HISTOGRAM);
+        resolveClasses();
+        HeapDumpSummary summary = new HeapDumpSummary(path.toString(), input.size(), idSize, classes, rootCount);
+        if (!dominators) {
+            return summary;
+        }
+
+        int total = checkedLength(summary.getObjectCount(), "对象");
+        objectIds = new long[total];
+        objectClasses = indexFile(total);
+        objectSizes = indexFile(total);
+        scan(dataStart, Pass.OBJECTS);
+        sortObjectIds();
+
+        edgeOffsets = indexFile(objectCount + 2);
+        edges = indexFile(checkedLength(referenceSlots(), "引用"));
+        scan(dataStart, Pass.REFERENCES);
+        // 虚拟根节点：指向所有GC Root
+        int superRoot = objectCount;
+        edgeOffsets.set(superRoot, edgeCount);
+        for (int i = 0; i < rootCount; i++) {
+            addEdge(rootIds[i]);
+        }
+        edgeOffsets.set(superRoot + 1, edgeCount);
+        objectIds = null;
+        perm = null;
+        rootIds = null;
+
+        DominatorTree tree = new DominatorTree(objectCount + 1, superRoot, edgeOffsets, edges, indexFile(edgeCount));
+        tree.compute();
+        int[] order = tree.getOrder();
+        int[] idom = tree.getIdom();
+        int reachable = tree.getReachable();
+
+        // 按先序编号倒序累加：被支配的节点编号总大于其直接支配者
+        long[] retained = new long[reachable];
+        for (int r = 1; r < reachable; r++) {
+            retained[r] = objectSizes.get(order[r]);
+        }
+        for (int r = reachable - 1; r > 0; r--) {
+            retained[idom[r]] += retained[r];
+        }
+        Map<Integer, String> classObjects = new HashMap<>();
+        for (ClassInfo info : classes) {
+            if (info.objectIndex >= 0) {
+                classObjects.put(info.objectIndex, info.name);
+            }
+        }
+        summary.setDominators(objectClasses, order, idom, retained, reachable, classObjects);
+        return summary;
+    }
+
+    private long readHeader() throws IOException {
+        String format = input.cString();
+        if (!format.startsWith("JAVA PROFILE")) {
+            throw new IOException("不是HPROF文件: " + path);
+        }
+        idSize = input.u4();
+        input.setIdSize(idSize);
+        input.u8();
+        return input.position();
+    }
+
+    private void scan(long dataStart, Pass pass) throws IOException {
+        input.seek(dataStart);
+        int objectIndex = 0;
+        while (input.hasRemaining()) {
+            int tag = input.u1();
+            input.u4();
+            long length = input.u4() & 0xFFFFFFFFL;
+            long end = input.position() + length;
+            if (tag == TAG_HEAP_DUMP || tag == TAG_HEAP_DUMP_SEGMENT) {
+                if (pass == Pass.REFERENCES) {
+                    objectIndex = scanReferences(end, objectIndex);
+                } else {
+                    scanHeap(end, pass == Pass.HISTOGRAM);
+                }
+            } else if (pass == Pass.HISTOGRAM && tag == TAG_STRING) {
+                long id = input.id();
+                strings.put(id, input.utf8((int) (length - idSize)));
+            } else if (pass == Pass.HISTOGRAM && tag == TAG_LOAD_CLASS) {
+                input.u4();
+                long classId = input.id();
+                input.u4();
+                classNameIds.put(classId, input.id());
+            }
+            input.seek(end);
+        }
+    }
+
+    // 第一遍统计类、GC Root和直方图；第二遍记录每个对象的ID、类和浅大小
+    private void scanHeap(long end, boolean histogram) throws IOException {
+        while (input.position() < end) {
+            int sub = input.u1();
+            switch (sub) {
+                case CLASS_DUMP: {
+                    long classId = input.id();
+                    ClassInfo info = classFor(classId);
+                    input.u4();
+                    info.superId = input.id();
+                    input.id();
+                    input.skip(4L * idSize);
+                    input.u4();
+                    // 父类、类加载器，再加上常量池和静态字段中的引用
+                    int references = 2;
+                    int constants = input.u2();
+                    for (int i = 0; i < constants; i++) {
+                        input.u2();
+                        int type = input.u1();
+                        references += type == TYPE_OBJECT ? 1 : 0;
+                        input.skip(valueSize(type));
+                    }
+                    int staticSize = 0;
+                    int statics = input.u2();
+                    for (int i = 0; i < statics; i++) {
+                        input.id();
+                        int type = input.u1();
+                        references += type == TYPE_OBJECT ? 1 : 0;
+                        int size = valueSize(type);
+                        input.skip(size);
+                        staticSize += size;
+                    }
+                    int fields = input.u2();
+                    byte[] types = new byte[fields];
+                    for (int i = 0; i < fields; i++) {
+                        input.id();
+                        types[i] = (byte) input.u1();
+                    }
+                    if (histogram) {
+                        info.fieldTypes = types;
+                        classReferenceSlots += references;
+                        // Class对象归入java.lang.Class，要等所有类读完才能确定
+                        pendingClassObjects++;
+                        pendingClassSize += align(objectHeader() + staticSize);
+                    } else {
+                        info.objectIndex = objectCount;
+                        addObject(classId, classClass.index, align(objectHeader() + staticSize));
+                    }
+                    break;
+                }
+                case INSTANCE_DUMP: {
+                    long id = input.id();
+                    input.u4();
+                    ClassInfo info = classFor(input.id());
+                    int size = input.u4();
+                    input.skip(size);
+                    record(histogram, id, info, align(objectHeader() + size));
+                    break;
+                }
+                case OBJ_ARRAY_DUMP: {
+                    long id = input.id();
+                    input.u4();
+                    int length = input.u4();
+                    ClassInfo info = classFor(input.id());
+                    input.skip((long) length * idSize);
+                    if (histogram) {
+                        arrayReferenceSlots += length;
+                    }
+                    record(histogram, id, info, align(arrayHeader() + (long) length * idSize));
+                    break;
+                }
+                case PRIM_ARRAY_DUMP: {
+                    long id = input.id();
+                    input.u4();
+                    int length = input.u4();
+                    int type = input.u1();
+                    long bytes = (long) length * valueSize(type);
+                    input.skip(bytes);
+                    record(histogram, id, primitiveArray(type), align(arrayHeader() + bytes));
+                    break;
+                }
+                default:
+                    readRoot(sub, histogram);
+            }
+        }
+    }
+
+    private void record(boolean histogram, long id, ClassInfo info, long size) {
+        if (histogram) {
+            info.count++;
+            info.shallowSize += size;
+        } else {
+            addObject(id, info.index, size);
+        }
+    }
+
+    // 第三遍：按与第二遍相同的顺序读出每个对象的引用
+    private int scanReferences(long end, int objectIndex) throws IOException {
+        while (input.position() < end) {
+            int sub = input.u1();
+            switch (sub) {
+                case CLASS_DUMP: {
+                    edgeOffsets.set(objectIndex++, edgeCount);
+                    input.id();
+                    input.u4();
+                    addEdge(input.id());
+                    addEdge(input.id());
+                    input.skip(4L * idSize);
+                    input.u4();
+                    int constants = input.u2();
+                    for (int i = 0; i < constants; i++) {
+                        input.u2();
+                        readValue(input.u1());
+                    }
+                    int statics = input.u2();
+                    for (int i = 0; i < statics; i++) {
+                        input.id();
+                        readValue(input.u1());
+                    }
+                    input.skip((long) input.u2() * (idSize + 1));
+                    break;
+                }
+                case INSTANCE_DUMP: {
+                    edgeOffsets.set(objectIndex++, edgeCount);
+                    input.id();
+                    input.u4();
+                    ClassInfo info = classesById.get(input.id());
+                    int size = input.u4();
+                    long dataEnd = input.position() + size;
+                    // 实例数据先是本类字段，再依次是各级父类字段
+                    for (ClassInfo c = info; c != null && input.position() < dataEnd; c = c.superClass) {
+                        for (byte type : c.fieldTypes) {
+                            readValue(type);
+                        }
+                    }
+                    input.seek(dataEnd);
+                    break;
+                }
+                case OBJ_ARRAY_DUMP: {
+                    edgeOffsets.set(objectIndex++, edgeCount);
+                    input.id();
+                    input.u4();
+                    int length = input.u4();
+                    input.id();
+                    for (int i = 0; i < length; i++) {
+                        addEdge(input.id());
+                    }
+                    break;
+                }
+                case PRIM_ARRAY_DUMP: {
+                    edgeOffsets.set(objectIndex++, edgeCount);
+                    input.id();
+                    input.u4();
+                    int length = input.u4();
+                    input.skip((long) length * valueSize(input.u1()));
+                    break;
+                }
+                default:
+                    readRoot(sub, false);
+            }
+        }
+        return objectIndex;
+    }
+
+    private void readRoot(int sub, boolean record) throws IOException {
+        long id = input.id();
+        switch (sub) {
+            case ROOT_UNKNOWN:
+            case ROOT_STICKY_CLASS:
+            case ROOT_MONITOR_USED:
+                break;
+            case ROOT_JNI_GLOBAL:
+                input.id();
+                break;
+            case ROOT_NATIVE_STACK:
+            case ROOT_THREAD_BLOCK:
+                input.u4();
+                break;
+            case ROOT_JNI_LOCAL:
+            case ROOT_JAVA_FRAME:
+            case ROOT_THREAD_OBJECT:
+                input.u4();
+                input.u4();
+                break;
+            default:
+                throw new IOException(String.format("无法识别的堆记录类型 0x%02X, 位置 %d", sub, input.position()));
+        }
+        if (record) {
+            if (rootCount == rootIds.length) {
+                rootIds = Arrays.copyOf(rootIds, rootIds.length * 2);
+            }
+            rootIds[rootCount++] = id;
+        }
+    }
+
+    // 读取一个字段值，对象引用记为一条边
+    private void readValue(int type) throws IOException {
+        if (type == TYPE_OBJECT) {
+            addEdge(input.id());
+        } else {
+            input.skip(valueSize(type));
+        }
+    }
+
+    private void addObject(long id, int classIndex, long size) {
+        objectIds[objectCount] = id;
+        objectClasses.set(objectCount, classIndex);
+        objectSizes.set(objectCount, (int) Math.min(Integer.MAX_VALUE, size));
+        objectCount++;
+    }
+
+    private void addEdge(long id) {
+        if (id == 0) {
+            return;
+        }
+        int target = indexOf(id);
+        if (target >= 0) {
+            edges.set(edgeCount++, target);
+        }
+    }
+
+    // 在排好序的对象ID中二分查找，返回对象的文件顺序编号
+    private int indexOf(long id) {
+        int pos = Arrays.binarySearch(objectIds, 0, objectCount, id);
+        if (pos < 0) {
+            return -1;
+        }
+        return perm == null ? pos : perm[pos];
+    }
+
+    /**
+     * 对象ID按升序排序；HotSpot按地址顺序遍历堆，ID通常本来就有序，这时不需要perm
+     */
+    private void sortObjectIds() {
+        boolean sorted = true;
+        for (int i = 1; i < objectCount && sorted; i++) {
+            sorted = objectIds[i - 1] < objectIds[i];
+        }
+        if (sorted) {
+            return;
+        }
+        perm = new int[objectCount];
+        for (int i = 0; i < objectCount; i++) {
+            perm[i] = i;
+        }
+        PrimitiveSort.sort(objectIds, perm, objectCount);
+    }
+
+    // 引用槽位数上限：实例按类的引用字段数计，对象数组按长度计
+    private long referenceSlots() {
+        long slots = classReferenceSlots + arrayReferenceSlots + rootCount;
+        for (ClassInfo info : classes) {
+            int fields = 0;
+            for (ClassInfo c = info; c != null; c = c.superClass) {
+                for (byte type : c.fieldTypes) {
+                    fields += type == TYPE_OBJECT ? 1 : 0;
+                }
+            }
+            slots += info.count * fields;
+        }
+        return slots;
+    }
+
+    // 索引文件放在转储文件所在目录，生产机上通常只有这里有足够的磁盘空间
+    private MappedIntArray indexFile(int length) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        MappedIntArray array = new MappedIntArray(directory, length);
+        indexFiles.add(array);
+        return array;
+    }
+
+    private static int checkedLength(long length, String what) {
+        if (length > MAX_ARRAY_LENGTH) {
+            throw new IllegalStateException(what + "数量超过上限: " + length);
+        }
+        return (int) length;
+    }
+
+    private ClassInfo classFor(long classId) {
+        ClassInfo info = classesById.get(classId);
+        if (info == null) {
+            info = new ClassInfo(classes.size(), classId);
+            classesById.put(classId, info);
+            classes.add(info);
+        }
+        return info;
+    }
+
+    private ClassInfo primitiveArray(int type) {
+        if (primitiveArrays[type] == null) {
+            ClassInfo info = new ClassInfo(classes.size(), 0);
+            info.name = PRIMITIVE_NAMES[type] + "[]";
+            primitiveArrays[type] = info;
+            classes.add(info);
+        }
+        return primitiveArrays[type];
+    }
+
+    private void resolveClasses() {
+        for (ClassInfo info : classes) {
+            if (info.name == null) {
+                Long nameId = classNameIds.get(info.id);
+                String name = nameId == null ? null : strings.get(nameId);
+                info.name = name == null ? String.format("unknown@0x%x", info.id) : toJavaName(name);
+            }
+            info.superClass = classesById.get(info.superId);
+            if ("java.lang.Class".equals(info.name)) {
+                classClass = info;
+            }
+        }
+        if (classClass == null) {
+            classClass = new ClassInfo(classes.size(), 0);
+            classClass.name = "java.lang.Class";
+            classes.add(classClass);
+        }
+        classClass.count += pendingClassObjects;
+        classClass.shallowSize += pendingClassSize;
+        strings.clear();
+        classNameIds.clear();
+    }
+
+    // java/lang/String -> java.lang.String, [Ljava/lang/Object; -> java.lang.Object[]
+    static String toJavaName(String name) {
+        int dims = 0;
+        while (dims < name.length() && name.charAt(dims) == '[') {
+            dims++;
+        }
+        String element = name.substring(dims);
+        if (dims > 0) {
+            if (element.startsWith("L") && element.endsWith(";")) {
+                element = element.substring(1, element.length() - 1);
+            } else if (element.length() == 1) {
+                element = primitiveName(element.charAt(0));
+            }
+        }
+        StringBuilder sb = new StringBuilder(element.replace('/', '.'));
+        for (int i = 0; i < dims; i++) {
+            sb.append("[]");
+        }
+        return sb.toString();
+    }
+
+    private static String primitiveName(char descriptor) {
+        switch (descriptor) {
+            case 'Z': return "boolean";
+            case 'C': return "char";
+            case 'F': return "float";
+            case 'D': return "double";
+            case 'B': return "byte";
+            case 'S': return "short";
+            case 'I': return "int";
+            case 'J': return "long";
+            default: return String.valueOf(descriptor);
+        }
+    }
+
+    private int valueSize(int type) throws IOException {
+        if (type == TYPE_OBJECT) {
+            return idSize;
+        }
+        if (type < 4 || type >= PRIMITIVE_SIZES.length) {
+            throw new IOException("无法识别的字段类型 " + type + ", 位置 " + input.position());
+        }
+        return PRIMITIVE_SIZES[type];
+    }
+
+    // 浅大小按64位JVM估算，引用按HPROF中的标识符长度计，开启压缩指针时会略偏大
+    private int objectHeader() {
+        return idSize == 8 ? 16 : 8;
+    }
+
+    private int arrayHeader() {
+        return idSize == 8 ? 16 : 12;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * 类的信息和直方图计数
+     */
+    static class ClassInfo {
+        final int index;
+        final long id;
+        String name;
+        long superId;
+        ClassInfo superClass;
+        // Class对象自身的文件顺序编号
+        int objectIndex = -1;
+        byte[] fieldTypes = new byte[0];
+        long count;
+        long shallowSize;
+
+        ClassInfo(int index, long id) {
+            this.index = index;
+            this.id = id;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("用法: HeapDumpAnalyzer <hprof文件> [--histogram] [--top=20]");
+            return;
+        }
+        boolean histogramOnly = false;
+        int top = 20;
+        for (int i = 1; i < args.length; i++) {
+            if ("--histogram".equals(args[i])) {
+                histogramOnly = true;
+            } else if (args[i].startsWith("--top=")) {
+                top = Integer.parseInt(args[i].substring("--top=".length()));
+            }
+        }
+        long start = System.nanoTime();
+        HeapDumpSummary summary = analyze(Paths.get(args[0]), !histogramOnly);
+        summary.print(System.out, top);
+        System.out.printf("分析耗时: %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
+}
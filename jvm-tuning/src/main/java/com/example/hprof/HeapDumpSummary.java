@@ -0,0 +1,197 @@
+package com.example.hprof;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 堆转储分析结果：类直方图，以及（可选的）保留大小和顶层支配者
+ */
+public class HeapDumpSummary {
+    // 最多保留的顶层支配者数量
+    private static final int MAX_DOMINATORS = 100;
+
+    private final String source;
+    private final long fileSize;
+    private final int idSize;
+    private final int rootCount;
+    private final List<ClassRow> classes = new ArrayList<>();
+    private final List<DominatorRow> dominators = new ArrayList<>();
+    private boolean hasDominators;
+    private long reachableObjects;
+    private long reachableSize;
+    private long unreachableObjects;
+    private long unreachableSize;
+
+    HeapDumpSummary(String source, long fileSize, int idSize, List<HeapDumpAnalyzer.ClassInfo> classInfos,
+                    int rootCount) {
+        this.source = source;
+        this.fileSize = fileSize;
+        this.idSize = idSize;
+        this.rootCount = rootCount;
+        for (HeapDumpAnalyzer.ClassInfo info : classInfos) {
+            classes.add(new ClassRow(info.name, info.count, info.shallowSize));
+        }
+    }
+
+    /**
+     * 类的保留大小取该类中直接支配者不是同类对象的那些对象的保留大小之和，
+     * 链表这类自身嵌套的结构不会重复计算，但不同类之间的包含关系仍会重复，因此是近似值
+     */
+    void setDominators(MappedIntArray objectClasses, int[] order, int[] idom, long[] retained, int reachable,
+                       Map<Integer, String> classObjects) {
+        hasDominators = true;
+        reachableObjects = reachable - 1;
+        reachableSize = retained[0];
+        unreachableObjects = getObjectCount() - reachableObjects;
+        unreachableSize = Math.max(0, getShallowSize() - reachableSize);
+        long[] classRetained = new long[classes.size()];
+        PriorityQueue<Integer> top = new PriorityQueue<>(Comparator.comparingLong(r -> retained[r]));
+        // 编号0是虚拟根，直接支配者为0的就是顶层支配者
+        for (int r = 1; r < reachable; r++) {
+            int objectClass = objectClasses.get(order[r]);
+            int dominator = idom[r];
+            if (dominator == 0 || objectClasses.get(order[dominator]) != objectClass) {
+                classRetained[objectClass] += retained[r];
+            }
+            if (dominator == 0) {
+                top.add(r);
+                if (top.size() > MAX_DOMINATORS) {
+                    top.poll();
+                }
+            }
+        }
+        for (int i = 0; i < classes.size(); i++) {
+            classes.get(i).retainedSize = classRetained[i];
+        }
+        while (!top.isEmpty()) {
+            int r = top.poll();
+            int object = order[r];
+            // Class对象显示为它所代表的类，通常是静态字段持有了大量对象
+            String name = classObjects.containsKey(object)
+                    ? "class " + classObjects.get(object) : classes.get(objectClasses.get(object)).name;
+            dominators.add(0, new DominatorRow(name, retained[r]));
+        }
+    }
+
+    public List<ClassRow> getClasses() {
+        return classes;
+    }
+
+    public List<DominatorRow> getDominators() {
+        return dominators;
+    }
+
+    public boolean hasDominators() {
+        return hasDominators;
+    }
+
+    public long getObjectCount() {
+        long count = 0;
+        for (ClassRow row : classes) {
+            count += row.count;
+        }
+        return count;
+    }
+
+    public long getShallowSize() {
+        long size = 0;
+        for (ClassRow row : classes) {
+            size += row.shallowSize;
+        }
+        return size;
+    }
+
+    public void print(PrintStream out, int topN) {
+        out.printf("==== 堆转储分析: %s ====%n", source);
+        out.printf("文件大小: %d MB, 标识符长度: %d, GC Root: %d, 类: %d%n",
+                fileSize / 1024 / 1024, idSize, rootCount, classes.size());
+        out.printf("对象数: %d, 浅大小合计: %d MB%n", getObjectCount(), getShallowSize() / 1024 / 1024);
+        if (hasDominators) {
+            out.printf("可达对象: %d (%d MB), 不可达对象: %d (%d MB)%n",
+                    reachableObjects, reachableSize / 1024 / 1024, unreachableObjects, unreachableSize / 1024 / 1024);
+        }
+
+        List<ClassRow> rows = new ArrayList<>(classes);
+        rows.sort(Comparator.comparingLong(ClassRow::getShallowSize).reversed());
+        out.println("---- 类直方图（按浅大小）----");
+        if (hasDominators) {
+            out.printf("%12s %14s %14s  %s%n", "实例数", "浅大小", "保留大小(近似)", "类名");
+        } else {
+            out.printf("%12s %14s  %s%n", "实例数", "浅大小", "类名");
+        }
+        for (int i = 0; i < Math.min(topN, rows.size()); i++) {
+            ClassRow row = rows.get(i);
+            if (hasDominators) {
+                out.printf("%12d %14d %14d  %s%n", row.count, row.shallowSize, row.retainedSize, row.name);
+            } else {
+                out.printf("%12d %14d  %s%n", row.count, row.shallowSize, row.name);
+            }
+        }
+
+        if (hasDominators) {
+            out.println("---- 顶层支配者（按保留大小）----");
+            for (int i = 0; i < Math.min(topN, dominators.size()); i++) {
+                DominatorRow row = dominators.get(i);
+                out.printf("%14d %6.2f%%  %s%n", row.retainedSize,
+                        reachableSize == 0 ? 0 : row.retainedSize * 100.0 / reachableSize, row.className);
+            }
+        }
+    }
+
+    /**
+     * 类直方图的一行
+     */
+    public static class ClassRow {
+        private final String name;
+        private final long count;
+        private final long shallowSize;
+        private long retainedSize;
+
+        ClassRow(String name, long count, long shallowSize) {
+            this.name = name;
+            this.count = count;
+            this.shallowSize = shallowSize;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getShallowSize() {
+            return shallowSize;
+        }
+
+        public long getRetainedSize() {
+            return retainedSize;
+        }
+    }
+
+    /**
+     * 直接被GC Root支配的对象
+     */
+    public static class DominatorRow {
+        private final String className;
+        private final long retainedSize;
+
+        DominatorRow(String className, long retainedSize) {
+            this.className = className;
+            this.retainedSize = retainedSize;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public long getRetainedSize() {
+            return retainedSize;
+        }
+    }
+}
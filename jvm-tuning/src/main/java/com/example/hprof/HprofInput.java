@@ -0,0 +1,146 @@
+package com.example.hprof;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于内存映射的HPROF顺序读取
+ * 以固定大小的窗口分段映射文件，读取跨越窗口末尾时从当前位置重新映射，
+ * 文件内容不进入堆内存，可以读取比自身-Xmx大得多的堆转储
+ */
+class HprofInput implements Closeable {
+    private static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLength;
+    // 最近一次读取在窗口内的偏移
+    private int lastOffset;
+    private long position;
+    private int idSize = 8;
+
+    HprofInput(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    HprofInput(Path path, int windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    long size() {
+        return fileSize;
+    }
+
+    long position() {
+        return position;
+    }
+
+    boolean hasRemaining() {
+        return position < fileSize;
+    }
+
+    void seek(long newPosition) {
+        position = newPosition;
+    }
+
+    void skip(long bytes) {
+        position += bytes;
+    }
+
+    int getIdSize() {
+        return idSize;
+    }
+
+    void setIdSize(int idSize) {
+        if (idSize != 4 && idSize != 8) {
+            throw new IllegalStateException("不支持的标识符长度: " + idSize);
+        }
+        this.idSize = idSize;
+    }
+
+    // 保证[position, position+bytes)在当前窗口内
+    private int ensure(int bytes) throws IOException {
+        if (position < windowStart || position + bytes > windowStart + windowLength) {
+            if (position + bytes > fileSize) {
+                throw new IOException("HPROF文件意外结束, 位置 " + position);
+            }
+            windowStart = position;
+            windowLength = (int) Math.min(windowSize, fileSize - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            window.order(ByteOrder.BIG_ENDIAN);
+        }
+        int offset = (int) (position - windowStart);
+        position += bytes;
+        return offset;
+    }
+
+    int u1() throws IOException {
+        return window(1).get(lastOffset) & 0xFF;
+    }
+
+    int u2() throws IOException {
+        return window(2).getShort(lastOffset) & 0xFFFF;
+    }
+
+    int u4() throws IOException {
+        return window(4).getInt(lastOffset);
+    }
+
+    long u8() throws IOException {
+        return window(8).getLong(lastOffset);
+    }
+
+    long id() throws IOException {
+        return idSize == 8 ? u8() : u4() & 0xFFFFFFFFL;
+    }
+
+    String utf8(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        // 按窗口分段复制，长度可以超过窗口大小
+        int copied = 0;
+        while (copied < length) {
+            int chunk = (int) Math.min(length - copied, Math.min(windowSize, fileSize - position));
+            if (chunk <= 0) {
+                throw new IOException("HPROF文件意外结束, 位置 " + position);
+            }
+            window(chunk).position(lastOffset);
+            window.get(bytes, copied, chunk);
+            copied += chunk;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 以null结尾的字符串，只用于文件头
+     */
+    String cString() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = u1()) != 0) {
+            sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+    private MappedByteBuffer window(int bytes) throws IOException {
+        lastOffset = ensure(bytes);
+        return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.hprof;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 存放在内存映射临时文件中的int数组
+ * 不占用堆内存，由操作系统按需换入换出，关闭时删除文件；按1GB分段映射，总长度不受2GB限制
+ */
+final class MappedIntArray implements Closeable {
+    private static final int SEGMENT_SHIFT = 28;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private final FileChannel channel;
+    private final IntBuffer[] segments;
+    private final int length;
+
+    MappedIntArray(Path directory, int length) throws IOException {
+        Path file = Files.createTempFile(directory, "hprof-", ".index");
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        this.length = length;
+        int count = Math.max(1, (int) (((long) length + SEGMENT_MASK) >>> SEGMENT_SHIFT));
+        this.segments = new IntBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            long ints = Math.max(0, Math.min(1L << SEGMENT_SHIFT, length - start));
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start * 4, ints * 4)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+
+    int get(int index) {
+        return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+    }
+
+    void set(int index, int value) {
+        segments[index >>> SEGMENT_SHIFT].put(index & SEGMENT_MASK, value);
+    }
+
+    int length() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
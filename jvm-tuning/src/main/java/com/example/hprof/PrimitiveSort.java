@@ -0,0 +1,75 @@
+package com.example.hprof;
+
+/**
+ * long键与int值两个平行数组的原地排序，避免为上亿个对象创建包装对象
+ */
+final class PrimitiveSort {
+    private static final int INSERTION_THRESHOLD = 16;
+
+    private PrimitiveSort() {
+    }
+
+    static void sort(long[] keys, int[] values, int length) {
+        quickSort(keys, values, 0, length - 1);
+    }
+
+    // 三数取中快速排序：对较小的一侧递归，较大的一侧循环，递归深度不超过log(n)
+    private static void quickSort(long[] keys, int[] values, int lo, int hi) {
+        while (hi - lo > INSERTION_THRESHOLD) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < keys[lo]) {
+                swap(keys, values, mid, lo);
+            }
+            if (keys[hi] < keys[lo]) {
+                swap(keys, values, hi, lo);
+            }
+            if (keys[hi] < keys[mid]) {
+                swap(keys, values, hi, mid);
+            }
+            long pivot = keys[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (j - lo < hi - i) {
+                quickSort(keys, values, lo, j);
+                lo = i;
+            } else {
+                quickSort(keys, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            long key = keys[i];
+            int value = values[i];
+            int j = i - 1;
+            while (j >= lo && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private static void swap(long[] keys, int[] values, int a, int b) {
+        long k = keys[a];
+        keys[a] = keys[b];
+        keys[b] = k;
+        int v = values[a];
+        values[a] = values[b];
+        values[b] = v;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.jfr;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * 在JFR事件流下运行任意示例，退出时输出汇总
+ * 用法: java -cp target/classes com.example.jfr.JfrProfiledRun com.example.GCCollectorDemo [参数...]
+ * 可选参数:
+ *   -Djfr.summary=<文件>        汇总同时写入文件
+ *   -Djfr.dump=<文件>           同时保存原始录制(.jfr)，可用JMC打开
+ *   -Djfr.monitor.threshold.ms  只统计阻塞超过该毫秒数的监视器竞争，默认10
+ *   -Djfr.top                   每个列表显示的行数，默认20
+ * 示例调用System.exit时由关闭钩子输出汇总
+ */
+public class JfrProfiledRun {
+
+    public static void main(String[] args) throws Throwable {
+        if (args.length < 1) {
+            System.out.println("用法: JfrProfiledRun <主类> [参数...]");
+            return;
+        }
+        Method main = Class.forName(args[0]).getMethod("main", String[].class);
+        String[] targetArgs = Arrays.copyOfRange(args, 1, args.length);
+
+        long thresholdMillis = Long.getLong("jfr.monitor.threshold.ms", 10);
+        JfrProfiler profiler = new JfrProfiler(Duration.ofMillis(thresholdMillis)).start();
+        Thread hook = new Thread(() -> finish(profiler), "jfr-summary");
+        Runtime.getRuntime().addShutdownHook(hook);
+
+        System.out.println("JFR事件流已开启，运行 " + args[0]);
+        try {
+            main.invoke(null, (Object) targetArgs);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            Runtime.getRuntime().removeShutdownHook(hook);
+            finish(profiler);
+        }
+    }
+
+    private static void finish(JfrProfiler profiler) {
+        String dump = System.getProperty("jfr.dump");
+        String summary = System.getProperty("jfr.summary");
+        int top = Integer.getInteger("jfr.top", 20);
+        try {
+            profiler.stop(dump == null ? null : Paths.get(dump));
+        } catch (IOException e) {
+            System.err.println("保存JFR录制失败: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        profiler.printSummary(System.out, top);
+        if (summary != null) {
+            Path file = Paths.get(summary);
+            try (PrintStream out = new PrintStream(file.toFile(), StandardCharsets.UTF_8)) {
+                profiler.printSummary(out, top);
+                System.out.println("JFR汇总已写入: " + file.toAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("写入JFR汇总失败: " + e.getMessage());
+            }
+        }
+    }
+}
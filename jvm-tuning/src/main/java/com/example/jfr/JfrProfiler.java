@@ -0,0 +1,220 @@
+package com.example.jfr;
+
+import com.example.gclog.PauseHistogram;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内JFR事件流
+ * 用RecordingStream在本进程内开启录制并实时消费事件，只保留聚合结果：
+ * 按调用栈汇总的分配采样、TLAB内外的分配、GC各阶段耗时、监视器阻塞时间。
+ * 事件在单独的线程中处理，不需要jcmd attach，也不需要事后解析.jfr文件
+ */
+public class JfrProfiler implements AutoCloseable {
+    // 调用栈只保留栈顶若干帧，相同的栈合并
+    private static final int STACK_DEPTH = 5;
+    // 聚合表的上限，超出后新出现的栈计入"<其他>"
+    private static final int MAX_KEYS = 10_000;
+    private static final String OTHER = "<其他>";
+
+    private final RecordingStream stream = new RecordingStream();
+    private final CountDownLatch flushed = new CountDownLatch(1);
+    private final long startNanos = System.nanoTime();
+
+    // 以下状态由事件流线程更新，读写都加锁
+    private final Map<String, long[]> allocationByStack = new HashMap<>();
+    private long sampledAllocationBytes;
+    private long tlabCount;
+    private long tlabBytes;
+    private long outsideTlabCount;
+    private long outsideTlabBytes;
+    private final Map<String, PauseHistogram> gcPhases = new HashMap<>();
+    private final Map<String, PauseHistogram> gcPauses = new HashMap<>();
+    private final Map<String, long[]> monitorBlocked = new HashMap<>();
+    private boolean closed;
+
+    /**
+     * @param monitorThreshold 只记录阻塞超过该时长的监视器竞争
+     */
+    public JfrProfiler(Duration monitorThreshold) {
+        stream.enable("jdk.ObjectAllocationSample").withStackTrace();
+        stream.enable("jdk.ObjectAllocationInNewTLAB").withoutStackTrace();
+        stream.enable("jdk.ObjectAllocationOutsideTLAB").withoutStackTrace();
+        stream.enable("jdk.GarbageCollection");
+        stream.enable("jdk.GCPhasePause");
+        stream.enable("jdk.GCPhasePauseLevel1");
+        stream.enable("jdk.JavaMonitorEnter").withThreshold(monitorThreshold).withStackTrace();
+        stream.enable(FlushMarker.class);
+
+        stream.onEvent("jdk.ObjectAllocationSample", this::onAllocationSample);
+        stream.onEvent("jdk.ObjectAllocationInNewTLAB", e -> onTlab(e.getLong("tlabSize"), true));
+        stream.onEvent("jdk.ObjectAllocationOutsideTLAB", e -> onTlab(e.getLong("allocationSize"), false));
+        stream.onEvent("jdk.GarbageCollection", e ->
+                record(gcPauses, e.getString("name"), e.getDuration("sumOfPauses")));
+        stream.onEvent("jdk.GCPhasePause", e -> record(gcPhases, e.getString("name"), e.getDuration()));
+        stream.onEvent("jdk.GCPhasePauseLevel1", e -> record(gcPhases, "  " + e.getString("name"), e.getDuration()));
+        stream.onEvent("jdk.JavaMonitorEnter", this::onMonitorEnter);
+        stream.onEvent(FlushMarker.NAME, e -> flushed.countDown());
+    }
+
+    public JfrProfiler start() {
+        stream.startAsync();
+        return this;
+    }
+
+    private synchronized void onAllocationSample(RecordedEvent event) {
+        // weight是该采样代表的分配字节数
+        long weight = event.getLong("weight");
+        sampledAllocationBytes += weight;
+        RecordedClass type = event.getClass("objectClass");
+        String key = (type == null ? "?" : type.getName()) + " <- " + stackKey(event.getStackTrace());
+        add(allocationByStack, key, weight);
+    }
+
+    private synchronized void onTlab(long bytes, boolean inNewTlab) {
+        if (inNewTlab) {
+            tlabCount++;
+            tlabBytes += bytes;
+        } else {
+            outsideTlabCount++;
+            outsideTlabBytes += bytes;
+        }
+    }
+
+    private synchronized void onMonitorEnter(RecordedEvent event) {
+        RecordedClass monitor = event.getClass("monitorClass");
+        String key = (monitor == null ? "?" : monitor.getName()) + " <- " + stackKey(event.getStackTrace());
+        add(monitorBlocked, key, event.getDuration().toNanos());
+    }
+
+    private synchronized void record(Map<String, PauseHistogram> target, String name, Duration duration) {
+        target.computeIfAbsent(name, k -> new PauseHistogram()).record(duration.toNanos() / 1000);
+    }
+
+    // value[0]为累计值，value[1]为次数
+    private static void add(Map<String, long[]> target, String key, long amount) {
+        long[] value = target.get(key);
+        if (value == null) {
+            value = target.computeIfAbsent(target.size() < MAX_KEYS ? key : OTHER, k -> new long[2]);
+        }
+        value[0] += amount;
+        value[1]++;
+    }
+
+    private static String stackKey(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "<无调用栈>";
+        }
+        StringBuilder sb = new StringBuilder();
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        for (int i = 0; i < Math.min(STACK_DEPTH, frames.size()); i++) {
+            RecordedFrame frame = frames.get(i);
+            if (i > 0) {
+                sb.append(" <- ");
+            }
+            sb.append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 等待已产生的事件处理完，然后停止录制；可选地把原始录制保存为.jfr文件
+     */
+    public void stop(Path recordingFile) throws IOException, InterruptedException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        // 提交一个标记事件，事件流处理到它时说明之前的事件都已消费
+        new FlushMarker().commit();
+        if (!flushed.await(5, TimeUnit.SECONDS)) {
+            System.err.println("JFR事件流在5秒内未处理完，汇总可能不完整");
+        }
+        if (recordingFile != null) {
+            stream.dump(recordingFile);
+        }
+        stream.close();
+    }
+
+    // 不抛出InterruptedException：try-with-resources里被中断时只恢复中断标记
+    @Override
+    public void close() throws IOException {
+        try {
+            stop(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized void printSummary(PrintStream out, int top) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        out.printf("==== JFR汇总（%.1f 秒）====%n", seconds);
+
+        out.printf("---- 分配采样：共 %d MB，按调用栈 ----%n", sampledAllocationBytes / 1024 / 1024);
+        for (Map.Entry<String, long[]> entry : topEntries(allocationByStack, top)) {
+            out.printf("%10d KB %6.2f%%  %s%n", entry.getValue()[0] / 1024,
+                    sampledAllocationBytes == 0 ? 0 : entry.getValue()[0] * 100.0 / sampledAllocationBytes,
+                    entry.getKey());
+        }
+
+        long tlabTotal = tlabBytes + outsideTlabBytes;
+        out.println("---- TLAB ----");
+        out.printf("新TLAB: %d 个, 平均 %d KB; TLAB外分配: %d 次, %d MB (占 %.2f%%)%n",
+                tlabCount, tlabCount == 0 ? 0 : tlabBytes / tlabCount / 1024,
+                outsideTlabCount, outsideTlabBytes / 1024 / 1024,
+                tlabTotal == 0 ? 0 : outsideTlabBytes * 100.0 / tlabTotal);
+
+        out.println("---- GC停顿 ----");
+        printHistograms(out, gcPauses);
+        out.println("---- GC停顿阶段 ----");
+        printHistograms(out, gcPhases);
+
+        out.println("---- 监视器阻塞（按累计阻塞时间）----");
+        for (Map.Entry<String, long[]> entry : topEntries(monitorBlocked, top)) {
+            out.printf("%10.1f ms %6d 次  %s%n", entry.getValue()[0] / 1e6, entry.getValue()[1], entry.getKey());
+        }
+    }
+
+    private static void printHistograms(PrintStream out, Map<String, PauseHistogram> histograms) {
+        List<String> names = new ArrayList<>(histograms.keySet());
+        names.sort(null);
+        for (String name : names) {
+            PauseHistogram h = histograms.get(name);
+            out.printf("%-40s 次数 %6d, 总计 %9.2f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                    name, h.count(), h.totalMicros() / 1000.0, h.percentileMillis(50), h.percentileMillis(99),
+                    h.maxMicros() / 1000.0);
+        }
+    }
+
+    private static List<Map.Entry<String, long[]>> topEntries(Map<String, long[]> map, int top) {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(map.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        return entries.subList(0, Math.min(top, entries.size()));
+    }
+
+    @Name(FlushMarker.NAME)
+    @Label("Flush Marker")
+    static class FlushMarker extends Event {
+        static final String NAME = "com.example.jfr.FlushMarker";
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.jit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JIT编译与安全点日志解析器，逐行喂入，支持：
+ * 1. -XX:+PrintCompilation 和 -Xlog:jit+compilation=debug 的编译记录（含made not entrant）
+ * 2. -XX:+UnlockDiagnosticVMOptions -XX:+LogCompilation 的XML日志（方法热度、运行期uncommon trap的原因）
+ * 3. -Xlog:deoptimization=debug（jdk21+）的去优化记录
+ * 4. -XX:+PrintCodeCache / -Xlog:codecache 的代码缓存占用，以及CodeCache is full警告
+ * 5. -Xlog:safepoint（jdk13+每个安全点一行，含TTSP和操作名）及旧的"Total time for which application threads were stopped"
+ * 同一份日志里混有GC行也没关系，不认识的行直接忽略
+ */
+public class JitLogParser implements Consumer<String> {
+    private static final Pattern UPTIME = Pattern.compile("^\\[(\\d+(?:\\.\\d+)?)(s|ms)\\]");
+    private static final Pattern DECORATIONS = Pattern.compile("^(?:\\[[^\\]]*\\])+\\s?");
+    private static final Pattern LEGACY_UPTIME = Pattern.compile("^(?:\\S+: )?(\\d+\\.\\d+): ");
+
+    // PrintCompilation多一列时间戳，统一日志的时间在前缀中；OSR编译在方法名后多一个"@ bci"
+    private static final String COMPILATION =
+            "(\\d+)\\s+([%sbn!]*)\\s*(\\d)?\\s+(\\S+::\\S+)(?:\\s+@\\s+(\\d+))?\\s+\\(([^)]*)\\)(.*)$";
+    private static final Pattern PRINT_COMPILATION = Pattern.compile("^\\s*(\\d+)\\s+" + COMPILATION);
+    private static final Pattern UNIFIED_COMPILATION = Pattern.compile("^\\s*" + COMPILATION);
+
+    private static final Pattern XML_ATTRIBUTE = Pattern.compile("(\\w+)='([^']*)'");
+    private static final Pattern UNIFIED_TRAP = Pattern.compile("reason=(\\w+).*?action=(\\w+)");
+    private static final Pattern UNIFIED_TRAP_METHOD = Pattern.compile("method=(\\S+)");
+
+    private static final Pattern CODE_HEAP = Pattern.compile(
+            "(CodeHeap '[^']+'|CodeCache): size=(\\d+)Kb used=(\\d+)Kb max_used=(\\d+)Kb free=(\\d+)Kb");
+
+    private static final Pattern SAFEPOINT = Pattern.compile(
+            "Safepoint \"([^\"]+)\", Time since last: \\d+ ns, Reaching safepoint: (\\d+) ns,"
+                    + "(?: Cleanup: \\d+ ns,)? At safepoint: (\\d+) ns, Total: (\\d+) ns");
+    private static final Pattern STOPPED = Pattern.compile(
+            "Total time for which application threads were stopped: (\\d+(?:\\.\\d+)?) seconds, "
+                    + "Stopping threads took: (\\d+(?:\\.\\d+)?) seconds");
+
+    private final Map<String, MethodStats> methods = new HashMap<>();
+    private final Map<String, Long> deoptReasons = new HashMap<>();
+    private final Map<String, String> compileIdToMethod = new HashMap<>();
+    private final Set<String> seen = new HashSet<>();
+    private final Map<String, long[]> codeHeaps = new LinkedHashMap<>();
+    private long compilations;
+    private long notEntrant;
+    private long codeCacheFull;
+    private String pendingTrap;
+
+    private final List<SafepointEvent> safepoints = new ArrayList<>();
+    private final List<SafepointEvent> stoppedTimes = new ArrayList<>();
+
+    @Override
+    public void accept(String line) {
+        double uptime = Double.NaN;
+        String body = line;
+        Matcher uptimeMatcher = UPTIME.matcher(line);
+        boolean unified = uptimeMatcher.find();
+        if (unified) {
+            uptime = Double.parseDouble(uptimeMatcher.group(1)) / ("ms".equals(uptimeMatcher.group(2)) ? 1000 : 1);
+            Matcher decorations = DECORATIONS.matcher(line);
+            if (decorations.find()) {
+                body = line.substring(decorations.end());
+            }
+        }
+
+        if (body.startsWith("<")) {
+            acceptXml(body);
+        } else if (body.contains("Safepoint \"")) {
+            Matcher matcher = SAFEPOINT.matcher(body);
+            if (matcher.find()) {
+                safepoints.add(new SafepointEvent(uptime, matcher.group(1), Long.parseLong(matcher.group(2)),
+                        Long.parseLong(matcher.group(3)), Long.parseLong(matcher.group(4))));
+            }
+        } else if (body.contains("Total time for which application threads were stopped")) {
+            Matcher matcher = STOPPED.matcher(body);
+            if (matcher.find()) {
+                if (!unified) {
+                    Matcher legacy = LEGACY_UPTIME.matcher(body);
+                    uptime = legacy.find() ? Double.parseDouble(legacy.group(1)) : Double.NaN;
+                }
+                long total = (long) (Double.parseDouble(matcher.group(1)) * 1e9);
+                long ttsp = (long) (Double.parseDouble(matcher.group(2)) * 1e9);
+                stoppedTimes.add(new SafepointEvent(uptime, "?", ttsp, Math.max(0, total - ttsp), total));
+            }
+        } else if (body.contains("CodeCache is full") || body.contains("CodeHeap '") && body.contains("is full")) {
+            codeCacheFull++;
+        } else if (body.contains("size=") && body.contains("max_used=")) {
+            Matcher matcher = CODE_HEAP.matcher(body);
+            if (matcher.find()) {
+                codeHeaps.put(matcher.group(1), new long[]{Long.parseLong(matcher.group(2)),
+                        Long.parseLong(matcher.group(3)), Long.parseLong(matcher.group(4))});
+            }
+        } else if (body.contains("reason=") && (body.contains("Uncommon trap") || line.contains("deoptimization"))) {
+            Matcher matcher = UNIFIED_TRAP.matcher(body);
+            if (matcher.find()) {
+                Matcher method = UNIFIED_TRAP_METHOD.matcher(body);
+                recordTrap(matcher.group(1) + "/" + matcher.group(2), method.find() ? method.group(1) : null);
+            }
+        } else if (body.contains("::")) {
+            Matcher matcher = (unified ? UNIFIED_COMPILATION : PRINT_COMPILATION).matcher(body);
+            if (matcher.find()) {
+                int offset = unified ? 0 : 1;
+                String flags = matcher.group(2 + offset);
+                // 有"@ bci"的是OSR编译，个别输出里没有%标记
+                if (matcher.group(5 + offset) != null && !flags.contains("%")) {
+                    flags += "%";
+                }
+                acceptCompilation(matcher.group(1 + offset), matcher.group(4 + offset), flags,
+                        matcher.group(3 + offset), matcher.group(6 + offset), matcher.group(7 + offset));
+            }
+        }
+    }
+
+    private void acceptCompilation(String compileId, String method, String flags, String level, String size,
+                                   String suffix) {
+        // 同一次编译可能同时出现在文本日志和LogCompilation中，按编译ID去重
+        boolean invalidated = suffix.contains("made not entrant");
+        if (compileId != null && !seen.add((invalidated ? "-" : "+") + compileId)) {
+            return;
+        }
+        MethodStats stats = methods.computeIfAbsent(method, MethodStats::new);
+        if (invalidated) {
+            stats.notEntrant++;
+            notEntrant++;
+            return;
+        }
+        if (suffix.contains("made zombie")) {
+            return;
+        }
+        compilations++;
+        stats.compiles++;
+        if (flags.contains("%")) {
+            stats.osrCompiles++;
+        }
+        if (level != null) {
+            stats.maxLevel = Math.max(stats.maxLevel, Integer.parseInt(level));
+        }
+        if (size.endsWith(" bytes")) {
+            stats.bytecodeSize = Integer.parseInt(size.substring(0, size.length() - " bytes".length()));
+        }
+    }
+
+    // LogCompilation：只关心task、make_not_entrant和运行期的uncommon_trap（带thread属性，编译期的没有）
+    private void acceptXml(String body) {
+        if (body.startsWith("<task ")) {
+            Map<String, String> attributes = attributes(body);
+            String method = xmlMethod(attributes.get("method"));
+            if (method == null) {
+                return;
+            }
+            String compileId = attributes.get("compile_id");
+            compileIdToMethod.put(compileId, method);
+            acceptCompilation(compileId, method, "osr".equals(attributes.get("compile_kind")) ? "%" : "",
+                    attributes.get("level"), attributes.getOrDefault("bytes", "0") + " bytes", "");
+            MethodStats stats = methods.computeIfAbsent(method, MethodStats::new);
+            stats.invocations = Math.max(stats.invocations, parseLong(attributes.get("count"))
+                    + parseLong(attributes.get("backedge_count")));
+        } else if (body.startsWith("<make_not_entrant ")) {
+            String compileId = attributes(body).get("compile_id");
+            String method = compileIdToMethod.get(compileId);
+            if (method != null) {
+                acceptCompilation(compileId, method, "", null, "", "made not entrant");
+            } else if (seen.add("-" + compileId)) {
+                notEntrant++;
+            }
+        } else if (body.startsWith("<uncommon_trap thread=")) {
+            flushPendingTrap();
+            Map<String, String> attributes = attributes(body);
+            pendingTrap = attributes.get("reason") + "/" + attributes.get("action");
+        } else if (body.startsWith("<jvms ") && pendingTrap != null) {
+            recordTrap(pendingTrap, xmlMethod(attributes(body).get("method")));
+            pendingTrap = null;
+        } else if (body.startsWith("</uncommon_trap")) {
+            flushPendingTrap();
+        } else if (body.startsWith("<code_cache_full")) {
+            codeCacheFull++;
+        }
+    }
+
+    private void flushPendingTrap() {
+        if (pendingTrap != null) {
+            recordTrap(pendingTrap, null);
+            pendingTrap = null;
+        }
+    }
+
+    private void recordTrap(String reasonAndAction, String method) {
+        deoptReasons.merge(reasonAndAction, 1L, Long::sum);
+        if (method != null) {
+            methods.computeIfAbsent(method, MethodStats::new).traps++;
+        }
+    }
+
+    private static Map<String, String> attributes(String element) {
+        Map<String, String> attributes = new HashMap<>();
+        Matcher matcher = XML_ATTRIBUTE.matcher(element);
+        while (matcher.find()) {
+            attributes.put(matcher.group(1), matcher.group(2));
+        }
+        return attributes;
+    }
+
+    // LogCompilation中的方法形如 "java/lang/String hashCode ()I"，转成与PrintCompilation一致的 java.lang.String::hashCode
+    private static String xmlMethod(String method) {
+        if (method == null) {
+            return null;
+        }
+        String[] parts = method.replace("&lt;", "<").replace("&gt;", ">").replace("&apos;", "'")
+                .replace("&quot;", "\"").replace("&amp;", "&").split(" ");
+        return parts.length < 2 ? method : parts[0].replace('/', '.') + "::" + parts[1];
+    }
+
+    private static long parseLong(String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    public void finish() {
+        flushPendingTrap();
+    }
+
+    public Map<String, MethodStats> getMethods() {
+        return methods;
+    }
+
+    /**
+     * 去优化次数，键为 原因/动作
+     */
+    public Map<String, Long> getDeoptReasons() {
+        return deoptReasons;
+    }
+
+    /**
+     * 各代码堆最后一次报告的占用（KB）：size, used, max_used
+     */
+    public Map<String, long[]> getCodeHeaps() {
+        return codeHeaps;
+    }
+
+    public long getCompilations() {
+        return compilations;
+    }
+
+    public long getNotEntrant() {
+        return notEntrant;
+    }
+
+    public long getCodeCacheFull() {
+        return codeCacheFull;
+    }
+
+    /**
+     * 安全点事件；有逐个安全点的记录时用它（含操作名），否则退回旧格式的停顿时间
+     */
+    public List<SafepointEvent> getSafepoints() {
+        return safepoints.isEmpty() ? stoppedTimes : safepoints;
+    }
+
+    /**
+     * 单个方法的编译统计
+     */
+    public static class MethodStats {
+        private final String name;
+        private int compiles;
+        private int osrCompiles;
+        private int maxLevel;
+        private int bytecodeSize;
+        private int notEntrant;
+        private int traps;
+        private long invocations;
+
+        MethodStats(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCompiles() {
+            return compiles;
+        }
+
+        public int getOsrCompiles() {
+            return osrCompiles;
+        }
+
+        public int getMaxLevel() {
+            return maxLevel;
+        }
+
+        public int getBytecodeSize() {
+            return bytecodeSize;
+        }
+
+        public int getNotEntrant() {
+            return notEntrant;
+        }
+
+        public int getTraps() {
+            return traps;
+        }
+
+        /**
+         * 最近一次编译时的调用次数加回边次数，只有LogCompilation日志提供
+         */
+        public long getInvocations() {
+            return invocations;
+        }
+    }
+}
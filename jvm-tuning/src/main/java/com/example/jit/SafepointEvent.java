@@ -0,0 +1,50 @@
+package com.example.jit;
+
+/**
+ * 一次安全点停顿，时间戳是日志记录时（安全点结束时）的JVM运行秒数
+ */
+public class SafepointEvent {
+    private final double endSeconds;
+    private final String operation;
+    private final long reachNanos;
+    private final long atSafepointNanos;
+    private final long totalNanos;
+
+    SafepointEvent(double endSeconds, String operation, long reachNanos, long atSafepointNanos, long totalNanos) {
+        this.endSeconds = endSeconds;
+        this.operation = operation;
+        this.reachNanos = reachNanos;
+        this.atSafepointNanos = atSafepointNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    public double getEndSeconds() {
+        return endSeconds;
+    }
+
+    public double getStartSeconds() {
+        return endSeconds - totalNanos / 1e9;
+    }
+
+    /**
+     * VM操作名，旧格式的日志中没有，为"?"
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * 到达安全点的时间（time to safepoint）
+     */
+    public long getReachNanos() {
+        return reachNanos;
+    }
+
+    public long getAtSafepointNanos() {
+        return atSafepointNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+}
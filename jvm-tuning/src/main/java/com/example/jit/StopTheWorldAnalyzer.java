@@ -0,0 +1,64 @@
+package com.example.jit;
+
+import com.example.gclog.GcEvent;
+import com.example.gclog.GcLogParser;
+import com.example.gclog.MappedLineReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JIT编译、安全点与GC停顿的联合分析工具
+ * 同一次运行的多份日志（GC日志、安全点日志、编译日志）一起分析，按JVM运行时间对齐，也可以都写进同一个文件：
+ *    java -Xlog:gc*,safepoint,jit+compilation=debug:file=stw.log -XX:+PrintCodeCache -cp target/classes com.example.GCCollectorDemo
+ *    java -cp target/classes com.example.jit.StopTheWorldAnalyzer stw.log [--top=15]
+ * 需要去优化原因和方法热度时再加 -XX:+UnlockDiagnosticVMOptions -XX:+LogCompilation -XX:LogFile=jit.xml，
+ * 把jit.xml一起作为参数传入
+ */
+public class StopTheWorldAnalyzer {
+
+    public static StopTheWorldReport analyze(List<Path> logs) throws IOException {
+        JitLogParser jit = new JitLogParser();
+        List<GcEvent> pauses = new ArrayList<>();
+        GcLogParser gc = new GcLogParser(event -> {
+            if (event.isPause()) {
+                pauses.add(event);
+            }
+        });
+        StringBuilder source = new StringBuilder();
+        for (Path log : logs) {
+            source.append(source.length() == 0 ? "" : ", ").append(log);
+            try (MappedLineReader reader = new MappedLineReader(log)) {
+                reader.forEachLine(line -> {
+                    gc.accept(line);
+                    jit.accept(line);
+                });
+            }
+        }
+        gc.finish();
+        jit.finish();
+        return new StopTheWorldReport(source.toString(), jit, pauses);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("用法: StopTheWorldAnalyzer <日志文件>... [--top=15]");
+            return;
+        }
+        int top = 15;
+        List<Path> logs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--top=")) {
+                top = Integer.parseInt(arg.substring("--top=".length()));
+            } else {
+                logs.add(Paths.get(arg));
+            }
+        }
+        long start = System.nanoTime();
+        analyze(logs).print(System.out, top);
+        System.out.printf("解析耗时: %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.jit;
+
+import com.example.gclog.GcEvent;
+import com.example.gclog.PauseHistogram;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次运行的停顿全景：JIT编译与去优化、代码缓存、安全点，以及安全点与GC停顿的对应关系
+ */
+public class StopTheWorldReport {
+    // 匹配GC停顿与安全点时允许的时间误差，日志时间戳精度为毫秒
+    private static final double MATCH_TOLERANCE_SECONDS = 0.002;
+
+    private final String source;
+    private final JitLogParser jit;
+    private final List<GcEvent> gcPauses;
+    private final List<SafepointEvent> safepoints;
+
+    private final PauseHistogram reach = new PauseHistogram();
+    private final PauseHistogram atSafepoint = new PauseHistogram();
+    private final Map<String, OperationStats> operations = new HashMap<>();
+    private long totalNanos;
+
+    // 与GC停顿对应上的安全点
+    private final List<SafepointEvent> gcSafepoints = new ArrayList<>();
+    // 一个安全点内可能有多次GC停顿，如同一个GenCollectForAllocation里的Pause Young和随后的Pause Full
+    private final Map<SafepointEvent, List<GcEvent>> gcBySafepoint = new HashMap<>();
+    private long gcSafepointNanos;
+    private double gcLogPauseMillis;
+    // 没有落在任何安全点里的GC停顿（安全点日志缺失或被截断等）
+    private int unmatchedPauses;
+    private double unmatchedPauseMillis;
+
+    StopTheWorldReport(String source, JitLogParser jit, List<GcEvent> gcPauses) {
+        this.source = source;
+        this.jit = jit;
+        this.gcPauses = gcPauses;
+        this.safepoints = new ArrayList<>(jit.getSafepoints());
+        safepoints.sort(Comparator.comparingDouble(SafepointEvent::getStartSeconds));
+        for (SafepointEvent event : safepoints) {
+            reach.record(event.getReachNanos() / 1000);
+            atSafepoint.record(event.getAtSafepointNanos() / 1000);
+            operations.computeIfAbsent(event.getOperation(), OperationStats::new).add(event);
+            totalNanos += event.getTotalNanos();
+        }
+        for (GcEvent pause : gcPauses) {
+            gcLogPauseMillis += pause.getPauseMillis();
+        }
+        correlate();
+    }
+
+    // GC停顿发生在安全点之内，按停顿区间落在安全点[开始, 结束]之内来配对，每个GC停顿只配对一次，
+    // 一个安全点可以配上多个GC停顿。
+    // 统一日志的GC时间戳记在停顿结束时，旧格式记在开始时，两种区间都试：另一种解释下区间会超出安全点，不会配错
+    private void correlate() {
+        List<GcEvent> pauses = new ArrayList<>(gcPauses);
+        pauses.sort(Comparator.comparingDouble(GcEvent::getTimestampSeconds));
+        boolean[] used = new boolean[pauses.size()];
+        int next = 0;
+        for (SafepointEvent event : safepoints) {
+            if (Double.isNaN(event.getEndSeconds())) {
+                continue;
+            }
+            // 时间戳早于安全点开始的GC不可能再落在这个或之后的安全点里（安全点按开始时间排序）
+            while (next < pauses.size()
+                    && (used[next] || pauses.get(next).getTimestampSeconds()
+                    < event.getStartSeconds() - MATCH_TOLERANCE_SECONDS)) {
+                next++;
+            }
+            for (int i = next; i < pauses.size()
+                    && pauses.get(i).getTimestampSeconds() <= event.getEndSeconds() + MATCH_TOLERANCE_SECONDS; i++) {
+                if (!used[i] && within(pauses.get(i), event)) {
+                    used[i] = true;
+                    gcBySafepoint.computeIfAbsent(event, e -> new ArrayList<>()).add(pauses.get(i));
+                }
+            }
+            if (gcBySafepoint.containsKey(event)) {
+                gcSafepoints.add(event);
+                gcSafepointNanos += event.getTotalNanos();
+            }
+        }
+        for (int i = 0; i < pauses.size(); i++) {
+            if (!used[i]) {
+                unmatchedPauses++;
+                unmatchedPauseMillis += pauses.get(i).getPauseMillis();
+            }
+        }
+    }
+
+    private static boolean within(GcEvent pause, SafepointEvent safepoint) {
+        double timestamp = pause.getTimestampSeconds();
+        double seconds = pause.getPauseMillis() / 1000;
+        return contains(safepoint, timestamp - seconds, timestamp) || contains(safepoint, timestamp, timestamp + seconds);
+    }
+
+    private static boolean contains(SafepointEvent safepoint, double start, double end) {
+        return start >= safepoint.getStartSeconds() - MATCH_TOLERANCE_SECONDS
+                && end <= safepoint.getEndSeconds() + MATCH_TOLERANCE_SECONDS;
+    }
+
+    public JitLogParser getJit() {
+        return jit;
+    }
+
+    public List<SafepointEvent> getSafepoints() {
+        return safepoints;
+    }
+
+    public List<SafepointEvent> getGcSafepoints() {
+        return gcSafepoints;
+    }
+
+    public PauseHistogram getReach() {
+        return reach;
+    }
+
+    public PauseHistogram getAtSafepoint() {
+        return atSafepoint;
+    }
+
+    public void print(PrintStream out, int top) {
+        out.printf("==== 停顿全景: %s ====%n", source);
+        printJit(out, top);
+        printCodeCache(out);
+        printSafepoints(out, top);
+        printCorrelation(out, top);
+    }
+
+    private void printJit(PrintStream out, int top) {
+        List<JitLogParser.MethodStats> methods = new ArrayList<>(jit.getMethods().values());
+        out.printf("---- JIT编译: %d 次, %d 个方法, made not entrant %d 次 ----%n",
+                jit.getCompilations(), methods.size(), jit.getNotEntrant());
+        if (!methods.isEmpty()) {
+            // 有LogCompilation的调用计数时按热度排序，否则按编译次数
+            methods.sort(Comparator.comparingLong(JitLogParser.MethodStats::getInvocations)
+                    .thenComparingInt(JitLogParser.MethodStats::getCompiles)
+                    .thenComparingInt(JitLogParser.MethodStats::getMaxLevel).reversed());
+            out.println("最热的编译方法:");
+            out.printf("%12s %6s %5s %6s %8s %8s  %s%n", "调用+回边", "编译", "OSR", "层级", "字节码", "去优化", "方法");
+            for (int i = 0; i < Math.min(top, methods.size()); i++) {
+                printMethod(out, methods.get(i));
+            }
+
+            methods.sort(Comparator.comparingInt((JitLogParser.MethodStats m) -> m.getNotEntrant() + m.getTraps())
+                    .reversed());
+            if (methods.get(0).getNotEntrant() + methods.get(0).getTraps() > 0) {
+                out.println("去优化最多的方法（反复编译-去优化即去优化风暴）:");
+                for (int i = 0; i < Math.min(top, methods.size()); i++) {
+                    if (methods.get(i).getNotEntrant() + methods.get(i).getTraps() == 0) {
+                        break;
+                    }
+                    printMethod(out, methods.get(i));
+                }
+            }
+        }
+
+        Map<String, Long> reasons = jit.getDeoptReasons();
+        if (reasons.isEmpty()) {
+            if (jit.getNotEntrant() > 0) {
+                out.println("去优化原因: 日志中没有，需要 -XX:+UnlockDiagnosticVMOptions -XX:+LogCompilation（jdk21+可用 -Xlog:deoptimization=debug）");
+            }
+        } else {
+            out.println("去优化原因（原因/动作）:");
+            reasons.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(top)
+                    .forEach(e -> out.printf("%8d  %s%n", e.getValue(), e.getKey()));
+        }
+    }
+
+    private static void printMethod(PrintStream out, JitLogParser.MethodStats method) {
+        out.printf("%12s %6d %5d %6d %8d %8d  %s%n", method.getInvocations() == 0 ? "-" : method.getInvocations(),
+                method.getCompiles(), method.getOsrCompiles(), method.getMaxLevel(), method.getBytecodeSize(),
+                method.getNotEntrant() + method.getTraps(), method.getName());
+    }
+
+    private void printCodeCache(PrintStream out) {
+        if (jit.getCodeHeaps().isEmpty() && jit.getCodeCacheFull() == 0) {
+            return;
+        }
+        out.println("---- 代码缓存 ----");
+        for (Map.Entry<String, long[]> entry : jit.getCodeHeaps().entrySet()) {
+            long[] usage = entry.getValue();
+            out.printf("%-36s 大小 %7d KB, 已用 %7d KB, 峰值 %7d KB (%.1f%%)%n", entry.getKey(), usage[0], usage[1],
+                    usage[2], usage[0] == 0 ? 0 : usage[2] * 100.0 / usage[0]);
+        }
+        if (jit.getCodeCacheFull() > 0) {
+            out.printf("代码缓存已满 %d 次，JIT编译被停用，应增大 -XX:ReservedCodeCacheSize%n", jit.getCodeCacheFull());
+        }
+    }
+
+    private void printSafepoints(PrintStream out, int top) {
+        if (safepoints.isEmpty()) {
+            out.println("---- 日志中没有安全点记录，需要 -Xlog:safepoint ----");
+            return;
+        }
+        out.printf("---- 安全点: %d 次, 停顿合计 %.2f ms ----%n", safepoints.size(), totalNanos / 1e6);
+        out.printf("到达安全点(TTSP): p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms, 合计 %.2f ms%n",
+                reach.percentileMillis(50), reach.percentileMillis(99), reach.percentileMillis(99.9),
+                reach.maxMicros() / 1000.0, reach.totalMicros() / 1000.0);
+        out.printf("安全点内操作:      p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms, 合计 %.2f ms%n",
+                atSafepoint.percentileMillis(50), atSafepoint.percentileMillis(99),
+                atSafepoint.percentileMillis(99.9), atSafepoint.maxMicros() / 1000.0,
+                atSafepoint.totalMicros() / 1000.0);
+        List<OperationStats> byTotal = new ArrayList<>(operations.values());
+        byTotal.sort(Comparator.comparingLong((OperationStats o) -> o.totalNanos).reversed());
+        out.printf("%-32s %7s %10s %12s %12s %12s%n", "VM操作", "次数", "合计ms", "TTSP p99", "TTSP max", "操作 p99");
+        for (int i = 0; i < Math.min(top, byTotal.size()); i++) {
+            OperationStats op = byTotal.get(i);
+            out.printf("%-32s %7d %10.2f %12.3f %12.3f %12.3f%n", op.name, op.reach.count(), op.totalNanos / 1e6,
+                    op.reach.percentileMillis(99), op.reach.maxMicros() / 1000.0, op.atSafepoint.percentileMillis(99));
+        }
+    }
+
+    private void printCorrelation(PrintStream out, int top) {
+        if (gcPauses.isEmpty() || safepoints.isEmpty()) {
+            return;
+        }
+        out.println("---- 与GC停顿对照 ----");
+        out.printf("GC日志停顿: %d 次, 合计 %.2f ms%n", gcPauses.size(), gcLogPauseMillis);
+        out.printf("对应GC的安全点: %d 次, 合计 %.2f ms; 非GC安全点: %d 次, 合计 %.2f ms (占全部停顿 %.1f%%)%n",
+                gcSafepoints.size(), gcSafepointNanos / 1e6, safepoints.size() - gcSafepoints.size(),
+                (totalNanos - gcSafepointNanos) / 1e6,
+                totalNanos == 0 ? 0 : (totalNanos - gcSafepointNanos) * 100.0 / totalNanos);
+        long gcReachNanos = 0;
+        for (SafepointEvent event : gcSafepoints) {
+            gcReachNanos += event.getReachNanos();
+        }
+        out.printf("GC安全点中到达安全点的耗时合计 %.2f ms，GC日志的停顿时间不包含这部分%n", gcReachNanos / 1e6);
+        if (unmatchedPauses > 0) {
+            out.printf("未对应到安全点的GC停顿: %d 次, 合计 %.2f ms%n", unmatchedPauses, unmatchedPauseMillis);
+        }
+
+        List<SafepointEvent> slowest = new ArrayList<>(gcSafepoints);
+        slowest.sort(Comparator.comparingLong(SafepointEvent::getReachNanos).reversed());
+        out.println("TTSP最长的GC停顿:");
+        for (int i = 0; i < Math.min(top, slowest.size()); i++) {
+            SafepointEvent event = slowest.get(i);
+            double pauseMillis = 0;
+            StringBuilder names = new StringBuilder();
+            for (GcEvent pause : gcBySafepoint.get(event)) {
+                pauseMillis += pause.getPauseMillis();
+                names.append(names.length() == 0 ? "" : " + ").append(pause.getName());
+            }
+            out.printf("%10.3fs  TTSP %8.3f ms, 安全点 %8.3f ms, GC停顿 %8.3f ms  %s%n", event.getEndSeconds(),
+                    event.getReachNanos() / 1e6, event.getTotalNanos() / 1e6, pauseMillis, names);
+        }
+    }
+
+    /**
+     * 按VM操作汇总的安全点
+     */
+    private static class OperationStats {
+        private final String name;
+        private final PauseHistogram reach = new PauseHistogram();
+        private final PauseHistogram atSafepoint = new PauseHistogram();
+        private long totalNanos;
+
+        OperationStats(String name) {
+            this.name = name;
+        }
+
+        void add(SafepointEvent event) {
+            reach.record(event.getReachNanos() / 1000);
+            atSafepoint.record(event.getAtSafepointNanos() / 1000);
+            totalNanos += event.getTotalNanos();
+        }
+    }
+}
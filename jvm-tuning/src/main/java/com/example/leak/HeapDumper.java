@@ -0,0 +1,95 @@
+package com.example.leak;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 带限流的堆转储
+ * 两次堆转储之间至少间隔minDumpIntervalMillis，且总数不超过maxDumps；
+ * 被限流、磁盘空间不足或转储失败时退而输出类直方图（GC.class_histogram），代价小得多
+ */
+public class HeapDumper {
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path directory;
+    private final long minDumpIntervalMillis;
+    private final int maxDumps;
+    private final long minHistogramIntervalMillis;
+
+    private int dumps;
+    private long lastDumpMillis = Long.MIN_VALUE / 2;
+    private long lastHistogramMillis = Long.MIN_VALUE / 2;
+
+    public HeapDumper(Path directory, long minDumpIntervalMillis, int maxDumps, long minHistogramIntervalMillis) {
+        this.directory = directory;
+        this.minDumpIntervalMillis = minDumpIntervalMillis;
+        this.maxDumps = maxDumps;
+        this.minHistogramIntervalMillis = minHistogramIntervalMillis;
+    }
+
+    /**
+     * 尝试转储堆，返回生成的文件；被限流且直方图也在冷却中时返回null
+     */
+    public synchronized Path dump(String reason) {
+        long now = System.currentTimeMillis();
+        String name = "leak-" + LocalDateTime.now().format(FILE_TIME) + "-" + ManagementFactory.getRuntimeMXBean().getPid();
+        try {
+            Files.createDirectories(directory);
+            if (dumps < maxDumps && now - lastDumpMillis >= minDumpIntervalMillis) {
+                long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+                if (Files.getFileStore(directory).getUsableSpace() > heapUsed) {
+                    Path file = directory.resolve(name + ".hprof");
+                    System.out.println("堆转储开始（" + reason + "）: " + file);
+                    ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                            .dumpHeap(file.toString(), true);
+                    dumps++;
+                    lastDumpMillis = now;
+                    return file;
+                }
+                System.out.println("磁盘剩余空间不足以保存堆转储，改为输出类直方图");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("堆转储失败，改为输出类直方图: " + e);
+        }
+        return histogram(name, reason, now);
+    }
+
+    private Path histogram(String name, String reason, long now) {
+        if (now - lastHistogramMillis < minHistogramIntervalMillis) {
+            return null;
+        }
+        lastHistogramMillis = now;
+        try {
+            Path file = directory.resolve(name + ".histo.txt");
+            Files.write(file, (reason + System.lineSeparator() + classHistogram()).getBytes(StandardCharsets.UTF_8));
+            System.out.println("类直方图已输出（" + reason + "）: " + file);
+            return file;
+        } catch (Exception e) {
+            System.out.println("类直方图输出失败: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 通过DiagnosticCommand MBean执行 jcmd GC.class_histogram
+     */
+    public static String classHistogram() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName diagnostic = new ObjectName("com.sun.management:type=DiagnosticCommand");
+        return (String) server.invoke(diagnostic, "gcClassHistogram",
+                new Object[]{new String[0]}, new String[]{String[].class.getName()});
+    }
+
+    public synchronized int getDumps() {
+        return dumps;
+    }
+}
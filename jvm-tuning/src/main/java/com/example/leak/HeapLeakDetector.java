@@ -0,0 +1,157 @@
+package com.example.leak;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 堆增长趋势检测
+ * 订阅所有GarbageCollectorMXBean的GC通知，每次GC（包括新生代和混合GC）后从GcInfo取老年代的占用。
+ * 老年代的收集后占用（collection usage）只在老年代被收集时更新，G1和Parallel下要到Full GC才有数据，
+ * 渐进的泄漏往往在OOM之前都采不到样，所以不用它。
+ * 对这些占用拟合趋势线，推算到达上限的时间低于oomHorizonSeconds时触发堆转储。
+ * 转储在单独的线程中执行，不阻塞发通知的线程
+ */
+public class HeapLeakDetector implements NotificationListener, AutoCloseable {
+    // 至少这么多个采样点后才开始推算
+    private static final int MIN_SAMPLES = 3;
+
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final HeapTrend trend;
+    private final HeapDumper dumper;
+    private final double oomHorizonSeconds;
+    private final long limitBytes;
+    private final ExecutorService dumpExecutor;
+    private volatile long lastProjectionLog;
+
+    private HeapLeakDetector(HeapDumper dumper, double oomHorizonSeconds, int window) {
+        this.trend = new HeapTrend(window);
+        this.dumper = dumper;
+        this.oomHorizonSeconds = oomHorizonSeconds;
+        long limit = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (isOldGen(pool)) {
+                pools.add(pool);
+                long max = pool.getUsage().getMax();
+                limit += max > 0 ? max : ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+            }
+        }
+        this.limitBytes = limit;
+        // 只有一个转储线程，队列只保留一个待执行任务，多余的触发直接丢弃
+        this.dumpExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(1), r -> {
+                    Thread thread = new Thread(r, "heap-leak-dumper");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * @param oomHorizonSeconds 推算的剩余时间低于该值时触发转储
+     * @param window            参与拟合的最近GC次数
+     */
+    public static HeapLeakDetector install(HeapDumper dumper, double oomHorizonSeconds, int window) {
+        HeapLeakDetector detector = new HeapLeakDetector(dumper, oomHorizonSeconds, window);
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) gc;
+                emitter.addNotificationListener(detector, null, null);
+                detector.emitters.add(emitter);
+            }
+        }
+        System.out.printf("堆增长检测已启动：跟踪 %s, 上限 %d MB, 剩余时间阈值 %.0f 秒%n",
+                detector.poolNames(), detector.limitBytes / 1024 / 1024, oomHorizonSeconds);
+        return detector;
+    }
+
+    // 老年代：会被收集的堆内存池，排除新生代
+    private static boolean isOldGen(MemoryPoolMXBean pool) {
+        if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) {
+            return false;
+        }
+        String name = pool.getName();
+        return !name.contains("Eden") && !name.contains("Survivor") && !name.contains("Young");
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        Map<String, MemoryUsage> after = GarbageCollectionNotificationInfo
+                .from((CompositeData) notification.getUserData()).getGcInfo().getMemoryUsageAfterGc();
+        long used = 0;
+        boolean found = false;
+        for (MemoryPoolMXBean pool : pools) {
+            MemoryUsage usage = after.get(pool.getName());
+            if (usage != null) {
+                used += usage.getUsed();
+                found = true;
+            }
+        }
+        if (!found) {
+            return;
+        }
+        trend.add(System.currentTimeMillis(), used);
+        if (trend.size() < MIN_SAMPLES) {
+            return;
+        }
+        double seconds = trend.secondsUntil(limitBytes);
+        if (seconds < oomHorizonSeconds) {
+            String reason = String.format("老年代GC后占用 %d MB, 增长 %.1f MB/s, 预计 %.0f 秒后耗尽",
+                    used / 1024 / 1024, trend.slopeBytesPerSecond() / 1024 / 1024, seconds);
+            long now = System.currentTimeMillis();
+            if (now - lastProjectionLog >= 1000) {
+                lastProjectionLog = now;
+                System.out.println("疑似内存泄漏：" + reason);
+            }
+            dumpExecutor.execute(() -> dumper.dump(reason));
+        }
+    }
+
+    public HeapTrend getTrend() {
+        return trend;
+    }
+
+    public long getLimitBytes() {
+        return limitBytes;
+    }
+
+    private List<String> poolNames() {
+        List<String> names = new ArrayList<>();
+        for (MemoryPoolMXBean pool : pools) {
+            names.add(pool.getName());
+        }
+        return names;
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (ListenerNotFoundException ignored) {
+                // 已经移除
+            }
+        }
+        emitters.clear();
+        dumpExecutor.shutdown();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.leak;
+
+/**
+ * GC后老年代占用的趋势
+ * 保留最近若干个采样点，用最小二乘拟合直线，按斜率推算何时达到上限
+ */
+public class HeapTrend {
+    private final long[] timesMillis;
+    private final long[] usedBytes;
+    private int size;
+    private int next;
+
+    public HeapTrend(int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("window至少为2");
+        }
+        this.timesMillis = new long[window];
+        this.usedBytes = new long[window];
+    }
+
+    public synchronized void add(long timeMillis, long used) {
+        timesMillis[next] = timeMillis;
+        usedBytes[next] = used;
+        next = (next + 1) % timesMillis.length;
+        size = Math.min(size + 1, timesMillis.length);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        size = 0;
+        next = 0;
+    }
+
+    /**
+     * 拟合直线的斜率（字节/秒），采样点不足时返回0
+     */
+    public synchronized double slopeBytesPerSecond() {
+        return fit()[0];
+    }
+
+    /**
+     * 按当前趋势推算占用达到limit还需要多少秒；趋势不增长时返回Double.POSITIVE_INFINITY
+     */
+    public synchronized double secondsUntil(long limit) {
+        double[] fit = fit();
+        double slope = fit[0];
+        if (slope <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // 以最新采样时刻的拟合值为起点，避免单个采样点的噪声
+        double projected = fit[1];
+        return Math.max(0, (limit - projected) / slope);
+    }
+
+    // 返回{斜率(字节/秒), 最新时刻的拟合值}
+    private double[] fit() {
+        if (size < 2) {
+            return new double[]{0, size == 0 ? 0 : usedBytes[(next + timesMillis.length - 1) % timesMillis.length]};
+        }
+        int start = (next - size + timesMillis.length) % timesMillis.length;
+        long t0 = timesMillis[start];
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        double lastX = 0;
+        for (int i = 0; i < size; i++) {
+            int idx = (start + i) % timesMillis.length;
+            double x = (timesMillis[idx] - t0) / 1000.0;
+            double y = usedBytes[idx];
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+            lastX = x;
+        }
+        double denominator = size * sumXX - sumX * sumX;
+        if (denominator == 0) {
+            return new double[]{0, sumY / size};
+        }
+        double slope = (size * sumXY - sumX * sumY) / denominator;
+        double intercept = (sumY - slope * sumX) / size;
+        return new double[]{slope, intercept + slope * lastX};
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.nativemem;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 堆外内存监控
+ * 定期采样RSS、堆、元空间、代码缓存、直接/映射缓冲区和线程数，保留最近的时间序列，可同时写CSV；
+ * 堆外内存（开启NMT时按NMT统计，否则为MXBean能看到的各部分之和）相对第一次采样的增长超过nonHeapGrowthLimitBytes时告警，
+ * 开启了NMT时告警附带 VM.native_memory summary.diff，直接指出是哪一类在增长。
+ * 容器按RSS计费和OOM-kill，只看堆会漏掉这些部分
+ */
+public class NativeMemoryMonitor implements AutoCloseable {
+    // 保留的采样点数，按1秒一次约为12分钟
+    private static final int HISTORY = 720;
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+    private final long nonHeapGrowthLimitBytes;
+    private final PrintStream console;
+    private final Writer csv;
+    private final ScheduledExecutorService scheduler;
+    private final boolean nmt;
+    private final long containerLimitBytes;
+    private final long threadStackSizeBytes;
+
+    private final ArrayDeque<NativeMemorySample> history = new ArrayDeque<>();
+    private NativeMemorySample baseline;
+    private boolean alarmed;
+    private int alarms;
+
+    /**
+     * @param nonHeapGrowthLimitBytes 堆外内存增长的告警阈值
+     * @param console                 为null时不输出到控制台
+     * @param csvFile                 为null时不写CSV
+     */
+    public NativeMemoryMonitor(long nonHeapGrowthLimitBytes, PrintStream console, Path csvFile) throws IOException {
+        this.nonHeapGrowthLimitBytes = nonHeapGrowthLimitBytes;
+        this.console = console;
+        if (csvFile != null) {
+            this.csv = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8);
+            csv.write(NativeMemorySample.CSV_HEADER);
+            csv.write(System.lineSeparator());
+        } else {
+            this.csv = null;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "native-memory-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.nmt = NativeMemoryTracking.isEnabled();
+        if (nmt) {
+            // 记下基线，告警时用summary.diff输出各类别相对基线的变化
+            try {
+                NativeMemoryTracking.execute("baseline");
+            } catch (Exception e) {
+                System.out.println("NMT基线记录失败: " + e);
+            }
+        }
+        this.containerLimitBytes = readContainerLimit();
+        this.threadStackSizeBytes = readThreadStackSize();
+        System.out.printf("堆外内存监控已启动：告警阈值 +%d MB, NMT %s, 容器内存上限 %s%n",
+                nonHeapGrowthLimitBytes / 1024 / 1024, nmt ? "已开启" : "未开启（-XX:NativeMemoryTracking=summary）",
+                containerLimitBytes < 0 ? "无" : containerLimitBytes / 1024 / 1024 + " MB");
+    }
+
+    public NativeMemoryMonitor start(long interval, TimeUnit unit) {
+        // 任务抛出异常后scheduleAtFixedRate不再执行后续采样，所以在这里捕获
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                sample();
+            } catch (RuntimeException e) {
+                System.out.println("堆外内存采样失败: " + e);
+            }
+        }, 0, interval, unit);
+        return this;
+    }
+
+    /**
+     * 采样一次，记入时间序列并检查告警
+     */
+    public synchronized NativeMemorySample sample() {
+        NativeMemorySample sample = takeSample();
+        if (history.size() == HISTORY) {
+            history.removeFirst();
+        }
+        history.addLast(sample);
+        if (baseline == null) {
+            baseline = sample;
+        }
+        if (console != null) {
+            sample.print(console);
+        }
+        if (csv != null) {
+            StringBuilder row = new StringBuilder();
+            sample.appendCsv(row);
+            try {
+                csv.write(row.toString());
+                csv.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("写入堆外内存CSV失败", e);
+            }
+        }
+        checkGrowth(sample);
+        return sample;
+    }
+
+    private NativeMemorySample takeSample() {
+        long metaspace = 0;
+        long classSpace = 0;
+        long codeCache = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.NON_HEAP) {
+                continue;
+            }
+            long committed = pool.getUsage().getCommitted();
+            String name = pool.getName();
+            if ("Metaspace".equals(name)) {
+                metaspace += committed;
+            } else if ("Compressed Class Space".equals(name)) {
+                classSpace += committed;
+            } else if (name.startsWith("CodeHeap") || "Code Cache".equals(name)) {
+                codeCache += committed;
+            }
+        }
+        long direct = 0;
+        long directCount = 0;
+        long mapped = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                direct += pool.getTotalCapacity();
+                directCount += pool.getCount();
+            } else if (pool.getName().startsWith("mapped")) {
+                mapped += pool.getTotalCapacity();
+            }
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        return new NativeMemorySample(ManagementFactory.getRuntimeMXBean().getUptime(), readRss(), heap.getUsed(),
+                heap.getCommitted(), metaspace, classSpace, codeCache, direct, directCount, mapped,
+                threads, threads * threadStackSizeBytes,
+                nmt ? NativeMemoryTracking.committedByCategory() : new LinkedHashMap<>());
+    }
+
+    // 增长超过阈值时告警一次，回落到阈值一半以下才重新计，避免在阈值附近反复告警
+    private void checkGrowth(NativeMemorySample sample) {
+        long growth = sample.getNonHeapBytes() - baseline.getNonHeapBytes();
+        if (alarmed) {
+            alarmed = growth > nonHeapGrowthLimitBytes / 2;
+            return;
+        }
+        if (growth <= nonHeapGrowthLimitBytes) {
+            return;
+        }
+        alarmed = true;
+        alarms++;
+        StringBuilder message = new StringBuilder();
+        message.append(String.format("堆外内存告警：%.1f 秒内增长 %d MB（阈值 %d MB），其中 直接缓冲区 %+d MB, "
+                        + "元空间 %+d MB, 代码缓存 %+d MB, 线程 %+d 个, 未归类 %+d MB",
+                (sample.getUptimeMillis() - baseline.getUptimeMillis()) / 1000.0, growth / 1024 / 1024,
+                nonHeapGrowthLimitBytes / 1024 / 1024,
+                (sample.getDirectBytes() - baseline.getDirectBytes()) / 1024 / 1024,
+                (sample.getMetaspaceBytes() + sample.getClassSpaceBytes() - baseline.getMetaspaceBytes()
+                        - baseline.getClassSpaceBytes()) / 1024 / 1024,
+                (sample.getCodeCacheBytes() - baseline.getCodeCacheBytes()) / 1024 / 1024,
+                sample.getThreads() - baseline.getThreads(),
+                (sample.getUnexplainedBytes() - baseline.getUnexplainedBytes()) / 1024 / 1024));
+        if (containerLimitBytes > 0 && sample.getRssBytes() > 0) {
+            message.append(String.format("；RSS已占容器上限的 %.0f%%", sample.getRssBytes() * 100.0 / containerLimitBytes));
+        }
+        System.out.println(message);
+        if (nmt) {
+            try {
+                System.out.println(NativeMemoryTracking.execute("summary.diff"));
+            } catch (Exception e) {
+                System.out.println("NMT summary.diff 执行失败: " + e);
+            }
+        }
+    }
+
+    /**
+     * 读取/proc/self/status中的VmRSS，非Linux系统返回-1
+     */
+    static long readRss() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS, StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // 不是Linux
+        }
+        return -1;
+    }
+
+    // -Xss，即ThreadStackSize（KB），读不到时按Linux x64的默认值1MB
+    private static long readThreadStackSize() {
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long kb = Long.parseLong(hotspot.getVMOption("ThreadStackSize").getValue());
+            if (kb > 0) {
+                return kb * 1024;
+            }
+        } catch (RuntimeException ignored) {
+            // 不是HotSpot
+        }
+        return 1024 * 1024;
+    }
+
+    // cgroup v2的memory.max或v1的memory.limit_in_bytes，没有限制时返回-1
+    private static long readContainerLimit() {
+        for (String file : new String[]{"/sys/fs/cgroup/memory.max", "/sys/fs/cgroup/memory/memory.limit_in_bytes"}) {
+            try {
+                String value = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8).trim();
+                long limit = "max".equals(value) ? -1 : Long.parseLong(value);
+                // cgroup v1没有限制时是一个接近Long.MAX_VALUE的值
+                return limit <= 0 || limit >= Long.MAX_VALUE / 2 ? -1 : limit;
+            } catch (IOException | RuntimeException ignored) {
+                // 换下一个
+            }
+        }
+        return -1;
+    }
+
+    public synchronized List<NativeMemorySample> getHistory() {
+        return new ArrayList<>(history);
+    }
+
+    public synchronized int getAlarms() {
+        return alarms;
+    }
+
+    public long getContainerLimitBytes() {
+        return containerLimitBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        synchronized (this) {
+            if (csv != null) {
+                csv.close();
+            }
+        }
+    }
+}
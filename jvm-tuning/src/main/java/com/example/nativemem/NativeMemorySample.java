@@ -0,0 +1,172 @@
+package com.example.nativemem;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 进程内存某一时刻的分解：RSS、堆，以及堆以外能从MXBean看到的部分（元空间、代码缓存、直接/映射缓冲区、线程栈），
+ * 开启NMT时附带按类别的已提交内存。创建后不再变化
+ */
+public class NativeMemorySample {
+    static final String CSV_HEADER = "uptime_ms,rss_mb,heap_used_mb,heap_committed_mb,metaspace_mb,class_space_mb,"
+            + "code_cache_mb,direct_mb,direct_count,mapped_mb,threads,thread_stack_mb,nmt_total_mb,non_heap_mb,unexplained_mb";
+
+    private final long uptimeMillis;
+    private final long rssBytes;
+    private final long heapUsedBytes;
+    private final long heapCommittedBytes;
+    private final long metaspaceBytes;
+    private final long classSpaceBytes;
+    private final long codeCacheBytes;
+    private final long directBytes;
+    private final long directCount;
+    private final long mappedBytes;
+    private final int threads;
+    private final long threadStackBytes;
+    private final Map<String, Long> nmtCommitted;
+
+    NativeMemorySample(long uptimeMillis, long rssBytes, long heapUsedBytes, long heapCommittedBytes,
+                       long metaspaceBytes, long classSpaceBytes, long codeCacheBytes, long directBytes,
+                       long directCount, long mappedBytes, int threads, long threadStackBytes,
+                       Map<String, Long> nmtCommitted) {
+        this.uptimeMillis = uptimeMillis;
+        this.rssBytes = rssBytes;
+        this.heapUsedBytes = heapUsedBytes;
+        this.heapCommittedBytes = heapCommittedBytes;
+        this.metaspaceBytes = metaspaceBytes;
+        this.classSpaceBytes = classSpaceBytes;
+        this.codeCacheBytes = codeCacheBytes;
+        this.directBytes = directBytes;
+        this.directCount = directCount;
+        this.mappedBytes = mappedBytes;
+        this.threads = threads;
+        this.threadStackBytes = threadStackBytes;
+        this.nmtCommitted = nmtCommitted;
+    }
+
+    public long getUptimeMillis() {
+        return uptimeMillis;
+    }
+
+    /**
+     * 进程常驻内存，读不到/proc/self/status时为-1
+     */
+    public long getRssBytes() {
+        return rssBytes;
+    }
+
+    public long getHeapUsedBytes() {
+        return heapUsedBytes;
+    }
+
+    public long getHeapCommittedBytes() {
+        return heapCommittedBytes;
+    }
+
+    public long getMetaspaceBytes() {
+        return metaspaceBytes;
+    }
+
+    public long getClassSpaceBytes() {
+        return classSpaceBytes;
+    }
+
+    public long getCodeCacheBytes() {
+        return codeCacheBytes;
+    }
+
+    public long getDirectBytes() {
+        return directBytes;
+    }
+
+    public long getDirectCount() {
+        return directCount;
+    }
+
+    public long getMappedBytes() {
+        return mappedBytes;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * 线程栈的估算值：线程数乘以-Xss（ThreadStackSize），按全部提交计算，是上限
+     */
+    public long getThreadStackBytes() {
+        return threadStackBytes;
+    }
+
+    /**
+     * NMT按类别的已提交字节数，未开启NMT时为空
+     */
+    public Map<String, Long> getNmtCommitted() {
+        return nmtCommitted;
+    }
+
+    /**
+     * MXBean能看到的堆外内存：元空间、压缩类空间、代码缓存、直接缓冲区、映射缓冲区和线程栈
+     */
+    public long getTrackedNonHeapBytes() {
+        return metaspaceBytes + classSpaceBytes + codeCacheBytes + directBytes + mappedBytes + threadStackBytes;
+    }
+
+    /**
+     * 堆以外的内存，告警按它的增长判断：开启NMT时为NMT的Total减去Java Heap，再加上NMT不统计的映射缓冲区；
+     * 否则为MXBean能看到的部分。不用RSS减去已提交的堆：-Xms等于-Xmx时已提交的堆比RSS还大，差值一直是0
+     */
+    public long getNonHeapBytes() {
+        Long total = nmtCommitted.get("Total");
+        if (total == null) {
+            return getTrackedNonHeapBytes();
+        }
+        return total - nmtCommitted.getOrDefault("Java Heap", 0L) + mappedBytes;
+    }
+
+    /**
+     * 没有被MXBean统计到的部分：GC和JIT的数据结构、JNI库的malloc、glibc arena碎片等。
+     * 开启NMT时按NMT计算；否则只能用RSS减去已提交的堆再减去已统计部分，堆没有全部驻留时偏小
+     */
+    public long getUnexplainedBytes() {
+        if (nmtCommitted.containsKey("Total")) {
+            return Math.max(0, getNonHeapBytes() - getTrackedNonHeapBytes());
+        }
+        return rssBytes < 0 ? 0 : Math.max(0, rssBytes - heapCommittedBytes - getTrackedNonHeapBytes());
+    }
+
+    public void print(PrintStream out) {
+        out.printf("[内存分解 %.1fs] RSS %s, 堆 %d/%d MB, 堆外 %d MB%n", uptimeMillis / 1000.0,
+                rssBytes < 0 ? "未知" : rssBytes / 1024 / 1024 + " MB", heapUsedBytes / 1024 / 1024,
+                heapCommittedBytes / 1024 / 1024, getNonHeapBytes() / 1024 / 1024);
+        out.printf("  元空间 %d MB, 压缩类空间 %d MB, 代码缓存 %d MB, 直接缓冲区 %d MB (%d 个), 映射缓冲区 %d MB, "
+                        + "线程 %d 个（栈 %d MB）, 未归类 %d MB%n", metaspaceBytes / 1024 / 1024,
+                classSpaceBytes / 1024 / 1024, codeCacheBytes / 1024 / 1024, directBytes / 1024 / 1024, directCount,
+                mappedBytes / 1024 / 1024, threads, threadStackBytes / 1024 / 1024, getUnexplainedBytes() / 1024 / 1024);
+        if (!nmtCommitted.isEmpty()) {
+            StringBuilder line = new StringBuilder("  NMT已提交:");
+            for (Map.Entry<String, Long> entry : nmtCommitted.entrySet()) {
+                if (entry.getValue() >= 1024 * 1024) {
+                    line.append(' ').append(entry.getKey()).append(' ').append(entry.getValue() / 1024 / 1024)
+                            .append(" MB,");
+                }
+            }
+            line.setLength(line.length() - 1);
+            out.println(line);
+        }
+    }
+
+    void appendCsv(StringBuilder csv) {
+        csv.append(String.format(Locale.ROOT, "%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%.1f,%d,%.1f,%.1f,%.1f,%.1f",
+                uptimeMillis, rssBytes < 0 ? -1 : mb(rssBytes), mb(heapUsedBytes), mb(heapCommittedBytes),
+                mb(metaspaceBytes), mb(classSpaceBytes), mb(codeCacheBytes), mb(directBytes), directCount,
+                mb(mappedBytes), threads, mb(threadStackBytes), mb(nmtCommitted.getOrDefault("Total", 0L)), mb(getNonHeapBytes()),
+                mb(getUnexplainedBytes())))
+                .append(System.lineSeparator());
+    }
+
+    private static double mb(long bytes) {
+        return bytes / 1024.0 / 1024.0;
+    }
+}
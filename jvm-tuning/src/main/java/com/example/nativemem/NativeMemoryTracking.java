@@ -0,0 +1,77 @@
+package com.example.nativemem;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 通过DiagnosticCommand MBean执行 jcmd VM.native_memory，需要以 -XX:NativeMemoryTracking=summary 启动。
+ * NMT按类别（Java Heap、Class、Thread、Code、GC、Internal、Other...）统计JVM自身申请的本地内存，
+ * 直接缓冲区计入Other，JNI库和glibc自己的malloc不在统计之内
+ */
+public class NativeMemoryTracking {
+    private static final Pattern CATEGORY = Pattern.compile(
+            "^-\\s+(.+?) \\(reserved=(\\d+)KB(?: [+-]\\d+KB)?, committed=(\\d+)KB");
+    private static final Pattern TOTAL = Pattern.compile("^Total: reserved=(\\d+)KB(?: [+-]\\d+KB)?, committed=(\\d+)KB");
+
+    private NativeMemoryTracking() {
+    }
+
+    /**
+     * 当前JVM是否开启了NMT
+     */
+    public static boolean isEnabled() {
+        try {
+            String mode = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                    .getVMOption("NativeMemoryTracking").getValue();
+            return !"off".equals(mode);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 执行VM.native_memory，例如 summary、baseline、summary.diff
+     */
+    public static String execute(String... arguments) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName diagnostic = new ObjectName("com.sun.management:type=DiagnosticCommand");
+        return (String) server.invoke(diagnostic, "vmNativeMemory",
+                new Object[]{arguments}, new String[]{String[].class.getName()});
+    }
+
+    /**
+     * 按类别汇总已提交（committed）的本地内存，键为类别名，另有"Total"；NMT未开启时返回空表
+     */
+    public static Map<String, Long> committedByCategory() {
+        Map<String, Long> committed = new LinkedHashMap<>();
+        if (!isEnabled()) {
+            return committed;
+        }
+        String summary;
+        try {
+            summary = execute("summary");
+        } catch (Exception e) {
+            return committed;
+        }
+        for (String line : summary.split("\\R")) {
+            String trimmed = line.trim();
+            Matcher total = TOTAL.matcher(trimmed);
+            if (total.find()) {
+                committed.put("Total", Long.parseLong(total.group(2)) * 1024);
+                continue;
+            }
+            Matcher category = CATEGORY.matcher(trimmed);
+            if (category.find()) {
+                committed.put(category.group(1).trim(), Long.parseLong(category.group(3)) * 1024);
+            }
+        }
+        return committed;
+    }
+}
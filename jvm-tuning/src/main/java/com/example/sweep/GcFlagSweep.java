@@ -0,0 +1,273 @@
+package com.example.sweep;
+
+import com.example.gclog.GcLogAnalyzer;
+import com.example.gclog.GcStatistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * GC参数自动扫描
+ * 在子JVM中按参数矩阵运行Demo程序，每次运行写独立的GC日志，
+ * 按各次运行的稳态CPU占用在预算内并发执行，最后按p99停顿和吞吐量对配置排序。
+ * 并发运行时各子JVM的停顿可能重叠、互相抢占CPU，停顿数据会偏大；需要干净的停顿数据时加--isolate，
+ * 每次运行独占全部预算，即逐个执行
+ * 运行方式（先 mvn compile）：
+ *    java -cp target/classes com.example.sweep.GcFlagSweep \
+ *        --collectors=G1,Parallel,ZGC --heap=256,512 --pause=50,200 --region=1,4 --gc-threads=2,4 \
+ *        --budget=8 --main=com.example.GCCollectorDemo --out=sweep [--isolate]
+ */
+public class GcFlagSweep {
+    private static final long RUN_TIMEOUT_MINUTES = 10;
+
+    private final String mainClass;
+    private final Path outputDir;
+    private final int cpuBudget;
+    // 每次运行独占全部CPU预算
+    private final boolean isolate;
+    private final int javaFeatureVersion = Runtime.version().feature();
+    // 未指定ParallelGCThreads时，按JVM默认值估算每次运行的CPU占用
+    private final int defaultGcThreads;
+
+    public GcFlagSweep(String mainClass, Path outputDir, int cpuBudget, boolean isolate) {
+        this.mainClass = mainClass;
+        this.outputDir = outputDir;
+        this.cpuBudget = Math.max(1, cpuBudget);
+        this.isolate = isolate;
+        int cpus = Runtime.getRuntime().availableProcessors();
+        this.defaultGcThreads = cpus <= 8 ? cpus : 8 + (cpus - 8) * 5 / 8;
+    }
+
+    /**
+     * 生成参数矩阵的笛卡尔积，不适用于当前收集器的参数会被折叠去重
+     */
+    public static List<GcSweepConfig> matrix(List<String> collectors, List<Integer> heapsMb, List<Integer> pauses,
+                                             List<Integer> regionsMb, List<Integer> gcThreads) {
+        Map<String, GcSweepConfig> configs = new LinkedHashMap<>();
+        for (String collector : collectors) {
+            for (int heap : heapsMb) {
+                for (int pause : pauses) {
+                    for (int region : regionsMb) {
+                        for (int threads : gcThreads) {
+                            GcSweepConfig config = new GcSweepConfig(collector, heap, pause, region, threads);
+                            configs.putIfAbsent(config.label(), config);
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(configs.values());
+    }
+
+    public List<SweepResult> run(List<GcSweepConfig> configs) throws InterruptedException {
+        if (configs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            Files.createDirectories(outputDir);
+        } catch (IOException e) {
+            throw new IllegalStateException("无法创建输出目录: " + outputDir, e);
+        }
+        // 每次运行按其CPU占用获取许可，总占用不超过预算
+        Semaphore cpus = new Semaphore(cpuBudget);
+        ExecutorService launcher = Executors.newFixedThreadPool(Math.min(cpuBudget, configs.size()));
+        try {
+            List<Future<SweepResult>> futures = new ArrayList<>();
+            for (GcSweepConfig config : configs) {
+                int permits = isolate ? cpuBudget : Math.min(cpuBudget, config.cpuCost(defaultGcThreads));
+                futures.add(launcher.submit(() -> {
+                    cpus.acquire(permits);
+                    try {
+                        return runOne(config);
+                    } finally {
+                        cpus.release(permits);
+                    }
+                }));
+            }
+            List<SweepResult> results = new ArrayList<>();
+            for (Future<SweepResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("扫描任务失败", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            launcher.shutdownNow();
+        }
+    }
+
+    private SweepResult runOne(GcSweepConfig config) throws InterruptedException {
+        Path gcLog = outputDir.resolve("gc_" + config.label() + ".log");
+        Path stdout = outputDir.resolve(config.label() + ".out");
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(config.jvmArgs(gcLog, javaFeatureVersion));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass);
+
+        System.out.printf("[启动] %s%n", config.label());
+        long start = System.nanoTime();
+        try {
+            Files.deleteIfExists(gcLog);
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(stdout.toFile())
+                    .start();
+            if (!process.waitFor(RUN_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                return SweepResult.failed(config, "运行超时");
+            }
+            long wallMillis = (System.nanoTime() - start) / 1_000_000;
+            if (process.exitValue() != 0) {
+                return SweepResult.failed(config, "退出码 " + process.exitValue() + "，详见 " + stdout);
+            }
+            if (!Files.exists(gcLog)) {
+                return SweepResult.failed(config, "未生成GC日志");
+            }
+            GcStatistics statistics = GcLogAnalyzer.analyze(gcLog);
+            System.out.printf("[完成] %s 用时 %d ms%n", config.label(), wallMillis);
+            return new SweepResult(config, statistics, wallMillis, null);
+        } catch (IOException e) {
+            return SweepResult.failed(config, e.getMessage());
+        }
+    }
+
+    public static class SweepResult {
+        private final GcSweepConfig config;
+        private final GcStatistics statistics;
+        private final long wallMillis;
+        private final String error;
+
+        SweepResult(GcSweepConfig config, GcStatistics statistics, long wallMillis, String error) {
+            this.config = config;
+            this.statistics = statistics;
+            this.wallMillis = wallMillis;
+            this.error = error;
+        }
+
+        static SweepResult failed(GcSweepConfig config, String error) {
+            return new SweepResult(config, null, 0, error);
+        }
+
+        public GcSweepConfig getConfig() {
+            return config;
+        }
+
+        public GcStatistics getStatistics() {
+            return statistics;
+        }
+
+        public long getWallMillis() {
+            return wallMillis;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        double p99Millis() {
+            return statistics.getPauses().percentileMillis(99);
+        }
+    }
+
+    public static void printRanking(List<SweepResult> results) {
+        List<SweepResult> succeeded = results.stream().filter(SweepResult::isSuccess).collect(Collectors.toList());
+
+        System.out.println();
+        System.out.println("==== 按p99停顿排序（越小越好） ====");
+        succeeded.sort(Comparator.comparingDouble(SweepResult::p99Millis));
+        printTable(succeeded);
+
+        System.out.println();
+        System.out.println("==== 按吞吐量排序（越大越好） ====");
+        succeeded.sort(Comparator.comparingDouble((SweepResult r) -> r.getStatistics().getThroughput()).reversed());
+        printTable(succeeded);
+
+        for (SweepResult result : results) {
+            if (!result.isSuccess()) {
+                System.out.printf("[失败] %s: %s%n", result.getConfig().label(), result.getError());
+            }
+        }
+    }
+
+    private static void printTable(List<SweepResult> results) {
+        System.out.printf("%-4s %-28s %8s %9s %9s %8s %9s%n", "排名", "配置", "停顿数", "p99(ms)", "max(ms)", "吞吐量", "耗时(ms)");
+        int rank = 1;
+        for (SweepResult result : results) {
+            GcStatistics s = result.getStatistics();
+            System.out.printf("%-4d %-28s %8d %9.3f %9.3f %7.2f%% %9d%n", rank++, result.getConfig().label(),
+                    s.getPauses().count(), result.p99Millis(), s.getPauses().maxMicros() / 1000.0,
+                    s.getThroughput() * 100, result.getWallMillis());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else if (arg.startsWith("--")) {
+                options.put(arg.substring(2), "true");
+            }
+        }
+        int javaVersion = Runtime.version().feature();
+        List<String> collectors = Arrays.stream(options.getOrDefault("collectors", "G1,Parallel,ZGC").split(","))
+                .map(String::trim)
+                // CMS在jdk14中被移除
+                .filter(c -> !(javaVersion >= 14 && c.equalsIgnoreCase("CMS")))
+                .collect(Collectors.toList());
+        List<GcSweepConfig> configs = matrix(collectors,
+                ints(options.getOrDefault("heap", "256,512")),
+                ints(options.getOrDefault("pause", "50,200")),
+                ints(options.getOrDefault("region", "0")),
+                ints(options.getOrDefault("gc-threads", "0")));
+        if (configs.isEmpty()) {
+            System.out.println("没有适用的配置，检查--collectors等参数（CMS在jdk14起已移除）");
+            return;
+        }
+
+        String mainClass = options.getOrDefault("main", "com.example.GCCollectorDemo");
+        Path outputDir = Paths.get(options.getOrDefault("out", "sweep"));
+        int budget = Integer.parseInt(options.getOrDefault("budget",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        boolean isolate = Boolean.parseBoolean(options.getOrDefault("isolate", "false"));
+
+        System.out.printf("共 %d 组配置，CPU预算 %d%s，输出目录 %s%n", configs.size(), budget,
+                isolate ? "（逐个执行）" : "", outputDir.toAbsolutePath() + File.separator);
+        List<SweepResult> results = new GcFlagSweep(mainClass, outputDir, budget, isolate).run(configs);
+        printRanking(results);
+    }
+
+    private static List<Integer> ints(String csv) {
+        return Arrays.stream(csv.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(Integer::valueOf)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.sweep;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GC参数扫描中的一组JVM配置
+ * 只对适用的收集器生成对应参数：MaxGCPauseMillis、G1HeapRegionSize 只作用于G1
+ */
+public class GcSweepConfig {
+    private final String collector;
+    private final int heapMb;
+    // 0表示使用JVM默认值
+    private final int maxPauseMillis;
+    private final int regionSizeMb;
+    private final int parallelGcThreads;
+
+    public GcSweepConfig(String collector, int heapMb, int maxPauseMillis, int regionSizeMb, int parallelGcThreads) {
+        this.collector = collector;
+        this.heapMb = heapMb;
+        this.maxPauseMillis = maxPauseMillis;
+        this.regionSizeMb = regionSizeMb;
+        this.parallelGcThreads = parallelGcThreads;
+    }
+
+    public String getCollector() {
+        return collector;
+    }
+
+    public int getHeapMb() {
+        return heapMb;
+    }
+
+    public int getMaxPauseMillis() {
+        return maxPauseMillis;
+    }
+
+    public int getRegionSizeMb() {
+        return regionSizeMb;
+    }
+
+    public int getParallelGcThreads() {
+        return parallelGcThreads;
+    }
+
+    public boolean isG1() {
+        return "G1".equalsIgnoreCase(collector);
+    }
+
+    /**
+     * 运行时稳态占用的CPU数：1个业务线程 + 与业务线程同时运行的并发GC线程（按HotSpot ConcGCThreads的默认值，
+     * 约为并行GC线程数的1/4）。并行GC线程只在停顿期间运行，那时业务线程已经停下，不再重复计入
+     */
+    public int cpuCost(int defaultGcThreads) {
+        if (!isConcurrent()) {
+            return 1;
+        }
+        int gcThreads = parallelGcThreads > 0 ? parallelGcThreads : defaultGcThreads;
+        return 1 + Math.max(1, (gcThreads + 2) / 4);
+    }
+
+    // 有与业务线程并发运行的GC阶段
+    private boolean isConcurrent() {
+        switch (collector.toUpperCase()) {
+            case "SERIAL":
+            case "PARALLEL":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    public List<String> jvmArgs(Path gcLog, int javaFeatureVersion) {
+        List<String> args = new ArrayList<>();
+        switch (collector.toUpperCase()) {
+            case "SERIAL":
+                args.add("-XX:+UseSerialGC");
+                break;
+            case "PARALLEL":
+                args.add("-XX:+UseParallelGC");
+                break;
+            case "CMS":
+                args.add("-XX:+UseConcMarkSweepGC");
+                break;
+            case "ZGC":
+                if (javaFeatureVersion < 15) {
+                    args.add("-XX:+UnlockExperimentalVMOptions");
+                }
+                args.add("-XX:+UseZGC");
+                break;
+            case "SHENANDOAH":
+                args.add("-XX:+UseShenandoahGC");
+                break;
+            default:
+                args.add("-XX:+UseG1GC");
+                break;
+        }
+        args.add("-Xms" + heapMb + "m");
+        args.add("-Xmx" + heapMb + "m");
+        if (isG1() && maxPauseMillis > 0) {
+            args.add("-XX:MaxGCPauseMillis=" + maxPauseMillis);
+        }
+        if (isG1() && regionSizeMb > 0) {
+            args.add("-XX:G1HeapRegionSize=" + regionSizeMb + "m");
+        }
+        if (parallelGcThreads > 0) {
+            args.add("-XX:ParallelGCThreads=" + parallelGcThreads);
+        }
+        args.add("-Xlog:gc*=info:file=" + gcLog + ":uptime,level,tags");
+        return args;
+    }
+
+    /**
+     * 用于文件名和报表的简短标识，如 G1-512m-p200-r4m-t4
+     */
+    public String label() {
+        StringBuilder label = new StringBuilder(collector).append('-').append(heapMb).append('m');
+        if (isG1() && maxPauseMillis > 0) {
+            label.append("-p").append(maxPauseMillis);
+        }
+        if (isG1() && regionSizeMb > 0) {
+            label.append("-r").append(regionSizeMb).append('m');
+        }
+        if (parallelGcThreads > 0) {
+            label.append("-t").append(parallelGcThreads);
+        }
+        return label.toString();
+    }
+
+    @Override
+    public String toString() {
+        return label();
+    }
+}
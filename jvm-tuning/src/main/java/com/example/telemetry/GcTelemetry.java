@@ -0,0 +1,216 @@
+package com.example.telemetry;
+
+import com.example.gclog.PauseHistogram;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内GC遥测
+ * 订阅GarbageCollectorMXBean的GC通知，把每次GC的耗时记录到固定内存的直方图中，
+ * 并记录最近一次GC前后各内存池的占用；分配速率通过线程已分配字节数的增量计算。
+ * ZGC、Shenandoah的"Cycles"、G1的"G1 Concurrent GC"和CMS这类并发收集器报告的是整个并发周期的耗时，
+ * 大部分时间应用线程照常运行，单独标记为并发周期，不当作停顿统计。
+ * 不需要解析日志，也不需要外部工具attach
+ */
+public class GcTelemetry implements NotificationListener, AutoCloseable {
+    private final Map<String, CollectorStats> collectors = new ConcurrentHashMap<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private volatile LastGc lastGc;
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    // 上次采样时各线程的已分配字节数，只对两次采样都存在的线程求增量
+    private Map<Long, Long> lastAllocated = new HashMap<>();
+    private long installNanos;
+    private long allocatedBytesTotal;
+
+    private GcTelemetry() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threadBean = null;
+        }
+    }
+
+    /**
+     * 在所有GC MXBean上注册监听并开始采集
+     */
+    public static GcTelemetry install() {
+        GcTelemetry telemetry = new GcTelemetry();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) gc;
+                emitter.addNotificationListener(telemetry, null, null);
+                telemetry.emitters.add(emitter);
+            }
+            telemetry.collectors.put(gc.getName(),
+                    new CollectorStats(gc.getName(), isConcurrentCycle(gc.getName(), "")));
+        }
+        telemetry.installNanos = System.nanoTime();
+        telemetry.accumulateAllocation();
+        return telemetry;
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        GcInfo gcInfo = info.getGcInfo();
+        CollectorStats stats = collectors.computeIfAbsent(info.getGcName(),
+                name -> new CollectorStats(name, isConcurrentCycle(name, info.getGcAction())));
+        // GcInfo的耗时精度为毫秒
+        stats.histogram.record(gcInfo.getDuration() * 1000);
+        stats.lastCause = info.getGcCause();
+        stats.lastAction = info.getGcAction();
+        lastGc = new LastGc(info.getGcName(), info.getGcCause(), gcInfo.getId(), gcInfo.getDuration(),
+                copyUsage(gcInfo.getMemoryUsageBeforeGc()), copyUsage(gcInfo.getMemoryUsageAfterGc()));
+    }
+
+    // 按MXBean名称和GC动作识别报告并发周期耗时的收集器
+    private static boolean isConcurrentCycle(String gcName, String gcAction) {
+        return gcName.endsWith("Cycles") || "G1 Concurrent GC".equals(gcName) || "ConcurrentMarkSweep".equals(gcName)
+                || gcAction.contains("cycle") || gcAction.contains("concurrent");
+    }
+
+    private static Map<String, Long> copyUsage(Map<String, MemoryUsage> usage) {
+        Map<String, Long> used = new LinkedHashMap<>();
+        for (Map.Entry<String, MemoryUsage> entry : usage.entrySet()) {
+            used.put(entry.getKey(), entry.getValue().getUsed());
+        }
+        return used;
+    }
+
+    /**
+     * 把各线程自上次累加以来新分配的字节数计入累计分配量，返回最新的累计值。
+     * 只累加不清零，调用多少次都不影响任何人算出的分配速率
+     */
+    private synchronized long accumulateAllocation() {
+        if (threadBean == null) {
+            return 0;
+        }
+        long[] ids = threadBean.getAllThreadIds();
+        long[] allocated = threadBean.getThreadAllocatedBytes(ids);
+        Map<Long, Long> current = new HashMap<>(ids.length * 2);
+        long delta = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] < 0) {
+                continue;
+            }
+            current.put(ids[i], allocated[i]);
+            // 新线程没有上次的值，从0算起
+            delta += allocated[i] - lastAllocated.getOrDefault(ids[i], 0L);
+        }
+        boolean first = lastAllocated.isEmpty();
+        lastAllocated = current;
+        // 安装时的第一次只建立基准，之前的分配不计入
+        if (!first) {
+            allocatedBytesTotal += Math.max(0, delta);
+        }
+        return allocatedBytesTotal;
+    }
+
+    /**
+     * 当前快照，分配速率为安装以来的平均值
+     */
+    public GcTelemetrySnapshot snapshot() {
+        return snapshot(null);
+    }
+
+    /**
+     * 当前快照，分配速率按since以来的累计分配量计算（since为null时从安装算起）；
+     * 不改变任何统计窗口，多个调用方各自保留上一次的快照即可
+     */
+    public GcTelemetrySnapshot snapshot(GcTelemetrySnapshot since) {
+        long allocated = accumulateAllocation();
+        long now = System.nanoTime();
+        long fromNanos = since == null ? installNanos : since.getSampleNanos();
+        long fromAllocated = since == null ? 0 : since.getAllocatedBytesTotal();
+        double seconds = (now - fromNanos) / 1e9;
+        double allocationRate = threadBean == null || seconds <= 0 ? 0
+                : Math.max(0, allocated - fromAllocated) / seconds;
+        List<GcTelemetrySnapshot.CollectorSnapshot> collectorSnapshots = new ArrayList<>();
+        for (CollectorStats stats : collectors.values()) {
+            PauseHistogram histogram = stats.histogram.copy();
+            collectorSnapshots.add(new GcTelemetrySnapshot.CollectorSnapshot(stats.name, stats.concurrentCycle,
+                    histogram, stats.lastCause, stats.lastAction));
+        }
+        collectorSnapshots.sort((a, b) -> a.getName().compareTo(b.getName()));
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        LastGc last = lastGc;
+        return new GcTelemetrySnapshot(ManagementFactory.getRuntimeMXBean().getUptime(), now, collectorSnapshots,
+                allocationRate, allocated, heap.getUsed(), heap.getMax(),
+                last == null ? null : last.description(),
+                last == null ? new LinkedHashMap<>() : last.before,
+                last == null ? new LinkedHashMap<>() : last.after);
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (ListenerNotFoundException ignored) {
+                // 已经移除
+            }
+        }
+        emitters.clear();
+    }
+
+    private static class CollectorStats {
+        final String name;
+        // 耗时是并发周期而不是停顿
+        final boolean concurrentCycle;
+        final PauseHistogram histogram = new PauseHistogram();
+        volatile String lastCause;
+        volatile String lastAction;
+
+        CollectorStats(String name, boolean concurrentCycle) {
+            this.name = name;
+            this.concurrentCycle = concurrentCycle;
+        }
+    }
+
+    private static class LastGc {
+        final String collector;
+        final String cause;
+        final long id;
+        final long durationMillis;
+        final Map<String, Long> before;
+        final Map<String, Long> after;
+
+        LastGc(String collector, String cause, long id, long durationMillis,
+               Map<String, Long> before, Map<String, Long> after) {
+            this.collector = collector;
+            this.cause = cause;
+            this.id = id;
+            this.durationMillis = durationMillis;
+            this.before = before;
+            this.after = after;
+        }
+
+        String description() {
+            return String.format("%s #%d (%s) %d ms", collector, id, cause, durationMillis);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.telemetry;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期输出GC遥测快照到控制台和/或CSV文件
+ */
+public class GcTelemetryReporter implements AutoCloseable {
+    private final GcTelemetry telemetry;
+    private final PrintStream console;
+    private final Writer csv;
+    private final ScheduledExecutorService scheduler;
+    // 上一次输出的快照，分配速率按两次输出之间计算
+    private GcTelemetrySnapshot previous;
+
+    /**
+     * @param console 为null时不输出到控制台
+     * @param csvFile 为null时不写CSV
+     */
+    public GcTelemetryReporter(GcTelemetry telemetry, PrintStream console, Path csvFile) throws IOException {
+        this.telemetry = telemetry;
+        this.console = console;
+        if (csvFile != null) {
+            this.csv = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8);
+            csv.write(GcTelemetrySnapshot.CSV_HEADER);
+            csv.write(System.lineSeparator());
+        } else {
+            this.csv = null;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gc-telemetry-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public GcTelemetryReporter start(long interval, TimeUnit unit) {
+        scheduler.scheduleAtFixedRate(this::report, interval, interval, unit);
+        return this;
+    }
+
+    /**
+     * 输出一次快照；失败只打印原因，scheduleAtFixedRate的任务抛出异常后不会再执行
+     */
+    public synchronized void report() {
+        try {
+            GcTelemetrySnapshot snapshot = telemetry.snapshot(previous);
+            previous = snapshot;
+            if (console != null) {
+                snapshot.print(console);
+            }
+            if (csv != null) {
+                StringBuilder rows = new StringBuilder();
+                snapshot.appendCsv(rows);
+                csv.write(rows.toString());
+                csv.flush();
+            }
+        } catch (IOException e) {
+            System.out.println("写入GC遥测CSV失败: " + e);
+        } catch (RuntimeException e) {
+            System.out.println("GC遥测输出失败: " + e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        synchronized (this) {
+            if (csv != null) {
+                csv.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.telemetry;
+
+import com.example.gclog.PauseHistogram;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * GC遥测的某一时刻快照，创建后不再变化
+ */
+public class GcTelemetrySnapshot {
+    static final String CSV_HEADER =
+            "uptime_ms,collector,kind,count,total_ms,p50_ms,p99_ms,max_ms,alloc_mb_per_s,heap_used_mb";
+
+    private final long uptimeMillis;
+    // 采样时的System.nanoTime()，用于计算两次快照之间的分配速率
+    private final long sampleNanos;
+    private final List<CollectorSnapshot> collectors;
+    private final double allocationRateBytesPerSecond;
+    private final long allocatedBytesTotal;
+    private final long heapUsedBytes;
+    private final long heapMaxBytes;
+    private final String lastGc;
+    private final Map<String, Long> lastGcPoolsBefore;
+    private final Map<String, Long> lastGcPoolsAfter;
+
+    GcTelemetrySnapshot(long uptimeMillis, long sampleNanos, List<CollectorSnapshot> collectors, double allocationRateBytesPerSecond,
+                        long allocatedBytesTotal, long heapUsedBytes, long heapMaxBytes, String lastGc,
+                        Map<String, Long> lastGcPoolsBefore, Map<String, Long> lastGcPoolsAfter) {
+        this.uptimeMillis = uptimeMillis;
+        this.sampleNanos = sampleNanos;
+        this.collectors = collectors;
+        this.allocationRateBytesPerSecond = allocationRateBytesPerSecond;
+        this.allocatedBytesTotal = allocatedBytesTotal;
+        this.heapUsedBytes = heapUsedBytes;
+        this.heapMaxBytes = heapMaxBytes;
+        this.lastGc = lastGc;
+        this.lastGcPoolsBefore = lastGcPoolsBefore;
+        this.lastGcPoolsAfter = lastGcPoolsAfter;
+    }
+
+    public long getUptimeMillis() {
+        return uptimeMillis;
+    }
+
+    long getSampleNanos() {
+        return sampleNanos;
+    }
+
+    public List<CollectorSnapshot> getCollectors() {
+        return collectors;
+    }
+
+    public double getAllocationRateMbPerSecond() {
+        return allocationRateBytesPerSecond / 1024 / 1024;
+    }
+
+    public long getAllocatedBytesTotal() {
+        return allocatedBytesTotal;
+    }
+
+    public long getHeapUsedBytes() {
+        return heapUsedBytes;
+    }
+
+    public long getHeapMaxBytes() {
+        return heapMaxBytes;
+    }
+
+    public String getLastGc() {
+        return lastGc;
+    }
+
+    public Map<String, Long> getLastGcPoolsBefore() {
+        return lastGcPoolsBefore;
+    }
+
+    public Map<String, Long> getLastGcPoolsAfter() {
+        return lastGcPoolsAfter;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("[GC遥测 %.1fs] 分配速率 %.1f MB/s, 累计分配 %d MB, 堆 %d/%d MB%n",
+                uptimeMillis / 1000.0, getAllocationRateMbPerSecond(), allocatedBytesTotal / 1024 / 1024,
+                heapUsedBytes / 1024 / 1024, heapMaxBytes / 1024 / 1024);
+        for (CollectorSnapshot c : collectors) {
+            out.printf("  %-24s %s 次数 %6d, 总耗时 %8.1f ms, p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    c.getName(), c.isConcurrentCycle() ? "并发周期" : "停顿    ", c.getCount(), c.getTotalMillis(),
+                    c.getP50Millis(), c.getP99Millis(), c.getMaxMillis());
+        }
+        if (lastGc != null) {
+            out.printf("  最近一次GC: %s%n", lastGc);
+            for (Map.Entry<String, Long> pool : lastGcPoolsBefore.entrySet()) {
+                long after = lastGcPoolsAfter.getOrDefault(pool.getKey(), 0L);
+                out.printf("    %-28s %8d KB -> %8d KB%n", pool.getKey(), pool.getValue() / 1024, after / 1024);
+            }
+        }
+    }
+
+    void appendCsv(StringBuilder csv) {
+        for (CollectorSnapshot c : collectors) {
+            csv.append(uptimeMillis).append(',')
+                    .append(c.getName().replace(',', ' ')).append(',')
+                    .append(c.isConcurrentCycle() ? "cycle" : "pause").append(',')
+                    .append(c.getCount()).append(',')
+                    .append(String.format(Locale.ROOT, "%.3f,%.3f,%.3f,%.3f,%.2f,%d", c.getTotalMillis(), c.getP50Millis(),
+                            c.getP99Millis(), c.getMaxMillis(), getAllocationRateMbPerSecond(),
+                            heapUsedBytes / 1024 / 1024))
+                    .append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * 单个收集器的统计；concurrentCycle为true时耗时是并发周期的长度，不是停顿
+     */
+    public static class CollectorSnapshot {
+        private final String name;
+        private final boolean concurrentCycle;
+        private final PauseHistogram histogram;
+        private final String lastCause;
+        private final String lastAction;
+
+        CollectorSnapshot(String name, boolean concurrentCycle, PauseHistogram histogram, String lastCause,
+                          String lastAction) {
+            this.name = name;
+            this.concurrentCycle = concurrentCycle;
+            this.histogram = histogram;
+            this.lastCause = lastCause;
+            this.lastAction = lastAction;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isConcurrentCycle() {
+            return concurrentCycle;
+        }
+
+        public long getCount() {
+            return histogram.count();
+        }
+
+        public double getTotalMillis() {
+            return histogram.totalMicros() / 1000.0;
+        }
+
+        public double getP50Millis() {
+            return histogram.percentileMillis(50);
+        }
+
+        public double getP99Millis() {
+            return histogram.percentileMillis(99);
+        }
+
+        public double getMaxMillis() {
+            return histogram.maxMicros() / 1000.0;
+        }
+
+        public PauseHistogram getHistogram() {
+            return histogram;
+        }
+
+        public String getLastCause() {
+            return lastCause;
+        }
+
+        public String getLastAction() {
+            return lastAction;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.threads;
+
+import com.example.gclog.MappedLineReader;
+
+import java.io.IOException;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 某一时刻所有线程的快照，来自转储文件或本进程的ThreadMXBean
+ */
+public class ThreadDump {
+    private final String label;
+    private final List<ThreadRecord> threads;
+
+    ThreadDump(String label, List<ThreadRecord> threads) {
+        this.label = label;
+        this.threads = threads;
+    }
+
+    /**
+     * 读取转储文件，文件中有多份转储（如多次kill -3追加到同一日志）时按顺序返回
+     */
+    public static List<ThreadDump> read(Path path) throws IOException {
+        ThreadDumpParser parser = new ThreadDumpParser(path.getFileName().toString());
+        try (MappedLineReader reader = new MappedLineReader(path)) {
+            reader.forEachLine(parser);
+        }
+        return parser.finish();
+    }
+
+    /**
+     * 对本进程做一次线程快照，包含持有的监视器和AQS同步器
+     */
+    public static ThreadDump capture() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        ThreadInfo[] infos = bean.dumpAllThreads(bean.isObjectMonitorUsageSupported(),
+                bean.isSynchronizerUsageSupported());
+        Map<String, String> internedFrames = new HashMap<>();
+        List<ThreadRecord> threads = new ArrayList<>(infos.length);
+        for (ThreadInfo info : infos) {
+            if (info == null) {
+                continue;
+            }
+            ThreadRecord thread = new ThreadRecord(info.getThreadName(), String.valueOf(info.getThreadId()));
+            thread.setState(info.getThreadState().name());
+            StackTraceElement[] stack = info.getStackTrace();
+            for (StackTraceElement element : stack) {
+                thread.addFrame(internedFrames.computeIfAbsent(element.toString(), f -> f));
+            }
+            for (MonitorInfo monitor : info.getLockedMonitors()) {
+                thread.addHeld(lockRef(monitor));
+            }
+            for (LockInfo synchronizer : info.getLockedSynchronizers()) {
+                thread.addHeld(lockRef(synchronizer));
+            }
+            LockInfo lock = info.getLockInfo();
+            if (lock != null) {
+                String kind;
+                if (info.getThreadState() == Thread.State.BLOCKED) {
+                    kind = "waiting to lock";
+                } else if (stack.length > 0 && "java.lang.Object".equals(stack[0].getClassName())
+                        && "wait".equals(stack[0].getMethodName())) {
+                    kind = "waiting on";
+                } else {
+                    kind = "parking to wait for";
+                }
+                thread.setWaitingFor(lockRef(lock), kind);
+            }
+            threads.add(thread);
+        }
+        return new ThreadDump("live @ " + LocalDateTime.now(), threads);
+    }
+
+    private static ThreadRecord.LockRef lockRef(LockInfo lock) {
+        return new ThreadRecord.LockRef("0x" + Integer.toHexString(lock.getIdentityHashCode()), lock.getClassName());
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public List<ThreadRecord> getThreads() {
+        return threads;
+    }
+}
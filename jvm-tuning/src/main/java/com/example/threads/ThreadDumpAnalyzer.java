@@ -0,0 +1,133 @@
+package com.example.threads;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 线程转储分析工具
+ * 对每份转储输出死锁、竞争最激烈的锁和相同调用栈的线程组；有多份转储时再对比找出卡住的线程
+ * 运行方式：
+ *    java -cp target/classes com.example.threads.ThreadDumpAnalyzer dump.threads jstack-1.txt jstack-2.txt [--top=10]
+ *    java -cp target/classes com.example.threads.ThreadDumpAnalyzer --live [--count=3] [--interval=5]
+ * 多份转储可以在同一个文件中（例如多次kill -3的输出），也可以分成多个文件，按参数顺序视为先后采集
+ */
+public class ThreadDumpAnalyzer {
+
+    public static ThreadDumpReport analyze(ThreadDump dump) {
+        return new ThreadDumpReport(dump);
+    }
+
+    /**
+     * 在每份转储中都存在、调用栈始终不变且不处于空闲等待的线程，按调用栈分组
+     * 空闲等待指WAITING/TIMED_WAITING且没有在等待一把被持有的锁，例如线程池中等任务的工作线程
+     */
+    public static List<ThreadDumpReport.StackGroup> findStuck(List<ThreadDump> dumps) {
+        if (dumps.size() < 2) {
+            return new ArrayList<>();
+        }
+        List<Map<String, ThreadRecord>> byKey = new ArrayList<>(dumps.size());
+        for (ThreadDump dump : dumps) {
+            Map<String, ThreadRecord> threads = new HashMap<>(dump.getThreads().size() * 2);
+            for (ThreadRecord thread : dump.getThreads()) {
+                threads.put(thread.getKey(), thread);
+            }
+            byKey.add(threads);
+        }
+        ThreadDump last = dumps.get(dumps.size() - 1);
+        Set<String> heldLocks = new HashSet<>();
+        for (ThreadRecord thread : last.getThreads()) {
+            for (ThreadRecord.LockRef lock : thread.getHeld()) {
+                heldLocks.add(lock.getId());
+            }
+        }
+        List<ThreadRecord> stuck = new ArrayList<>();
+        for (ThreadRecord thread : last.getThreads()) {
+            if (thread.getFrames().isEmpty() || isIdle(thread, heldLocks)) {
+                continue;
+            }
+            boolean unchanged = true;
+            for (int i = 0; i < byKey.size() - 1 && unchanged; i++) {
+                ThreadRecord earlier = byKey.get(i).get(thread.getKey());
+                unchanged = earlier != null && earlier.getState().equals(thread.getState())
+                        && earlier.getFrames().equals(thread.getFrames());
+            }
+            if (unchanged) {
+                stuck.add(thread);
+            }
+        }
+        return ThreadDumpReport.group(stuck);
+    }
+
+    private static boolean isIdle(ThreadRecord thread, Set<String> heldLocks) {
+        String state = thread.getState();
+        return ("WAITING".equals(state) || "TIMED_WAITING".equals(state))
+                && !(thread.isBlocked() && heldLocks.contains(thread.getWaitingFor().getId()));
+    }
+
+    public static void printStuck(PrintStream out, List<ThreadDump> dumps, int top) {
+        List<ThreadDumpReport.StackGroup> stuck = findStuck(dumps);
+        int count = 0;
+        for (ThreadDumpReport.StackGroup group : stuck) {
+            count += group.getThreads().size();
+        }
+        out.printf("==== 对比 %d 份转储：%d 个线程调用栈始终不变且不是空闲等待====%n", dumps.size(), count);
+        ThreadDumpReport.printGroups(out, stuck, top);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("用法: ThreadDumpAnalyzer <线程转储文件>... [--top=10]");
+            System.out.println("      ThreadDumpAnalyzer --live [--count=3] [--interval=5]");
+            return;
+        }
+        int top = 10;
+        boolean live = false;
+        int count = 3;
+        long intervalSeconds = 5;
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if ("--live".equals(arg)) {
+                live = true;
+            } else if (arg.startsWith("--top=")) {
+                top = Integer.parseInt(arg.substring("--top=".length()));
+            } else if (arg.startsWith("--count=")) {
+                count = Integer.parseInt(arg.substring("--count=".length()));
+            } else if (arg.startsWith("--interval=")) {
+                intervalSeconds = Long.parseLong(arg.substring("--interval=".length()));
+            } else {
+                files.add(arg);
+            }
+        }
+
+        long start = System.nanoTime();
+        List<ThreadDump> dumps = new ArrayList<>();
+        if (live) {
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    Thread.sleep(intervalSeconds * 1000);
+                }
+                dumps.add(ThreadDump.capture());
+            }
+            start = System.nanoTime();
+        } else {
+            for (String file : files) {
+                dumps.addAll(ThreadDump.read(Paths.get(file)));
+            }
+        }
+        for (ThreadDump dump : dumps) {
+            analyze(dump).print(System.out, top);
+            System.out.println();
+        }
+        if (dumps.size() > 1) {
+            printStuck(System.out, dumps, top);
+        }
+        System.out.printf("分析耗时: %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.threads;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 逐行解析线程转储文本，支持：
+ * 1. jstack / jcmd Thread.print / kill -3 的输出，一个文件中可以有多份"Full thread dump"
+ * 2. 堆转储工具导出的线程栈（"Thread 0x..."加"at ..."，例如仓库中的dump.threads），只有调用栈没有锁信息
+ * 调用栈帧做了驻留，上万个线程共享相同的帧字符串。
+ * 在Object.wait()中的线程，jstack对同一个监视器既输出"waiting on"又在下面的帧输出"locked"，
+ * 而wait()已经释放了它，这种"locked"不算持有
+ */
+class ThreadDumpParser implements Consumer<String> {
+    private static final Pattern THREAD_ID = Pattern.compile("#(\\d+)|tid=(0x[0-9a-f]+)");
+    private static final Pattern LOCK = Pattern.compile(
+            "- (waiting to lock|waiting to re-lock in wait\\(\\)|parking to wait for|waiting on|locked|eliminated)"
+                    + "\\s+<(0x[0-9a-f]+)> \\(a ([^)]+)\\)");
+    private static final Pattern OWNABLE = Pattern.compile("- <(0x[0-9a-f]+)> \\(a ([^)]+)\\)");
+
+    private final String source;
+    private final List<ThreadDump> dumps = new ArrayList<>();
+    private final Map<String, String> internedFrames = new HashMap<>();
+    private List<ThreadRecord> threads = new ArrayList<>();
+    private ThreadRecord current;
+    // 当前线程在wait()中释放的监视器地址
+    private final Set<String> releasedMonitors = new HashSet<>();
+    private boolean inOwnableSynchronizers;
+    // 转储末尾的死锁报告和JNI信息重复了前面的线程栈，跳过直到下一份转储
+    private boolean skipping;
+    private String lastLine;
+    private String timestamp;
+
+    ThreadDumpParser(String source) {
+        this.source = source;
+    }
+
+    @Override
+    public void accept(String line) {
+        if (line.startsWith("Full thread dump")) {
+            finishDump();
+            skipping = false;
+            // jstack在这一行之前输出转储时间
+            timestamp = lastLine;
+            return;
+        }
+        lastLine = line;
+        if (skipping) {
+            return;
+        }
+        if (line.startsWith("Found ") && line.contains("deadlock") || line.startsWith("JNI global")) {
+            current = null;
+            skipping = true;
+            return;
+        }
+        if (line.startsWith("\"")) {
+            startJstackThread(line);
+            return;
+        }
+        if (line.startsWith("Thread 0x")) {
+            String id = line.substring("Thread ".length()).trim();
+            current = new ThreadRecord(id, id);
+            threads.add(current);
+            releasedMonitors.clear();
+            inOwnableSynchronizers = false;
+            return;
+        }
+        if (current == null) {
+            return;
+        }
+        String trimmed = line.trim();
+        if (trimmed.startsWith("at ")) {
+            String frame = trimmed.substring(3);
+            current.addFrame(internedFrames.computeIfAbsent(frame, f -> f));
+        } else if (trimmed.startsWith("java.lang.Thread.State: ")) {
+            int end = trimmed.indexOf(' ', "java.lang.Thread.State: ".length());
+            current.setState(end < 0 ? trimmed.substring("java.lang.Thread.State: ".length())
+                    : trimmed.substring("java.lang.Thread.State: ".length(), end));
+        } else if (trimmed.startsWith("Locked ownable synchronizers:")) {
+            inOwnableSynchronizers = true;
+        } else if (trimmed.startsWith("- ")) {
+            parseLock(trimmed);
+        }
+    }
+
+    private void startJstackThread(String line) {
+        int close = line.lastIndexOf('"');
+        String name = line.substring(1, Math.max(1, close));
+        String id = "";
+        Matcher matcher = THREAD_ID.matcher(line);
+        if (close > 0 && matcher.find(close)) {
+            id = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        }
+        current = new ThreadRecord(name, id);
+        threads.add(current);
+        releasedMonitors.clear();
+        inOwnableSynchronizers = false;
+    }
+
+    private void parseLock(String line) {
+        if (inOwnableSynchronizers) {
+            Matcher matcher = OWNABLE.matcher(line);
+            if (matcher.matches()) {
+                current.addHeld(new ThreadRecord.LockRef(matcher.group(1), matcher.group(2)));
+            }
+            return;
+        }
+        Matcher matcher = LOCK.matcher(line);
+        if (!matcher.find()) {
+            return;
+        }
+        String kind = matcher.group(1);
+        ThreadRecord.LockRef lock = new ThreadRecord.LockRef(matcher.group(2), matcher.group(3));
+        if ("locked".equals(kind)) {
+            // "waiting on"总是出现在栈顶，先于同一监视器的"locked"
+            if (!releasedMonitors.contains(lock.getId())) {
+                current.addHeld(lock);
+            }
+        } else if (!"eliminated".equals(kind)) {
+            if ("waiting on".equals(kind) || kind.startsWith("waiting to re-lock")) {
+                releasedMonitors.add(lock.getId());
+            }
+            current.setWaitingFor(lock, kind.startsWith("waiting to re-lock") ? "waiting to lock" : kind);
+        }
+    }
+
+    private void finishDump() {
+        if (!threads.isEmpty()) {
+            String label = source + (timestamp == null || timestamp.isEmpty() ? "" : " @ " + timestamp)
+                    + " [" + (dumps.size() + 1) + "]";
+            dumps.add(new ThreadDump(label, threads));
+        }
+        threads = new ArrayList<>();
+        current = null;
+        timestamp = null;
+    }
+
+    List<ThreadDump> finish() {
+        finishDump();
+        return dumps;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.threads;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 单份线程转储的分析结果：线程状态统计、相同调用栈分组、锁等待图中的死锁和竞争最激烈的锁
+ */
+public class ThreadDumpReport {
+    // 分组输出时每组显示的栈帧数
+    private static final int FRAMES_SHOWN = 12;
+
+    private final ThreadDump dump;
+    private final Map<String, Integer> stateCounts = new TreeMap<>();
+    private final List<StackGroup> groups;
+    private final List<ContendedLock> contended = new ArrayList<>();
+    private final List<List<ThreadRecord>> deadlocks = new ArrayList<>();
+
+    ThreadDumpReport(ThreadDump dump) {
+        this.dump = dump;
+        for (ThreadRecord thread : dump.getThreads()) {
+            stateCounts.merge(thread.getState(), 1, Integer::sum);
+        }
+        this.groups = group(dump.getThreads());
+        Map<String, ThreadRecord> owners = new HashMap<>();
+        for (ThreadRecord thread : dump.getThreads()) {
+            for (ThreadRecord.LockRef lock : thread.getHeld()) {
+                owners.put(lock.getId(), thread);
+            }
+        }
+        buildContention(owners);
+        findDeadlocks(owners);
+    }
+
+    /**
+     * 状态和调用栈都相同的线程归为一组，按线程数从多到少排序
+     */
+    static List<StackGroup> group(List<ThreadRecord> threads) {
+        Map<List<String>, StackGroup> byStack = new HashMap<>();
+        for (ThreadRecord thread : threads) {
+            List<String> key = new ArrayList<>(thread.getFrames().size() + 1);
+            key.add(thread.getState());
+            key.addAll(thread.getFrames());
+            byStack.computeIfAbsent(key, k -> new StackGroup(thread.getState(), thread.getFrames()))
+                    .threads.add(thread);
+        }
+        List<StackGroup> groups = new ArrayList<>(byStack.values());
+        groups.sort((a, b) -> Integer.compare(b.threads.size(), a.threads.size()));
+        return groups;
+    }
+
+    private void buildContention(Map<String, ThreadRecord> owners) {
+        Map<String, ContendedLock> byLock = new HashMap<>();
+        for (ThreadRecord thread : dump.getThreads()) {
+            if (!thread.isBlocked()) {
+                continue;
+            }
+            ThreadRecord.LockRef lock = thread.getWaitingFor();
+            ThreadRecord owner = owners.get(lock.getId());
+            // 停在Condition上的线程没有持有者，属于等待通知，不算竞争
+            if (owner == null && !"waiting to lock".equals(thread.getWaitKind())) {
+                continue;
+            }
+            byLock.computeIfAbsent(lock.getId(), id -> new ContendedLock(lock, owner)).waiters.add(thread);
+        }
+        contended.addAll(byLock.values());
+        contended.sort((a, b) -> Integer.compare(b.waiters.size(), a.waiters.size()));
+    }
+
+    // 每个线程最多等待一把锁，等待图中每个节点出度不超过1，沿链走一遍即可找出所有环
+    private void findDeadlocks(Map<String, ThreadRecord> owners) {
+        Map<ThreadRecord, Integer> visited = new IdentityHashMap<>();
+        int walk = 0;
+        for (ThreadRecord start : dump.getThreads()) {
+            walk++;
+            ThreadRecord thread = start;
+            while (thread != null && !visited.containsKey(thread)) {
+                visited.put(thread, walk);
+                thread = next(thread, owners);
+            }
+            if (thread != null && visited.get(thread) == walk) {
+                List<ThreadRecord> cycle = new ArrayList<>();
+                ThreadRecord member = thread;
+                do {
+                    cycle.add(member);
+                    member = next(member, owners);
+                } while (member != thread);
+                deadlocks.add(cycle);
+            }
+        }
+    }
+
+    private static ThreadRecord next(ThreadRecord thread, Map<String, ThreadRecord> owners) {
+        if (!thread.isBlocked()) {
+            return null;
+        }
+        ThreadRecord owner = owners.get(thread.getWaitingFor().getId());
+        return owner == thread ? null : owner;
+    }
+
+    public ThreadDump getDump() {
+        return dump;
+    }
+
+    public Map<String, Integer> getStateCounts() {
+        return stateCounts;
+    }
+
+    public List<StackGroup> getGroups() {
+        return groups;
+    }
+
+    public List<ContendedLock> getContended() {
+        return contended;
+    }
+
+    public List<List<ThreadRecord>> getDeadlocks() {
+        return deadlocks;
+    }
+
+    public void print(PrintStream out, int top) {
+        out.printf("==== 线程转储分析: %s ====%n", dump.getLabel());
+        out.printf("线程数: %d, 不同调用栈: %d, 状态: %s%n", dump.getThreads().size(), groups.size(), stateCounts);
+
+        if (deadlocks.isEmpty()) {
+            out.println("---- 未发现死锁 ----");
+        } else {
+            out.printf("---- 发现 %d 个死锁 ----%n", deadlocks.size());
+            for (List<ThreadRecord> cycle : deadlocks) {
+                for (ThreadRecord thread : cycle) {
+                    out.printf("\"%s\" 等待 %s%n", thread.getName(), thread.getWaitingFor());
+                    out.printf("    at %s%n", topFrame(thread));
+                }
+                out.println();
+            }
+        }
+
+        out.println("---- 竞争最激烈的锁 ----");
+        for (int i = 0; i < Math.min(top, contended.size()); i++) {
+            ContendedLock lock = contended.get(i);
+            out.printf("%5d 个线程等待 %s%n", lock.waiters.size(), lock.lock);
+            if (lock.owner == null) {
+                out.println("      持有者: 未知");
+            } else {
+                out.printf("      持有者: \"%s\" %s at %s%n", lock.owner.getName(), lock.owner.getState(),
+                        topFrame(lock.owner));
+            }
+        }
+
+        out.println("---- 相同调用栈的线程组 ----");
+        printGroups(out, groups, top);
+    }
+
+    static void printGroups(PrintStream out, List<StackGroup> groups, int top) {
+        for (int i = 0; i < Math.min(top, groups.size()); i++) {
+            StackGroup group = groups.get(i);
+            StringBuilder names = new StringBuilder();
+            for (int t = 0; t < Math.min(3, group.threads.size()); t++) {
+                names.append(t == 0 ? "" : ", ").append('"').append(group.threads.get(t).getName()).append('"');
+            }
+            if (group.threads.size() > 3) {
+                names.append(", ...");
+            }
+            out.printf("%5d 个线程 %s: %s%n", group.threads.size(), group.state, names);
+            for (int f = 0; f < Math.min(FRAMES_SHOWN, group.frames.size()); f++) {
+                out.printf("        at %s%n", group.frames.get(f));
+            }
+            if (group.frames.size() > FRAMES_SHOWN) {
+                out.printf("        ... 共 %d 帧%n", group.frames.size());
+            }
+        }
+    }
+
+    private static String topFrame(ThreadRecord thread) {
+        return thread.getFrames().isEmpty() ? "<无调用栈>" : thread.getFrames().get(0);
+    }
+
+    /**
+     * 状态和调用栈相同的一组线程
+     */
+    public static class StackGroup {
+        private final String state;
+        private final List<String> frames;
+        private final List<ThreadRecord> threads = new ArrayList<>();
+
+        StackGroup(String state, List<String> frames) {
+            this.state = state;
+            this.frames = frames;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public List<String> getFrames() {
+            return frames;
+        }
+
+        public List<ThreadRecord> getThreads() {
+            return threads;
+        }
+    }
+
+    /**
+     * 有线程在等待获取的锁
+     */
+    public static class ContendedLock {
+        private final ThreadRecord.LockRef lock;
+        private final ThreadRecord owner;
+        private final List<ThreadRecord> waiters = new ArrayList<>();
+
+        ContendedLock(ThreadRecord.LockRef lock, ThreadRecord owner) {
+            this.lock = lock;
+            this.owner = owner;
+        }
+
+        public ThreadRecord.LockRef getLock() {
+            return lock;
+        }
+
+        public ThreadRecord getOwner() {
+            return owner;
+        }
+
+        public List<ThreadRecord> getWaiters() {
+            return waiters;
+        }
+    }
+}
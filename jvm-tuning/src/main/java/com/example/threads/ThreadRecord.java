@@ -0,0 +1,117 @@
+package com.example.threads;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 线程转储中的一个线程：调用栈、持有的锁，以及正在等待的锁
+ */
+public class ThreadRecord {
+    private final String name;
+    private final String id;
+    private String state = "UNKNOWN";
+    private final List<String> frames = new ArrayList<>();
+    private final List<LockRef> held = new ArrayList<>();
+    private LockRef waitingFor;
+    private String waitKind;
+
+    ThreadRecord(String name, String id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    void setState(String state) {
+        this.state = state;
+    }
+
+    void addFrame(String frame) {
+        frames.add(frame);
+    }
+
+    void addHeld(LockRef lock) {
+        held.add(lock);
+    }
+
+    void setWaitingFor(LockRef lock, String kind) {
+        // 同一栈帧上可能先后出现"waiting on"和"waiting to re-lock"，以阻塞性的为准
+        if (waitingFor == null || isBlocking(kind)) {
+            this.waitingFor = lock;
+            this.waitKind = kind;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 线程标识：jstack中的#编号或tid，实时快照中的线程ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 跨多次转储识别同一线程用的键
+     */
+    public String getKey() {
+        return name + "#" + id;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public List<String> getFrames() {
+        return frames;
+    }
+
+    public List<LockRef> getHeld() {
+        return held;
+    }
+
+    public LockRef getWaitingFor() {
+        return waitingFor;
+    }
+
+    public String getWaitKind() {
+        return waitKind;
+    }
+
+    /**
+     * 是否在等待获取一把锁（而不是在Object.wait中等待通知）
+     */
+    public boolean isBlocked() {
+        return waitingFor != null && isBlocking(waitKind);
+    }
+
+    private static boolean isBlocking(String kind) {
+        return !"waiting on".equals(kind);
+    }
+
+    /**
+     * 锁对象：jstack中的对象地址，实时快照中的identityHashCode
+     */
+    public static class LockRef {
+        private final String id;
+        private final String className;
+
+        LockRef(String id, String className) {
+            this.id = id;
+            this.className = className;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        @Override
+        public String toString() {
+            return "<" + id + "> (" + className + ")";
+        }
+    }
+}
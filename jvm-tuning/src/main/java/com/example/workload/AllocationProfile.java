@@ -0,0 +1,211 @@
+package com.example.workload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * 声明式的内存分配画像
+ * 通过properties描述分配速率、对象大小分布、生命周期分布、humongous比例和线程数，
+ * 配置示例见 src/main/resources/profiles/*.properties
+ */
+public class AllocationProfile {
+    private final String name;
+    private final double allocationRateMbPerSecond;
+    private final List<SizeClass> sizeClasses;
+    private final double youngFraction;
+    private final double mediumFraction;
+    private final double tenuredFraction;
+    private final int mediumSlots;
+    private final int tenuredSlots;
+    private final double humongousFraction;
+    private final int humongousSize;
+    private final int threads;
+    private final int durationSeconds;
+
+    // 按权重累加的分布表，用于抽样
+    private final double[] cumulativeWeights;
+
+    private AllocationProfile(String name, Properties p) {
+        this.name = name;
+        this.allocationRateMbPerSecond = Double.parseDouble(p.getProperty("allocation.rate.mb", "500"));
+        this.sizeClasses = parseSizeClasses(p.getProperty("object.sizes", "1k-1m:1"));
+        this.youngFraction = Double.parseDouble(p.getProperty("lifetime.young", "0.5"));
+        this.mediumFraction = Double.parseDouble(p.getProperty("lifetime.medium", "0.45"));
+        this.tenuredFraction = Double.parseDouble(p.getProperty("lifetime.tenured", "0.05"));
+        this.mediumSlots = Integer.parseInt(p.getProperty("retention.medium.slots", "128"));
+        this.tenuredSlots = Integer.parseInt(p.getProperty("retention.tenured.slots", "32"));
+        this.humongousFraction = Double.parseDouble(p.getProperty("humongous.fraction", "0"));
+        this.humongousSize = (int) parseSize(p.getProperty("humongous.size", "2m"));
+        this.threads = Integer.parseInt(p.getProperty("threads", "1"));
+        this.durationSeconds = Integer.parseInt(p.getProperty("duration.seconds", "10"));
+
+        double lifetimeTotal = youngFraction + mediumFraction + tenuredFraction;
+        if (sizeClasses.isEmpty() || threads <= 0 || lifetimeTotal <= 0 || mediumSlots <= 0 || tenuredSlots <= 0) {
+            throw new IllegalArgumentException("非法的分配画像配置: " + name);
+        }
+        this.cumulativeWeights = new double[sizeClasses.size()];
+        double sum = 0;
+        for (int i = 0; i < sizeClasses.size(); i++) {
+            sum += sizeClasses.get(i).weight;
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    public static AllocationProfile fromProperties(String name, Properties properties) {
+        return new AllocationProfile(name, properties);
+    }
+
+    /**
+     * 加载画像：优先按文件路径读取，其次按classpath下 profiles/&lt;name&gt;.properties 读取
+     */
+    public static AllocationProfile load(String location) throws IOException {
+        Properties properties = new Properties();
+        Path path = Paths.get(location);
+        if (Files.isRegularFile(path)) {
+            try (InputStream in = Files.newInputStream(path)) {
+                properties.load(in);
+            }
+            return new AllocationProfile(path.getFileName().toString(), properties);
+        }
+        String resource = "profiles/" + location + (location.endsWith(".properties") ? "" : ".properties");
+        try (InputStream in = AllocationProfile.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("找不到分配画像: " + location);
+            }
+            properties.load(in);
+        }
+        return new AllocationProfile(location, properties);
+    }
+
+    /**
+     * 按权重抽取一个对象大小
+     */
+    int sampleSize(double sizeRandom, double valueRandom) {
+        double target = sizeRandom * cumulativeWeights[cumulativeWeights.length - 1];
+        int index = 0;
+        while (index < cumulativeWeights.length - 1 && cumulativeWeights[index] < target) {
+            index++;
+        }
+        SizeClass sizeClass = sizeClasses.get(index);
+        return (int) (sizeClass.min + (long) ((sizeClass.max - sizeClass.min) * valueRandom));
+    }
+
+    Lifetime sampleLifetime(double random) {
+        double target = random * (youngFraction + mediumFraction + tenuredFraction);
+        if (target < youngFraction) {
+            return Lifetime.YOUNG;
+        }
+        return target < youngFraction + mediumFraction ? Lifetime.MEDIUM : Lifetime.TENURED;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getAllocationRateMbPerSecond() {
+        return allocationRateMbPerSecond;
+    }
+
+    public List<SizeClass> getSizeClasses() {
+        return sizeClasses;
+    }
+
+    public int getMediumSlots() {
+        return mediumSlots;
+    }
+
+    public int getTenuredSlots() {
+        return tenuredSlots;
+    }
+
+    public double getHumongousFraction() {
+        return humongousFraction;
+    }
+
+    public int getHumongousSize() {
+        return humongousSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%s: rate=%.0fMB/s sizes=%s lifetime(young/medium/tenured)=%.2f/%.2f/%.2f "
+                        + "slots(medium/tenured)=%d/%d humongous=%.3f@%dKB threads=%d duration=%ds",
+                name, allocationRateMbPerSecond, sizeClasses, youngFraction, mediumFraction, tenuredFraction,
+                mediumSlots, tenuredSlots, humongousFraction, humongousSize / 1024, threads, durationSeconds);
+    }
+
+    enum Lifetime { YOUNG, MEDIUM, TENURED }
+
+    /**
+     * 一段对象大小区间及其权重
+     */
+    public static class SizeClass {
+        private final long min;
+        private final long max;
+        private final double weight;
+
+        SizeClass(long min, long max, double weight) {
+            this.min = min;
+            this.max = max;
+            this.weight = weight;
+        }
+
+        @Override
+        public String toString() {
+            return min + "-" + max + ":" + weight;
+        }
+    }
+
+    // 格式：1k-64k:60,64k-512k:30,1m:10
+    static List<SizeClass> parseSizeClasses(String text) {
+        List<SizeClass> classes = new ArrayList<>();
+        for (String part : text.split(",")) {
+            String entry = part.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            String[] rangeAndWeight = entry.split(":");
+            double weight = rangeAndWeight.length > 1 ? Double.parseDouble(rangeAndWeight[1].trim()) : 1;
+            String[] range = rangeAndWeight[0].split("-");
+            long min = parseSize(range[0]);
+            long max = range.length > 1 ? parseSize(range[1]) : min;
+            if (min <= 0 || max < min || max > Integer.MAX_VALUE - 8 || weight <= 0) {
+                throw new IllegalArgumentException("非法的对象大小区间: " + entry);
+            }
+            classes.add(new SizeClass(min, max, weight));
+        }
+        return classes;
+    }
+
+    static long parseSize(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (value.endsWith("k")) {
+            unit = 1024;
+        } else if (value.endsWith("m")) {
+            unit = 1024 * 1024;
+        } else if (value.endsWith("g")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        if (unit > 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+        return (long) (Double.parseDouble(value) * unit);
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.workload;
+
+import com.example.cache.BufferPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按分配画像产生内存分配负载
+ * 每个线程按 速率/线程数 限速分配，对象按生命周期进入不同的环形保留区：
+ * young对象只保留到下一次分配，medium/tenured对象保留到被环形缓冲覆盖为止。
+ * 指定缓冲池时对象从池中取，不再被保留时归还，用来对比池化和直接分配的GC开销
+ */
+public class AllocationWorkload {
+    // 每分配这么多字节检查一次限速，避免频繁调用nanoTime
+    private static final long PACING_CHUNK_BYTES = 256 * 1024;
+
+    private final AllocationProfile profile;
+    private final BufferPool pool;
+    private volatile boolean stopped;
+
+    public AllocationWorkload(AllocationProfile profile) {
+        this(profile, null);
+    }
+
+    /**
+     * @param pool 为null时每个对象都直接new
+     */
+    public AllocationWorkload(AllocationProfile profile, BufferPool pool) {
+        this.profile = profile;
+        this.pool = pool;
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    public Result run() throws InterruptedException {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(profile.getThreads(), r -> {
+            Thread thread = new Thread(r, "alloc-worker-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(profile.getDurationSeconds());
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int i = 0; i < profile.getThreads(); i++) {
+                futures.add(workers.submit(() -> new Worker().run(deadline)));
+            }
+            Result total = new Result();
+            for (Future<Result> future : futures) {
+                try {
+                    total.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("分配线程异常", e.getCause());
+                }
+            }
+            total.elapsedNanos = System.nanoTime() - start;
+            return total;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private class Worker {
+        private final RingRetention medium = new RingRetention(profile.getMediumSlots());
+        private final RingRetention tenured = new RingRetention(profile.getTenuredSlots());
+        // 保存最近一个young对象，防止分配被JIT优化掉
+        private byte[] young;
+
+        Result run(long deadline) {
+            Result result = new Result();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            double bytesPerNano = profile.getAllocationRateMbPerSecond() * 1024 * 1024
+                    / profile.getThreads() / 1e9;
+            long start = System.nanoTime();
+            long nextPacingCheck = PACING_CHUNK_BYTES;
+
+            while (!stopped) {
+                boolean humongous = random.nextDouble() < profile.getHumongousFraction();
+                int size = humongous ? profile.getHumongousSize()
+                        : profile.sampleSize(random.nextDouble(), random.nextDouble());
+                byte[] object = pool == null ? new byte[size] : pool.acquire(size);
+                object[0] = 1;
+                object[size - 1] = 1;
+
+                byte[] released;
+                switch (profile.sampleLifetime(random.nextDouble())) {
+                    case YOUNG:
+                        released = young;
+                        young = object;
+                        result.youngObjects++;
+                        break;
+                    case MEDIUM:
+                        released = medium.retain(object);
+                        result.mediumObjects++;
+                        break;
+                    default:
+                        released = tenured.retain(object);
+                        result.tenuredObjects++;
+                        break;
+                }
+                if (pool != null && released != null) {
+                    pool.release(released);
+                }
+                if (humongous) {
+                    result.humongousObjects++;
+                }
+                result.allocatedBytes += size;
+
+                if (result.allocatedBytes >= nextPacingCheck) {
+                    nextPacingCheck = result.allocatedBytes + PACING_CHUNK_BYTES;
+                    long now = System.nanoTime();
+                    if (now >= deadline) {
+                        break;
+                    }
+                    if (bytesPerNano > 0) {
+                        long ahead = start + (long) (result.allocatedBytes / bytesPerNano) - now;
+                        if (ahead > 0) {
+                            LockSupport.parkNanos(Math.min(ahead, deadline - now));
+                        }
+                    }
+                }
+            }
+            result.retainedBytes = medium.getRetainedBytes() + tenured.getRetainedBytes()
+                    + (young == null ? 0 : young.length);
+            return result;
+        }
+    }
+
+    /**
+     * 一次负载运行的统计
+     */
+    public static class Result {
+        private long allocatedBytes;
+        private long youngObjects;
+        private long mediumObjects;
+        private long tenuredObjects;
+        private long humongousObjects;
+        private long retainedBytes;
+        private long elapsedNanos;
+
+        void add(Result other) {
+            allocatedBytes += other.allocatedBytes;
+            youngObjects += other.youngObjects;
+            mediumObjects += other.mediumObjects;
+            tenuredObjects += other.tenuredObjects;
+            humongousObjects += other.humongousObjects;
+            retainedBytes += other.retainedBytes;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long getObjectCount() {
+            return youngObjects + mediumObjects + tenuredObjects;
+        }
+
+        public long getHumongousObjects() {
+            return humongousObjects;
+        }
+
+        public long getRetainedBytes() {
+            return retainedBytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getAllocationRateMbPerSecond() {
+            return elapsedNanos == 0 ? 0 : allocatedBytes / 1024.0 / 1024.0 / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("分配 %d MB, 对象 %d 个 (young %d / medium %d / tenured %d, humongous %d), "
+                            + "实际速率 %.1f MB/s, 结束时保留 %d MB",
+                    allocatedBytes / 1024 / 1024, getObjectCount(), youngObjects, mediumObjects, tenuredObjects,
+                    humongousObjects, getAllocationRateMbPerSecond(), retainedBytes / 1024 / 1024);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.workload;
+
+/**
+ * 固定容量的环形保留区
+ * 新对象覆盖最老的槽位，被覆盖的对象随即成为垃圾，每次操作O(1)，
+ * 避免 ArrayList.remove(0) 带来的数组搬移对测量结果的干扰。
+ * 每个分配线程持有自己的实例，不需要同步
+ */
+public class RingRetention {
+    private final byte[][] slots;
+    private int next;
+    private long retainedBytes;
+
+    public RingRetention(int capacity) {
+        this.slots = new byte[capacity][];
+    }
+
+    /**
+     * 保留一个对象，返回被挤出的对象（没有则为null），使用缓冲池时可以把它归还
+     */
+    public byte[] retain(byte[] object) {
+        byte[] evicted = slots[next];
+        slots[next] = object;
+        next = next + 1 == slots.length ? 0 : next + 1;
+        retainedBytes += object.length - (evicted == null ? 0 : evicted.length);
+        return evicted;
+    }
+
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+        next = 0;
+        retainedBytes = 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.threadpool.adaptive;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 线程池自适应调整的配置，前缀 thread-pool.adaptive
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "thread-pool.adaptive")
+public class AdaptivePoolProperties {
+    // 是否开启自适应调整
+    private boolean enabled = true;
+    // 采样与决策的间隔
+    private long intervalMs = 1000;
+    // 平均排队时间超过该值视为压力大
+    private long targetWaitMs = 50;
+    // 队列占用超过容量的这个比例视为压力大
+    private double scaleUpQueueRatio = 0.2;
+    // 活跃线程占核心线程的比例低于该值、且队列为空视为空闲
+    private double scaleDownUtilization = 0.3;
+    // 连续多少个周期压力大才扩容
+    private int scaleUpTicks = 2;
+    // 连续多少个周期空闲才缩容，比扩容慢，避免来回震荡
+    private int scaleDownTicks = 10;
+    // 每次调整后至少等待这么久再做下一次调整
+    private long cooldownMs = 5000;
+    // 未单独配置的线程池使用的边界
+    private Bounds defaults = new Bounds();
+    // 按bean名称单独配置的边界
+    private Map<String, Bounds> executors = new HashMap<>();
+
+    public Bounds boundsFor(String name) {
+        return executors.getOrDefault(name, defaults);
+    }
+
+    /**
+     * 单个线程池的调整范围
+     */
+    @Data
+    public static class Bounds {
+        // 核心线程数下限
+        private int minCore = 2;
+        // 核心线程数上限
+        private int maxCore = 50;
+        // 最大线程数始终不低于核心线程数加上这个余量
+        private int maxPoolHeadroom = 5;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.threadpool.adaptive;
+
+import com.example.threadpool.metrics.ExecutorMetrics;
+import com.example.threadpool.metrics.ExecutorRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 线程池自适应调整
+ * LinkedBlockingQueue有界时，超出核心线程数的线程要等队列满了才会创建，所以这里直接调整核心线程数：
+ * 排队时间或队列占用持续偏高就按1.5倍扩容，线程持续空闲才逐步缩容，最大线程数跟随核心线程数保留余量。
+ * 扩容和缩容的阈值、连续周期数都不同，每次调整后还有冷却时间，避免在阈值附近来回震荡
+ */
+@Slf4j
+@Component
+public class AdaptivePoolSizer {
+
+    private final ExecutorRegistry registry;
+    private final AdaptivePoolProperties properties;
+    private final Map<String, SizerState> states = new ConcurrentHashMap<>();
+
+    public AdaptivePoolSizer(ExecutorRegistry registry, AdaptivePoolProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+    }
+
+    @Scheduled(fixedDelayString = "${thread-pool.adaptive.interval-ms:1000}")
+    public void adjust() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (ExecutorRegistry.ManagedExecutor managed : registry.getExecutors()) {
+            if (!managed.isResizable()) {
+                continue;
+            }
+            SizerState state = states.computeIfAbsent(managed.getName(), k -> new SizerState(now));
+            try {
+                adjust(managed, state, now);
+            } catch (RuntimeException e) {
+                log.error("线程池 {} 自适应调整失败", managed.getName(), e);
+            }
+        }
+    }
+
+    private void adjust(ExecutorRegistry.ManagedExecutor managed, SizerState state, long now) {
+        ThreadPoolExecutor executor = managed.getExecutor();
+        ExecutorMetrics.Window window = managed.getMetrics().drain();
+        double elapsedMillis = Math.max(1, (now - state.lastTickNanos) / 1e6);
+        state.lastTickNanos = now;
+
+        int core = executor.getCorePoolSize();
+        int queued = executor.getQueue().size();
+        double queueRatio = (double) queued / Math.max(1, managed.getQueueCapacity());
+        // 周期内的平均并发：任务执行时间之和除以周期长度，与此刻的活跃线程数取大者
+        double busy = Math.max(window.getRunMillis() / elapsedMillis, executor.getActiveCount());
+        double utilization = busy / Math.max(1, core);
+
+        boolean pressured = window.getAvgWaitMillis() > properties.getTargetWaitMs()
+                || queueRatio > properties.getScaleUpQueueRatio();
+        boolean idle = queued == 0 && utilization < properties.getScaleDownUtilization()
+                && window.getAvgWaitMillis() < properties.getTargetWaitMs() / 2.0;
+        state.upTicks = pressured ? state.upTicks + 1 : 0;
+        state.downTicks = idle ? state.downTicks + 1 : 0;
+
+        if ((now - state.lastChangeNanos) / 1_000_000 < properties.getCooldownMs()) {
+            return;
+        }
+        AdaptivePoolProperties.Bounds bounds = properties.boundsFor(managed.getName());
+        int target = core;
+        if (state.upTicks >= properties.getScaleUpTicks()) {
+            target = Math.max(core, Math.min(bounds.getMaxCore(), Math.max(core + 1, (int) Math.ceil(core * 1.5))));
+        } else if (state.downTicks >= properties.getScaleDownTicks()) {
+            // 每次最多缩掉四分之一，且保留比当前并发多一个线程
+            int floor = Math.max(bounds.getMinCore(), (int) Math.ceil(busy) + 1);
+            target = Math.max(floor, core - Math.max(1, core / 4));
+        }
+        if (target == core) {
+            return;
+        }
+        managed.resize(target, Math.max(managed.getInitialMaxPoolSize(), target + bounds.getMaxPoolHeadroom()));
+        state.lastChangeNanos = now;
+        state.upTicks = 0;
+        state.downTicks = 0;
+        log.info("线程池 {} 核心线程数 {} -> {}，最大线程数 {}（平均排队 {} ms，队列 {}/{}，利用率 {}%）",
+                managed.getName(), core, target, executor.getMaximumPoolSize(),
+                String.format("%.1f", window.getAvgWaitMillis()), queued, managed.getQueueCapacity(),
+                Math.round(utilization * 100));
+    }
+
+    private static class SizerState {
+        long lastTickNanos;
+        long lastChangeNanos;
+        int upTicks;
+        int downTicks;
+
+        SizerState(long now) {
+            this.lastTickNanos = now;
+            this.lastChangeNanos = now;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.threadpool.batch;
+
+import java.util.List;
+
+/**
+ * 一次处理一整批数据，返回的结果与输入一一对应、顺序相同
+ */
+@FunctionalInterface
+public interface BatchHandler<I, O> {
+
+    List<O> handle(List<I> items) throws Exception;
+}
@@ -0,0 +1,215 @@
+package com.example.threadpool.batch;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 微批处理：把逐条提交的数据攒成批，攒够maxBatchSize条或第一条等待超过maxLinger就交给线程池整批处理，
+ * 每条数据的调用方拿到自己的CompletableFuture。
+ * 队列有界，同时执行的批次数也有上限；下游处理不过来时批次占满，队列随之填满，submit()阻塞调用方。
+ * 分发线程退出（关闭后处理完，或被中断）时队列里剩下的数据全部以异常结束，之后的提交直接拒绝
+ */
+@Slf4j
+public class MicroBatcher<I, O> implements AutoCloseable {
+
+    private final String name;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final int maxInFlightBatches;
+    private final Executor executor;
+    private final BatchHandler<I, O> handler;
+    private final BlockingQueue<Entry<I, O>> queue;
+    private final Semaphore inFlight;
+    private final Thread dispatcher;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private volatile boolean closed;
+    // 分发线程已经退出，不会再从队列取数据
+    private volatile boolean terminated;
+
+    public MicroBatcher(String name, int maxBatchSize, Duration maxLinger, int queueCapacity, int maxInFlightBatches,
+                        Executor executor, BatchHandler<I, O> handler) {
+        this.name = name;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = maxLinger.toNanos();
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.executor = executor;
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.inFlight = new Semaphore(maxInFlightBatches);
+        this.dispatcher = new Thread(this::dispatchLoop, "batcher-" + name);
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * 提交一条数据，队列满时阻塞等待
+     */
+    public CompletableFuture<O> submit(I item) throws InterruptedException {
+        if (closed) {
+            throw new RejectedExecutionException(name + " 已关闭");
+        }
+        Entry<I, O> entry = new Entry<>(item);
+        queue.put(entry);
+        // 关闭与提交并发时分发线程可能已经退出：放入发生在它清空队列之前的由它失败，之后的在这里移除
+        if (terminated) {
+            queue.remove(entry);
+            throw new RejectedExecutionException(name + " 已关闭");
+        }
+        return entry.future;
+    }
+
+    /**
+     * 停止接收新数据，把队列里剩下的处理完，最多等待timeout；
+     * 等待时被中断则不再等待，恢复中断标记后返回，剩下的数据由分发线程照常处理
+     */
+    public void close(Duration timeout) {
+        closed = true;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            dispatcher.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            if (inFlight.tryAcquire(maxInFlightBatches, Math.max(0, deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS)) {
+                inFlight.release(maxInFlightBatches);
+            } else {
+                log.warn("{} 关闭超时，仍有批次未处理完", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("{} 等待关闭时被中断，不再等待剩余批次", name);
+            return;
+        }
+        log.info("{} 已关闭，共处理 {} 批 {} 条，平均每批 {} 条", name, getBatches(), getItems(),
+                String.format("%.1f", getAverageBatchSize()));
+    }
+
+    @Override
+    public void close() {
+        close(Duration.ofSeconds(30));
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getItems() {
+        return items.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long count = getBatches();
+        return count == 0 ? 0 : (double) getItems() / count;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void dispatchLoop() {
+        List<Entry<I, O>> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Entry<I, O> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 关闭时不再等待，尽快处理完剩下的数据
+                long deadline = System.nanoTime() + (closed ? 0 : maxLingerNanos);
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    Entry<I, O> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                inFlight.acquire();
+                dispatch(new ArrayList<>(batch));
+                batch.clear();
+            } catch (InterruptedException e) {
+                // 不再有线程取数据，队列满后put()会一直阻塞，按关闭处理
+                closed = true;
+                log.warn("{} 分发线程被中断，剩余数据全部失败", name);
+                RejectedExecutionException cause = new RejectedExecutionException(name + " 分发线程被中断", e);
+                fail(batch, cause);
+                terminate(cause);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        terminate(new RejectedExecutionException(name + " 已关闭"));
+    }
+
+    // 分发线程退出前调用，让队列里剩下的数据失败
+    private void terminate(Throwable cause) {
+        terminated = true;
+        List<Entry<I, O>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        fail(remaining, cause);
+    }
+
+    private void dispatch(List<Entry<I, O>> batch) {
+        try {
+            executor.execute(() -> runBatch(batch));
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            fail(batch, e);
+        }
+    }
+
+    private void runBatch(List<Entry<I, O>> batch) {
+        int size = batch.size();
+        try {
+            List<I> inputs = new ArrayList<>(batch.size());
+            for (Entry<I, O> entry : batch) {
+                inputs.add(entry.item);
+            }
+            List<O> results = handler.handle(inputs);
+            if (results == null || results.size() != batch.size()) {
+                throw new IllegalStateException(name + " 批处理返回 " + (results == null ? 0 : results.size())
+                        + " 条结果，应为 " + batch.size() + " 条");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (Throwable t) {
+            log.error("{} 批处理失败，{} 条数据", name, size, t);
+            fail(batch, t);
+        } finally {
+            batches.increment();
+            items.add(size);
+            inFlight.release();
+        }
+    }
+
+    private void fail(List<Entry<I, O>> batch, Throwable t) {
+        for (Entry<I, O> entry : batch) {
+            entry.future.completeExceptionally(t);
+        }
+        batch.clear();
+    }
+
+    private static class Entry<I, O> {
+        final I item;
+        final CompletableFuture<O> future = new CompletableFuture<>();
+
+        Entry(I item) {
+            this.item = item;
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package com.example.threadpool.config;
 
+import com.example.threadpool.metrics.ExecutorMetrics;
+import com.example.threadpool.metrics.ExecutorRegistry;
+import com.example.threadpool.virtual.BoundedVirtualThreadExecutor;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import javax.annotation.PostConstruct;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 public class AsyncExecutorConfig implements AsyncConfigurer {
@@ -23,14 +28,52 @@ public class AsyncExecutorConfig implements AsyncConfigurer {
     @Value("${thread-pool.keep-alive-seconds}")
     private int keepAliveSeconds;
 
+    @Value("${thread-pool.mode:platform}")
+    private String mode;
+
+    @Value("${thread-pool.virtual.max-concurrency}")
+    private int virtualMaxConcurrency;
+
+    @Value("${thread-pool.virtual.max-pending}")
+    private int virtualMaxPending;
+
+    private final ExecutorRegistry executorRegistry;
+
+    private Executor asyncExecutor;
+
+    public AsyncExecutorConfig(ExecutorRegistry executorRegistry) {
+        this.executorRegistry = executorRegistry;
+    }
+
+    // 启动时就创建并登记，不等第一次@Async调用，指标里从一开始就有asyncExecutor
+    @PostConstruct
+    public void initAsyncExecutor() {
+        asyncExecutor = createAsyncExecutor();
+    }
+
     @Override
     public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    private Executor createAsyncExecutor() {
+        if ("virtual".equals(mode)) {
+            BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("async-vthread-",
+                    virtualMaxConcurrency, virtualMaxPending, new ExecutorMetrics());
+            executorRegistry.register("asyncExecutor", executor, executor.getMetrics());
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(corePoolSize);
         executor.setMaxPoolSize(10);
         executor.setQueueCapacity(25);
         executor.setThreadNamePrefix("async-");
+        // 未指定线程池的@Async方法都走这里，同样记录指标
+        ExecutorMetrics metrics = new ExecutorMetrics();
+        executor.setTaskDecorator(metrics::wrap);
+        executor.setRejectedExecutionHandler(metrics.countRejections(new ThreadPoolExecutor.AbortPolicy()));
         executor.initialize();
+        executorRegistry.register("asyncExecutor", executor, metrics);
         return executor;
     }
 
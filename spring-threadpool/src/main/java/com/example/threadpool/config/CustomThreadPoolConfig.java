@@ -1,5 +1,12 @@
 package com.example.threadpool.config;
 
+import com.example.threadpool.limit.AdaptiveConcurrencyLimiter;
+import com.example.threadpool.limit.ConcurrencyLimitProperties;
+import com.example.threadpool.metrics.ExecutorMetrics;
+import com.example.threadpool.metrics.ExecutorRegistry;
+import com.example.threadpool.metrics.TimedThreadPoolExecutor;
+import com.example.threadpool.shedding.SheddingProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -9,13 +16,19 @@ import java.util.concurrent.*;
 public class CustomThreadPoolConfig {
 
     @Bean
-    public ThreadPoolExecutor customThreadPoolExecutor() {
-        return new ThreadPoolExecutor(
+    @ConditionalOnProperty(prefix = "thread-pool", name = "mode", havingValue = "platform", matchIfMissing = true)
+    public ThreadPoolExecutor customThreadPoolExecutor(ExecutorRegistry executorRegistry,
+                                                       ConcurrencyLimitProperties limitProperties,
+                                                       SheddingProperties sheddingProperties) {
+        int queueCapacity = 25;
+        // 记录任务指标的线程池，登记后由自适应调整和监控接口使用
+        TimedThreadPoolExecutor executor = new TimedThreadPoolExecutor(
+            new ExecutorMetrics(),
             5,                      // 核心线程数
             10,                     // 最大线程数
             60L,                    // 空闲线程存活时间
             TimeUnit.SECONDS,       // 时间单位
-            new LinkedBlockingQueue<>(25), // 任务队列
+            sheddingProperties.newQueue(queueCapacity), // 任务队列，积压时可改为后进先出
             new ThreadFactory() {   // 自定义线程工厂
                 private int count = 0;
                 @Override
@@ -25,7 +38,20 @@ public class CustomThreadPoolConfig {
                     return thread;
                 }
             },
-            new ThreadPoolExecutor.CallerRunsPolicy() // 拒绝策略
+            // 拒绝策略：开启并发限制时直接拒绝，否则由调用线程处理
+            limitProperties.isEnabled()
+                ? new ThreadPoolExecutor.AbortPolicy() : new ThreadPoolExecutor.CallerRunsPolicy()
         );
+        // 排队超时的任务不再执行
+        executor.setMaxQueueTime(sheddingProperties.getMaxQueueTime());
+        executorRegistry.register("customThreadPoolExecutor", executor, executor.getMetrics());
+        if (limitProperties.isEnabled()) {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("customThreadPoolExecutor",
+                    executor.getMaximumPoolSize() + queueCapacity, () -> executor.getMaximumPoolSize() + queueCapacity,
+                    limitProperties);
+            executor.setConcurrencyLimiter(limiter);
+            executorRegistry.attachLimiter("customThreadPoolExecutor", limiter);
+        }
+        return executor;
     }
 }
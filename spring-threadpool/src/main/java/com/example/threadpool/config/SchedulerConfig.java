@@ -1,22 +1,39 @@
 package com.example.threadpool.config;
 
+import com.example.threadpool.metrics.ExecutorMetrics;
+import com.example.threadpool.metrics.ExecutorRegistry;
+import com.example.threadpool.metrics.TimedScheduledThreadPoolExecutor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
 @Configuration
 @EnableScheduling
 public class SchedulerConfig {
 
     @Bean
-    public TaskScheduler taskScheduler() {
-        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    public TaskScheduler taskScheduler(ExecutorRegistry executorRegistry) {
+        ExecutorMetrics metrics = new ExecutorMetrics();
+        // 换成记录任务指标的ScheduledThreadPoolExecutor，排队时间即实际执行晚于计划的时间
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler() {
+            @Override
+            protected ScheduledExecutorService createExecutor(int poolSize, ThreadFactory threadFactory,
+                                                              RejectedExecutionHandler rejectedExecutionHandler) {
+                return new TimedScheduledThreadPoolExecutor(metrics, poolSize, threadFactory,
+                        rejectedExecutionHandler);
+            }
+        };
         scheduler.setPoolSize(5);
         scheduler.setThreadNamePrefix("scheduled-task-");
         scheduler.setAwaitTerminationSeconds(60);
         scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        executorRegistry.register("taskScheduler", scheduler, metrics);
         return scheduler;
     }
 }
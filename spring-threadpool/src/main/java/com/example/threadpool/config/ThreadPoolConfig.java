@@ -1,6 +1,12 @@
 package com.example.threadpool.config;
 
+import com.example.threadpool.limit.AdaptiveConcurrencyLimiter;
+import com.example.threadpool.limit.ConcurrencyLimitProperties;
+import com.example.threadpool.limit.LimitedThreadPoolTaskExecutor;
+import com.example.threadpool.metrics.ExecutorMetrics;
+import com.example.threadpool.metrics.ExecutorRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -22,9 +28,12 @@ public class ThreadPoolConfig {
     @Value("${thread-pool.keep-alive-seconds}")
     private int keepAliveSeconds;
 
+    // 虚拟线程模式下由VirtualThreadConfig提供同名的执行器
     @Bean
-    public ThreadPoolTaskExecutor threadPoolTaskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    @ConditionalOnProperty(prefix = "thread-pool", name = "mode", havingValue = "platform", matchIfMissing = true)
+    public ThreadPoolTaskExecutor threadPoolTaskExecutor(ExecutorRegistry executorRegistry,
+                                                         ConcurrencyLimitProperties limitProperties) {
+        LimitedThreadPoolTaskExecutor executor = new LimitedThreadPoolTaskExecutor();
         // 核心线程数
         executor.setCorePoolSize(corePoolSize);
         // 最大线程数
@@ -35,11 +44,23 @@ public class ThreadPoolConfig {
         executor.setKeepAliveSeconds(keepAliveSeconds);
         // 线程名前缀
         executor.setThreadNamePrefix("spring-thread-");
-        // 拒绝策略：由调用线程处理
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // 统计排队/执行时间和拒绝次数，交给自适应调整和监控接口使用
+        ExecutorMetrics metrics = new ExecutorMetrics();
+        executor.setTaskDecorator(metrics::wrap);
+        // 拒绝策略：开启并发限制时直接拒绝，否则由调用线程处理
+        executor.setRejectedExecutionHandler(metrics.countRejections(limitProperties.isEnabled()
+                ? new ThreadPoolExecutor.AbortPolicy() : new ThreadPoolExecutor.CallerRunsPolicy()));
         // 等待所有任务完成后再关闭线程池
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.initialize();
+        executorRegistry.register("threadPoolTaskExecutor", executor, metrics);
+        if (limitProperties.isEnabled()) {
+            // 上限从线程池原有的容量（最大线程数加队列容量）起步，只会收紧，不会拒绝线程池本来能接下的请求
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("threadPoolTaskExecutor",
+                    maxPoolSize + queueCapacity, () -> executor.getMaxPoolSize() + queueCapacity, limitProperties);
+            executor.setConcurrencyLimiter(limiter);
+            executorRegistry.attachLimiter("threadPoolTaskExecutor", limiter);
+        }
         return executor;
     }
 }
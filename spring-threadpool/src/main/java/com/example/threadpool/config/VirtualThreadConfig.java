@@ -0,0 +1,55 @@
+package com.example.threadpool.config;
+
+import com.example.threadpool.metrics.ExecutorMetrics;
+import com.example.threadpool.metrics.ExecutorRegistry;
+import com.example.threadpool.virtual.BoundedVirtualThreadExecutor;
+import com.example.threadpool.virtual.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 虚拟线程模式（thread-pool.mode=virtual，需要JDK 21）：
+ * 同名的执行器换成每任务一个虚拟线程、信号量限制并发的实现，Tomcat处理请求也改用虚拟线程
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "thread-pool", name = "mode", havingValue = "virtual")
+public class VirtualThreadConfig {
+
+    @Value("${thread-pool.virtual.max-concurrency}")
+    private int maxConcurrency;
+
+    @Value("${thread-pool.virtual.max-pending}")
+    private int maxPending;
+
+    @Bean
+    public BoundedVirtualThreadExecutor threadPoolTaskExecutor(ExecutorRegistry executorRegistry) {
+        return create("threadPoolTaskExecutor", "spring-vthread-", executorRegistry);
+    }
+
+    @Bean
+    public BoundedVirtualThreadExecutor customThreadPoolExecutor(ExecutorRegistry executorRegistry) {
+        return create("customThreadPoolExecutor", "custom-vthread-", executorRegistry);
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer() {
+        log.info("Tomcat请求处理使用虚拟线程");
+        return factory -> factory.addProtocolHandlerCustomizers(
+                protocol -> protocol.setExecutor(VirtualThreads.perTaskExecutor("http-vthread-")));
+    }
+
+    private BoundedVirtualThreadExecutor create(String name, String threadNamePrefix,
+                                                ExecutorRegistry executorRegistry) {
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor(threadNamePrefix, maxConcurrency,
+                maxPending, new ExecutorMetrics());
+        executorRegistry.register(name, executor, executor.getMetrics());
+        log.info("{} 使用虚拟线程，最大并发 {}，最多等待 {}", name, maxConcurrency, maxPending);
+        return executor;
+    }
+}
@@ -2,14 +2,28 @@ package com.example.threadpool.controller;
 
 import com.example.threadpool.examples.BasicThreadPoolExample;
 import com.example.threadpool.examples.SpringThreadPoolExample;
+import com.example.threadpool.limit.ConcurrencyLimitExceededException;
+import com.example.threadpool.metrics.ExecutorRegistry;
+import com.example.threadpool.metrics.ExecutorSnapshot;
+import com.example.threadpool.metrics.PrometheusFormatter;
 import com.example.threadpool.service.AsyncService;
+import com.example.threadpool.service.CompleteAsyncService;
+import com.example.threadpool.shard.PartialResult;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
 @RestController
@@ -19,13 +33,22 @@ public class ThreadPoolController {
     private final BasicThreadPoolExample basicThreadPoolExample;
     private final SpringThreadPoolExample springThreadPoolExample;
     private final AsyncService asyncService;
+    private final Executor threadPoolTaskExecutor;
+    private final ExecutorRegistry executorRegistry;
+    private final CompleteAsyncService completeAsyncService;
 
     public ThreadPoolController(BasicThreadPoolExample basicThreadPoolExample,
                               SpringThreadPoolExample springThreadPoolExample,
-                              AsyncService asyncService) {
+                              AsyncService asyncService,
+                              @Qualifier("threadPoolTaskExecutor") Executor threadPoolTaskExecutor,
+                              ExecutorRegistry executorRegistry,
+                              CompleteAsyncService completeAsyncService) {
         this.basicThreadPoolExample = basicThreadPoolExample;
         this.springThreadPoolExample = springThreadPoolExample;
         this.asyncService = asyncService;
+        this.threadPoolTaskExecutor = threadPoolTaskExecutor;
+        this.executorRegistry = executorRegistry;
+        this.completeAsyncService = completeAsyncService;
     }
 
     @GetMapping("/basic")
@@ -56,4 +79,64 @@ public class ThreadPoolController {
         
         return "Async tasks completed: " + result1 + ", " + result2;
     }
+
+    // 向线程池提交一批耗时任务，用来观察自适应调整：/api/thread-pool/load?tasks=200&millis=100
+    @GetMapping("/load")
+    public String generateLoad(@RequestParam(defaultValue = "100") int tasks,
+                               @RequestParam(defaultValue = "100") long millis) {
+        int limited = 0;
+        for (int i = 0; i < tasks; i++) {
+            try {
+                threadPoolTaskExecutor.execute(() -> {
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(millis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            } catch (ConcurrencyLimitExceededException e) {
+                // 压测接口自己统计被限流的任务，其它接口超限时返回429
+                limited++;
+            }
+        }
+        ExecutorSnapshot snapshot = new ExecutorSnapshot(executorRegistry.get("threadPoolTaskExecutor"));
+        return String.format("Submitted %d tasks, limited=%d, limit=%s, core=%d, max=%d, pool=%d, queue=%d",
+                tasks - limited, limited, snapshot.getConcurrencyLimit(), snapshot.getCorePoolSize(),
+                snapshot.getMaxPoolSize(), snapshot.getPoolSize(), snapshot.getQueueSize());
+    }
+
+    // 分表查询第一页：/api/thread-pool/shards?tables=8&limit=20，取够limit行后其余分表查询被取消；
+    // 慢的表会发对冲请求，超时的表不影响其它表，结果中列出缺失的表
+    @GetMapping("/shards")
+    public PartialResult<String> queryShards(@RequestParam(defaultValue = "8") int tables,
+                                             @RequestParam(defaultValue = "20") int limit) {
+        List<String> tableNames = IntStream.range(0, tables)
+                .mapToObj(i -> "t_order_" + i)
+                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        PartialResult<String> result = completeAsyncService.queryFirstPage(tableNames, limit);
+        log.info("分表查询 {} 张表，返回 {} 行，对冲 {} 次，缺失 {}，耗时 {} ms", tables, result.getRows().size(),
+                result.getHedgedRequests(), result.getMissingShards().keySet(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    // 各线程池的状态、排队/执行时间分位数和拒绝次数
+    @GetMapping("/metrics")
+    public List<ExecutorSnapshot> metrics() {
+        return snapshots();
+    }
+
+    // 同样的指标，Prometheus文本格式
+    @GetMapping(value = "/metrics/prometheus", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String prometheusMetrics() {
+        return PrometheusFormatter.format(snapshots());
+    }
+
+    private List<ExecutorSnapshot> snapshots() {
+        return executorRegistry.getExecutors().stream()
+                .map(ExecutorSnapshot::new)
+                .sorted(Comparator.comparing(ExecutorSnapshot::getName))
+                .collect(Collectors.toList());
+    }
 }
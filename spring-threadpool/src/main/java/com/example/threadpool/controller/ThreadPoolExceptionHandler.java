@@ -0,0 +1,35 @@
+package com.example.threadpool.controller;
+
+import com.example.threadpool.limit.ConcurrencyLimitExceededException;
+import com.example.threadpool.shedding.TaskExpiredException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * 线程池过载时快速失败：超出并发上限返回429，让调用方退避重试，而不是占住请求线程排队；
+ * 任务排队超时被丢弃返回503
+ */
+@Slf4j
+@RestControllerAdvice
+public class ThreadPoolExceptionHandler {
+
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<String> handleLimitExceeded(ConcurrencyLimitExceededException e) {
+        log.warn("请求被限流: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(TaskExpiredException.class)
+    public ResponseEntity<String> handleExpired(TaskExpiredException e) {
+        log.warn("任务排队超时被丢弃: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+}
@@ -1,18 +1,21 @@
 package com.example.threadpool.examples;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Slf4j
 @Component
 public class SpringThreadPoolExample {
 
-    private final ThreadPoolTaskExecutor threadPoolTaskExecutor;
+    // 虚拟线程模式下是BoundedVirtualThreadExecutor，所以按Executor注入
+    private final Executor threadPoolTaskExecutor;
 
-    public SpringThreadPoolExample(ThreadPoolTaskExecutor threadPoolTaskExecutor) {
+    public SpringThreadPoolExample(@Qualifier("threadPoolTaskExecutor") Executor threadPoolTaskExecutor) {
         this.threadPoolTaskExecutor = threadPoolTaskExecutor;
     }
 
@@ -31,9 +34,12 @@ public class SpringThreadPoolExample {
         future.thenAccept(result -> log.info("任务结果: {}", result));
 
         // 3. 查看线程池状态
-        log.info("当前活跃线程数: {}", threadPoolTaskExecutor.getActiveCount());
-        log.info("核心线程数: {}", threadPoolTaskExecutor.getCorePoolSize());
-        log.info("最大线程数: {}", threadPoolTaskExecutor.getMaxPoolSize());
-        log.info("队列大小: {}", threadPoolTaskExecutor.getQueueSize());
+        if (threadPoolTaskExecutor instanceof ThreadPoolTaskExecutor) {
+            ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) threadPoolTaskExecutor;
+            log.info("当前活跃线程数: {}", executor.getActiveCount());
+            log.info("核心线程数: {}", executor.getCorePoolSize());
+            log.info("最大线程数: {}", executor.getMaxPoolSize());
+            log.info("队列大小: {}", executor.getQueueSize());
+        }
     }
 }
@@ -1,6 +1,13 @@
 package com.example.threadpool.examples;
 
 import cn.hutool.core.thread.ThreadUtil;
+import com.example.threadpool.batch.MicroBatcher;
+import com.example.threadpool.limit.AdaptiveConcurrencyLimiter;
+import com.example.threadpool.limit.ConcurrencyLimitProperties;
+import com.example.threadpool.metrics.ExecutorMetrics;
+import com.example.threadpool.metrics.ExecutorRegistry;
+import com.example.threadpool.metrics.TimedThreadPoolExecutor;
+import com.example.threadpool.shedding.SheddingProperties;
 import com.google.common.util.concurrent.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -13,6 +20,8 @@ import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+
 import java.nio.channels.Channel;
 import java.sql.Connection;
 import java.time.Duration;
@@ -32,7 +41,11 @@ public class ThirdPartyThreadPoolExample {
     private final GenericObjectPool<DatabaseConnection> connectionPool;
     private final GenericObjectPool<NettyClientConnection> channelConnectPool;
 
-    public ThirdPartyThreadPoolExample() {
+    // 微批处理：SQL逐条提交，攒成批后一次借连接、一次executeBatch，减少数据库往返
+    private final MicroBatcher<String, Integer> sqlBatcher;
+
+    public ThirdPartyThreadPoolExample(ExecutorRegistry executorRegistry, ConcurrencyLimitProperties limitProperties,
+                                       SheddingProperties sheddingProperties) {
         // 初始化Guava线程池
         ThreadFactory threadFactory = new ThreadFactoryBuilder()
                 .setNameFormat("business-process-pool-%d")
@@ -42,12 +55,26 @@ public class ThirdPartyThreadPoolExample {
                     log.error("业务处理线程异常: {}", thread.getName(), ex))
                 .build();
 
-        guavaExecutor = MoreExecutors.listeningDecorator(
-                new ThreadPoolExecutor(5, 20,
-                        60L, TimeUnit.SECONDS,
-                        new LinkedBlockingQueue<>(1000),
-                        threadFactory,
-                        new ThreadPoolExecutor.CallerRunsPolicy()));
+        int queueCapacity = 1000;
+        // 记录任务指标，登记后由自适应调整和监控接口使用
+        TimedThreadPoolExecutor businessPool = new TimedThreadPoolExecutor(new ExecutorMetrics(), 5, 20,
+                60L, TimeUnit.SECONDS,
+                sheddingProperties.newQueue(queueCapacity),
+                threadFactory,
+                // 开启并发限制时直接拒绝，否则由调用线程处理
+                limitProperties.isEnabled()
+                        ? new ThreadPoolExecutor.AbortPolicy() : new ThreadPoolExecutor.CallerRunsPolicy());
+        // 排队超时的任务不再执行，对应的ListenableFuture被取消
+        businessPool.setMaxQueueTime(sheddingProperties.getMaxQueueTime());
+        executorRegistry.register("guavaExecutor", businessPool, businessPool.getMetrics());
+        if (limitProperties.isEnabled()) {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("guavaExecutor",
+                    businessPool.getMaximumPoolSize() + queueCapacity,
+                    () -> businessPool.getMaximumPoolSize() + queueCapacity, limitProperties);
+            businessPool.setConcurrencyLimiter(limiter);
+            executorRegistry.attachLimiter("guavaExecutor", limiter);
+        }
+        guavaExecutor = MoreExecutors.listeningDecorator(businessPool);
 
         // 初始化数据库连接池配置
         GenericObjectPoolConfig<DatabaseConnection> poolConfig = new GenericObjectPoolConfig<>();
@@ -62,9 +89,19 @@ public class ThirdPartyThreadPoolExample {
         connectionPool = new GenericObjectPool<>(new DatabaseConnectionFactory(), poolConfig);
 
         channelConnectPool = new GenericObjectPool<>(new NettyClientConnectionFactory());
+
+        // 每批最多100条SQL，最多攒5ms；同时执行的批次不超过连接池大小的一半
+        sqlBatcher = new MicroBatcher<>("sql", 100, Duration.ofMillis(5), 10000, 10,
+                guavaExecutor, this::executeSqlBatch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 先把攒着的数据处理完再关闭
+        sqlBatcher.close();
     }
 
-    // Guava示例1：订单处理流程
+    // Guava示例1：订单处理流程。订单没有批量接口可以摊薄，逐个提交才能在线程池里并行处理
     public void processOrders(List<Order> orders) {
         List<ListenableFuture<OrderResult>> futures = orders.stream()
             .map(order -> guavaExecutor.submit(() -> processOrder(order)))
@@ -130,12 +167,21 @@ public class ThirdPartyThreadPoolExample {
 
 
 
-    // Apache Commons Pool示例1：数据库连接管理
-    public void performDatabaseOperations(String sql) throws Exception {
+    // Apache Commons Pool示例1：数据库连接管理，SQL经微批处理，一批只借一次连接，返回影响行数
+    public CompletableFuture<Integer> performDatabaseOperations(String sql) throws InterruptedException {
+        return sqlBatcher.submit(sql);
+    }
+
+    private List<Integer> executeSqlBatch(List<String> sqls) throws Exception {
         DatabaseConnection conn = null;
         try {
             conn = connectionPool.borrowObject();
-            conn.executeQuery(sql);
+            int[] counts = conn.executeBatch(sqls);
+            List<Integer> results = new ArrayList<>(counts.length);
+            for (int count : counts) {
+                results.add(count);
+            }
+            return results;
         } finally {
             if (conn != null) {
                 connectionPool.returnObject(conn);
@@ -209,6 +255,11 @@ public class ThirdPartyThreadPoolExample {
             // 执行实际的数据库操作
         }
 
+        public int[] executeBatch(List<String> sqls) {
+            // 一次往返执行整批SQL（addBatch/executeBatch），返回每条的影响行数
+            return new int[sqls.size()];
+        }
+
         private Connection createRealConnection(String url, String username, String password) {
             // 创建实际的数据库连接
             return null; // 示例代码省略实现
@@ -0,0 +1,156 @@
+package com.example.threadpool.limit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * 基于耗时梯度的自适应并发上限，放在线程池提交入口前。
+ * 每个任务从提交到执行完的耗时（排队+执行）按窗口取平均作为短期耗时，再做一条缓慢变化的长期基线：
+ * 短期耗时没超过基线的tolerance倍时上限每个窗口增加约sqrt(上限)，超过后按基线/短期耗时的比例收缩（每次最多减半）；
+ * 线程池因队列满拒绝任务时立即乘性减小。超出上限的提交抛出ConcurrencyLimitExceededException
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+    // 长期基线的平滑窗口数
+    private static final int LONG_WINDOW = 100;
+
+    private final String name;
+    private final ConcurrencyLimitProperties properties;
+    // 上限的上界随线程池容量（最大线程数+队列容量）变化
+    private final IntSupplier maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder windowNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private volatile double limit;
+    private volatile long windowStartNanos = System.nanoTime();
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, IntSupplier maxLimit,
+                                      ConcurrencyLimitProperties properties) {
+        this.name = name;
+        this.properties = properties;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * 占用一个并发名额，超出上限时抛出ConcurrencyLimitExceededException
+     */
+    public Permit acquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= getLimit()) {
+                limited.increment();
+                throw new ConcurrencyLimitExceededException(name, getLimit());
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        windowMaxInFlight.accumulateAndGet(current + 1, Math::max);
+        return new Permit();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    // 因超出上限被拒绝的次数
+    public long getLimited() {
+        return limited.sum();
+    }
+
+    private void onSample(long latencyNanos) {
+        windowNanos.add(latencyNanos);
+        windowSamples.increment();
+        long now = System.nanoTime();
+        if (now - windowStartNanos < TimeUnit.MILLISECONDS.toNanos(properties.getWindowMs())
+                || windowSamples.sum() < properties.getMinWindowSamples() || !updateLock.tryLock()) {
+            return;
+        }
+        try {
+            long samples = windowSamples.sumThenReset();
+            if (samples == 0) {
+                return;
+            }
+            double shortRtt = (double) windowNanos.sumThenReset() / samples;
+            int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+            windowStartNanos = now;
+            update(shortRtt, maxInFlight);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void update(double shortRtt, int maxInFlight) {
+        if (longRttNanos == 0) {
+            longRttNanos = shortRtt;
+        } else {
+            longRttNanos += (shortRtt - longRttNanos) / LONG_WINDOW;
+        }
+        // 负载下降后短期耗时远低于基线，基线加快回落，避免长时间按旧基线放行
+        if (longRttNanos / shortRtt > 2) {
+            longRttNanos *= 0.95;
+        }
+        double current = limit;
+        double gradient = Math.max(0.5, Math.min(1.0, properties.getTolerance() * longRttNanos / shortRtt));
+        // 没有用满上限时不再放大，否则上限会脱离实际负载无限增长
+        if (gradient >= 1.0 && maxInFlight < current / 2) {
+            return;
+        }
+        double target = current * gradient + Math.sqrt(current);
+        double next = current * (1 - properties.getSmoothing()) + target * properties.getSmoothing();
+        setLimit(next);
+        if ((int) next != (int) current) {
+            log.debug("{} 并发上限 {} -> {}（短期耗时 {} ms，基线 {} ms）", name, (int) current, getLimit(),
+                    String.format("%.1f", shortRtt / 1e6), String.format("%.1f", longRttNanos / 1e6));
+        }
+    }
+
+    private void onDropped() {
+        double current = limit;
+        setLimit(current * 0.9);
+        log.debug("{} 线程池拒绝任务，并发上限 {} -> {}", name, (int) current, getLimit());
+    }
+
+    private void setLimit(double value) {
+        limit = Math.max(properties.getMinLimit(), Math.min(maxLimit.getAsInt(), value));
+    }
+
+    /**
+     * 一个并发名额，任务结束时release()，提交被线程池拒绝时dropped()；只有第一次调用生效
+     */
+    public class Permit {
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                onSample(System.nanoTime() - startNanos);
+            }
+        }
+
+        public void dropped() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                onDropped();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.threadpool.limit;
+
+import org.springframework.core.task.TaskRejectedException;
+
+/**
+ * 提交的任务超出线程池当前的并发上限，被直接拒绝
+ */
+public class ConcurrencyLimitExceededException extends TaskRejectedException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String executorName;
+    private final int limit;
+
+    public ConcurrencyLimitExceededException(String executorName, int limit) {
+        super("线程池 " + executorName + " 已达并发上限 " + limit);
+        this.executorName = executorName;
+        this.limit = limit;
+    }
+
+    public String getExecutorName() {
+        return executorName;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
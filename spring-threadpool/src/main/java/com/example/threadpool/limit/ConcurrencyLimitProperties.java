@@ -0,0 +1,26 @@
+package com.example.threadpool.limit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 线程池前置并发限制的配置，前缀 thread-pool.limiter
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "thread-pool.limiter")
+public class ConcurrencyLimitProperties {
+    // 是否开启；开启后线程池的拒绝策略由CallerRunsPolicy改为AbortPolicy，超限直接拒绝
+    private boolean enabled = true;
+    // 并发上限的下限
+    private int minLimit = 2;
+    // 每个统计窗口的最短时间
+    private long windowMs = 500;
+    // 每个窗口至少这么多样本才调整
+    private int minWindowSamples = 10;
+    // 短期耗时超过长期基线的这个倍数才开始收缩
+    private double tolerance = 1.5;
+    // 新上限的平滑系数，越小调整越慢
+    private double smoothing = 0.2;
+}
@@ -0,0 +1,94 @@
+package com.example.threadpool.limit;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * 提交前先过并发上限的ThreadPoolTaskExecutor；未设置limiter时与父类行为一致
+ */
+public class LimitedThreadPoolTaskExecutor extends ThreadPoolTaskExecutor {
+
+    private static final long serialVersionUID = 1L;
+
+    private volatile AdaptiveConcurrencyLimiter limiter;
+
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return limiter;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        limited(task, this::wrap, wrapped -> {
+            super.execute(wrapped);
+            return null;
+        });
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return limited(task, this::wrap, super::submit);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return limited(task, this::wrap, super::submit);
+    }
+
+    @Override
+    public ListenableFuture<?> submitListenable(Runnable task) {
+        return limited(task, this::wrap, super::submitListenable);
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+        return limited(task, this::wrap, super::submitListenable);
+    }
+
+    private <K, R> R limited(K task, Wrapper<K> wrapper, Function<K, R> submit) {
+        AdaptiveConcurrencyLimiter current = limiter;
+        if (current == null) {
+            return submit.apply(task);
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = current.acquire();
+        try {
+            return submit.apply(wrapper.wrap(task, permit));
+        } catch (RejectedExecutionException e) {
+            permit.dropped();
+            throw e;
+        }
+    }
+
+    private Runnable wrap(Runnable task, AdaptiveConcurrencyLimiter.Permit permit) {
+        return () -> {
+            try {
+                task.run();
+            } finally {
+                permit.release();
+            }
+        };
+    }
+
+    private <T> Callable<T> wrap(Callable<T> task, AdaptiveConcurrencyLimiter.Permit permit) {
+        return () -> {
+            try {
+                return task.call();
+            } finally {
+                permit.release();
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Wrapper<K> {
+        K wrap(K task, AdaptiveConcurrencyLimiter.Permit permit);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.threadpool.metrics;
+
+/**
+ * 执行器的线程和队列状态，ThreadPoolExecutor和虚拟线程执行器都按这套口径输出到监控
+ */
+public interface ExecutorGauges {
+
+    int getCorePoolSize();
+
+    int getMaxPoolSize();
+
+    // 当前线程数
+    int getPoolSize();
+
+    // 历史最大线程数
+    int getLargestPoolSize();
+
+    // 正在执行任务的线程数
+    int getActiveCount();
+
+    // 等待执行的任务数
+    int getQueueSize();
+
+    int getQueueCapacity();
+}
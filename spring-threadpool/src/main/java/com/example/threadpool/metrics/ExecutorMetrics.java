@@ -0,0 +1,157 @@
+package com.example.threadpool.metrics;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个线程池的任务指标：排队时间和执行时间直方图，完成、失败、拒绝、调用方执行和排队超时丢弃的次数。
+ * 提交时包装任务记下时间，开始执行时算出排队时间；另外按周期累计一份窗口数据供自适应调整使用
+ */
+public class ExecutorMetrics {
+    private final LatencyHistogram waitHistogram = new LatencyHistogram();
+    private final LatencyHistogram runHistogram = new LatencyHistogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    // 自适应调整的窗口，drain时清零
+    private final LongAdder windowWaitNanos = new LongAdder();
+    private final LongAdder windowRunNanos = new LongAdder();
+    private final LongAdder windowStarted = new LongAdder();
+    private final AtomicLong windowMaxWaitNanos = new AtomicLong();
+
+    /**
+     * 包装任务，可直接作为ThreadPoolTaskExecutor的TaskDecorator
+     */
+    public Runnable wrap(Runnable task) {
+        long submitted = System.nanoTime();
+        return () -> {
+            long start = System.nanoTime();
+            recordStart(start - submitted);
+            boolean success = false;
+            try {
+                task.run();
+                success = true;
+            } finally {
+                recordEnd(System.nanoTime() - start, success);
+            }
+        };
+    }
+
+    void recordStart(long waitNanos) {
+        waitHistogram.record(waitNanos);
+        windowWaitNanos.add(waitNanos);
+        windowStarted.increment();
+        if (waitNanos > windowMaxWaitNanos.get()) {
+            windowMaxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+    }
+
+    void recordEnd(long runNanos, boolean success) {
+        runHistogram.record(runNanos);
+        windowRunNanos.add(runNanos);
+        (success ? completed : failed).increment();
+    }
+
+    /**
+     * 包装拒绝策略，统计被拒绝的次数，其中由调用方线程执行的单独计数
+     */
+    public RejectedExecutionHandler countRejections(RejectedExecutionHandler delegate) {
+        return (task, executor) -> {
+            rejected.increment();
+            if (delegate instanceof ThreadPoolExecutor.CallerRunsPolicy && !executor.isShutdown()) {
+                callerRuns.increment();
+            }
+            delegate.rejectedExecution(task, executor);
+        };
+    }
+
+    /**
+     * 不经过RejectedExecutionHandler的执行器自己拒绝任务时调用
+     */
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * 任务排队超过截止时间、没有执行就被丢弃时调用
+     */
+    public void recordShed(long waitNanos) {
+        waitHistogram.record(waitNanos);
+        shed.increment();
+    }
+
+    public LatencyHistogram getWaitHistogram() {
+        return waitHistogram;
+    }
+
+    public LatencyHistogram getRunHistogram() {
+        return runHistogram;
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getCallerRuns() {
+        return callerRuns.sum();
+    }
+
+    public long getShed() {
+        return shed.sum();
+    }
+
+    /**
+     * 取出自上次调用以来的窗口数据并清零
+     */
+    public Window drain() {
+        long count = windowStarted.sumThenReset();
+        return new Window(count, windowWaitNanos.sumThenReset(), windowMaxWaitNanos.getAndSet(0),
+                windowRunNanos.sumThenReset());
+    }
+
+    /**
+     * 一个统计周期内的排队与执行时间
+     */
+    public static class Window {
+        private final long started;
+        private final long waitNanos;
+        private final long maxWaitNanos;
+        private final long runNanos;
+
+        Window(long started, long waitNanos, long maxWaitNanos, long runNanos) {
+            this.started = started;
+            this.waitNanos = waitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.runNanos = runNanos;
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public double getAvgWaitMillis() {
+            return started == 0 ? 0 : waitNanos / 1e6 / started;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos / 1e6;
+        }
+
+        public double getRunMillis() {
+            return runNanos / 1e6;
+        }
+    }
+}
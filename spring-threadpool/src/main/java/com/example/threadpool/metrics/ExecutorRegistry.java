@@ -0,0 +1,182 @@
+package com.example.threadpool.metrics;
+
+import com.example.threadpool.limit.AdaptiveConcurrencyLimiter;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 受管线程池的登记表，线程池在创建时登记，自适应调整和监控指标都从这里取
+ */
+@Component
+public class ExecutorRegistry {
+
+    private final Map<String, ManagedExecutor> executors = new ConcurrentHashMap<>();
+
+    public void register(String name, ThreadPoolExecutor executor, ExecutorMetrics metrics) {
+        executors.put(name, new ManagedExecutor(name, () -> executor, metrics, true, executor.getCorePoolSize(),
+                executor.getMaximumPoolSize(), executor::setCorePoolSize, executor::setMaximumPoolSize));
+    }
+
+    /**
+     * Spring的ThreadPoolTaskExecutor自己也记着核心/最大线程数，要通过它来修改，两边才一致；
+     * 容器初始化bean时会再次initialize()换掉内部的ThreadPoolExecutor，所以每次用时再取
+     */
+    public void register(String name, ThreadPoolTaskExecutor executor, ExecutorMetrics metrics) {
+        executors.put(name, new ManagedExecutor(name, executor::getThreadPoolExecutor, metrics, true,
+                executor.getCorePoolSize(), executor.getMaxPoolSize(), executor::setCorePoolSize,
+                executor::setMaxPoolSize));
+    }
+
+    /**
+     * 定时任务线程池只统计指标，不参与自适应调整（ScheduledThreadPoolExecutor的最大线程数不起作用）
+     */
+    public void register(String name, ThreadPoolTaskScheduler scheduler, ExecutorMetrics metrics) {
+        executors.put(name, new ManagedExecutor(name, scheduler::getScheduledThreadPoolExecutor, metrics, false,
+                scheduler.getPoolSize(), scheduler.getPoolSize(), scheduler::setPoolSize, max -> { }));
+    }
+
+    /**
+     * 不是ThreadPoolExecutor的执行器（如虚拟线程执行器），只统计指标，不参与自适应调整
+     */
+    public void register(String name, ExecutorGauges gauges, ExecutorMetrics metrics) {
+        executors.put(name, new ManagedExecutor(name, () -> {
+            throw new IllegalStateException(name + " 不是ThreadPoolExecutor");
+        }, gauges, metrics, false, gauges.getCorePoolSize(), gauges.getMaxPoolSize(), core -> { }, max -> { }));
+    }
+
+    /**
+     * 登记线程池前置的并发限制，监控接口一并输出上限和在途任务数
+     */
+    public void attachLimiter(String name, AdaptiveConcurrencyLimiter limiter) {
+        executors.get(name).limiter = limiter;
+    }
+
+    public List<ManagedExecutor> getExecutors() {
+        return new ArrayList<>(executors.values());
+    }
+
+    public ManagedExecutor get(String name) {
+        return executors.get(name);
+    }
+
+    /**
+     * 登记的线程池，以及启动时的核心/最大线程数
+     */
+    @Getter
+    public static class ManagedExecutor {
+        private final String name;
+        @Getter(AccessLevel.NONE)
+        private final Supplier<? extends ThreadPoolExecutor> executor;
+        private final ExecutorGauges gauges;
+        private final ExecutorMetrics metrics;
+        // 是否参与自适应调整
+        private final boolean resizable;
+        private final int initialCorePoolSize;
+        private final int initialMaxPoolSize;
+        @Getter(AccessLevel.NONE)
+        private final IntConsumer coreSetter;
+        @Getter(AccessLevel.NONE)
+        private final IntConsumer maxSetter;
+        // 没有并发限制时为null
+        private volatile AdaptiveConcurrencyLimiter limiter;
+
+        ManagedExecutor(String name, Supplier<? extends ThreadPoolExecutor> executor, ExecutorMetrics metrics,
+                        boolean resizable, int initialCorePoolSize, int initialMaxPoolSize, IntConsumer coreSetter,
+                        IntConsumer maxSetter) {
+            this(name, executor, new ThreadPoolGauges(executor), metrics, resizable, initialCorePoolSize,
+                    initialMaxPoolSize, coreSetter, maxSetter);
+        }
+
+        ManagedExecutor(String name, Supplier<? extends ThreadPoolExecutor> executor, ExecutorGauges gauges,
+                        ExecutorMetrics metrics, boolean resizable, int initialCorePoolSize, int initialMaxPoolSize,
+                        IntConsumer coreSetter, IntConsumer maxSetter) {
+            this.name = name;
+            this.executor = executor;
+            this.gauges = gauges;
+            this.metrics = metrics;
+            this.resizable = resizable;
+            this.initialCorePoolSize = initialCorePoolSize;
+            this.initialMaxPoolSize = initialMaxPoolSize;
+            this.coreSetter = coreSetter;
+            this.maxSetter = maxSetter;
+        }
+
+        public ThreadPoolExecutor getExecutor() {
+            return executor.get();
+        }
+
+        /**
+         * 调整核心/最大线程数；核心线程数不能大于最大线程数，扩容先调最大值，缩容先调核心值
+         */
+        public synchronized void resize(int core, int max) {
+            if (max > getExecutor().getMaximumPoolSize()) {
+                maxSetter.accept(max);
+                coreSetter.accept(core);
+            } else {
+                coreSetter.accept(core);
+                maxSetter.accept(max);
+            }
+        }
+
+        public int getQueueCapacity() {
+            return gauges.getQueueCapacity();
+        }
+    }
+
+    private static class ThreadPoolGauges implements ExecutorGauges {
+        private final Supplier<? extends ThreadPoolExecutor> executor;
+
+        ThreadPoolGauges(Supplier<? extends ThreadPoolExecutor> executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public int getCorePoolSize() {
+            return executor.get().getCorePoolSize();
+        }
+
+        @Override
+        public int getMaxPoolSize() {
+            return executor.get().getMaximumPoolSize();
+        }
+
+        @Override
+        public int getPoolSize() {
+            return executor.get().getPoolSize();
+        }
+
+        @Override
+        public int getLargestPoolSize() {
+            return executor.get().getLargestPoolSize();
+        }
+
+        @Override
+        public int getActiveCount() {
+            return executor.get().getActiveCount();
+        }
+
+        @Override
+        public int getQueueSize() {
+            return executor.get().getQueue().size();
+        }
+
+        @Override
+        public int getQueueCapacity() {
+            // 无界队列的remainingCapacity是Integer.MAX_VALUE，相加会溢出
+            BlockingQueue<Runnable> queue = executor.get().getQueue();
+            return (int) Math.min(Integer.MAX_VALUE, (long) queue.size() + queue.remainingCapacity());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.threadpool.metrics;
+
+import com.example.threadpool.limit.AdaptiveConcurrencyLimiter;
+import lombok.Getter;
+
+/**
+ * 线程池某一时刻的状态与任务指标，监控接口按JSON直接输出
+ */
+@Getter
+public class ExecutorSnapshot {
+    private final String name;
+    private final int corePoolSize;
+    private final int maxPoolSize;
+    private final int poolSize;
+    // 历史最大线程数
+    private final int peakPoolSize;
+    private final int activeCount;
+    private final int queueSize;
+    private final int queueCapacity;
+    private final long completed;
+    private final long failed;
+    private final long rejected;
+    // 被拒绝后由提交任务的线程自己执行的次数，包含在rejected中
+    private final long callerRuns;
+    // 排队超过截止时间、没有执行就被丢弃的任务数
+    private final long shed;
+    // 前置并发限制的当前上限、在途任务数和超限拒绝次数，没有并发限制时为null
+    private final Integer concurrencyLimit;
+    private final Integer inFlight;
+    private final Long limited;
+    private final LatencyHistogram.Snapshot queueWait;
+    private final LatencyHistogram.Snapshot execution;
+
+    public ExecutorSnapshot(ExecutorRegistry.ManagedExecutor managed) {
+        ExecutorGauges gauges = managed.getGauges();
+        ExecutorMetrics metrics = managed.getMetrics();
+        this.name = managed.getName();
+        this.corePoolSize = gauges.getCorePoolSize();
+        this.maxPoolSize = gauges.getMaxPoolSize();
+        this.poolSize = gauges.getPoolSize();
+        this.peakPoolSize = gauges.getLargestPoolSize();
+        this.activeCount = gauges.getActiveCount();
+        this.queueSize = gauges.getQueueSize();
+        this.queueCapacity = gauges.getQueueCapacity();
+        this.completed = metrics.getCompleted();
+        this.failed = metrics.getFailed();
+        this.rejected = metrics.getRejected();
+        this.callerRuns = metrics.getCallerRuns();
+        this.shed = metrics.getShed();
+        AdaptiveConcurrencyLimiter limiter = managed.getLimiter();
+        this.concurrencyLimit = limiter == null ? null : limiter.getLimit();
+        this.inFlight = limiter == null ? null : limiter.getInFlight();
+        this.limited = limiter == null ? null : limiter.getLimited();
+        this.queueWait = metrics.getWaitHistogram().snapshot();
+        this.execution = metrics.getRunHistogram().snapshot();
+    }
+}
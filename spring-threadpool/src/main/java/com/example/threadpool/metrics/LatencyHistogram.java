@@ -0,0 +1,114 @@
+package com.example.threadpool.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定桶的耗时直方图，桶边界与Prometheus的le一致，记录时只做一次查找和LongAdder累加
+ */
+public class LatencyHistogram {
+    // 桶的上界（微秒），最后还有一个+Inf桶
+    static final long[] BOUNDS_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000, 30_000_000};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MICROS.length + 1];
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int index = 0;
+        while (index < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        sumMicros.add(micros);
+        if (micros > maxMicros.get()) {
+            maxMicros.accumulateAndGet(micros, Math::max);
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        long count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, sumMicros.sum(), maxMicros.get());
+    }
+
+    /**
+     * 直方图某一时刻的副本；分位数取所在桶的上界，落在+Inf桶时取最大值
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumMicros;
+        private final long maxMicros;
+
+        Snapshot(long[] counts, long count, long sumMicros, long maxMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.sumMicros = sumMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSumMillis() {
+            return sumMicros / 1000.0;
+        }
+
+        public double getAvgMillis() {
+            return count == 0 ? 0 : sumMicros / 1000.0 / count;
+        }
+
+        public double getMaxMillis() {
+            return maxMicros / 1000.0;
+        }
+
+        public double getP50Millis() {
+            return percentileMillis(50);
+        }
+
+        public double getP90Millis() {
+            return percentileMillis(90);
+        }
+
+        public double getP99Millis() {
+            return percentileMillis(99);
+        }
+
+        public double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(i < BOUNDS_MICROS.length ? BOUNDS_MICROS[i] : maxMicros, maxMicros) / 1000.0;
+                }
+            }
+            return maxMicros / 1000.0;
+        }
+
+        /**
+         * 各桶的计数（非累计），最后一个为+Inf桶
+         */
+        long[] bucketCounts() {
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.threadpool.metrics;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 把线程池指标输出为Prometheus文本格式（text/plain; version=0.0.4）
+ */
+public final class PrometheusFormatter {
+
+    private PrometheusFormatter() {
+    }
+
+    public static String format(List<ExecutorSnapshot> snapshots) {
+        StringBuilder out = new StringBuilder();
+        gauge(out, snapshots, "executor_core_pool_size", "核心线程数", ExecutorSnapshot::getCorePoolSize);
+        gauge(out, snapshots, "executor_max_pool_size", "最大线程数", ExecutorSnapshot::getMaxPoolSize);
+        gauge(out, snapshots, "executor_pool_size", "当前线程数", ExecutorSnapshot::getPoolSize);
+        gauge(out, snapshots, "executor_pool_size_peak", "历史最大线程数", ExecutorSnapshot::getPeakPoolSize);
+        gauge(out, snapshots, "executor_active_threads", "正在执行任务的线程数", ExecutorSnapshot::getActiveCount);
+        gauge(out, snapshots, "executor_queue_size", "队列中等待的任务数", ExecutorSnapshot::getQueueSize);
+        gauge(out, snapshots, "executor_queue_capacity", "队列容量", ExecutorSnapshot::getQueueCapacity);
+        counter(out, snapshots, "executor_completed_tasks_total", "正常完成的任务数", ExecutorSnapshot::getCompleted);
+        counter(out, snapshots, "executor_failed_tasks_total", "抛出异常的任务数", ExecutorSnapshot::getFailed);
+        counter(out, snapshots, "executor_rejected_tasks_total", "被拒绝的任务数", ExecutorSnapshot::getRejected);
+        counter(out, snapshots, "executor_caller_runs_total", "被拒绝后由调用方线程执行的任务数",
+                ExecutorSnapshot::getCallerRuns);
+        counter(out, snapshots, "executor_shed_tasks_total", "排队超时被丢弃的任务数", ExecutorSnapshot::getShed);
+        List<ExecutorSnapshot> limitedExecutors = snapshots.stream()
+                .filter(snapshot -> snapshot.getConcurrencyLimit() != null)
+                .collect(Collectors.toList());
+        if (!limitedExecutors.isEmpty()) {
+            gauge(out, limitedExecutors, "executor_concurrency_limit", "当前并发上限",
+                    ExecutorSnapshot::getConcurrencyLimit);
+            gauge(out, limitedExecutors, "executor_in_flight_tasks", "已提交未完成的任务数", ExecutorSnapshot::getInFlight);
+            counter(out, limitedExecutors, "executor_limited_tasks_total", "超出并发上限被拒绝的任务数",
+                    ExecutorSnapshot::getLimited);
+        }
+        histogram(out, snapshots, "executor_queue_wait_seconds", "任务在队列中的等待时间",
+                ExecutorSnapshot::getQueueWait);
+        histogram(out, snapshots, "executor_execution_seconds", "任务的执行时间", ExecutorSnapshot::getExecution);
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, List<ExecutorSnapshot> snapshots, String metric, String help,
+                              ToDoubleFunction<ExecutorSnapshot> value) {
+        header(out, metric, help, "gauge");
+        for (ExecutorSnapshot snapshot : snapshots) {
+            sample(out, metric, snapshot.getName(), null, value.applyAsDouble(snapshot));
+        }
+    }
+
+    private static void counter(StringBuilder out, List<ExecutorSnapshot> snapshots, String metric, String help,
+                                ToDoubleFunction<ExecutorSnapshot> value) {
+        header(out, metric, help, "counter");
+        for (ExecutorSnapshot snapshot : snapshots) {
+            sample(out, metric, snapshot.getName(), null, value.applyAsDouble(snapshot));
+        }
+    }
+
+    // 桶计数是累计的，le以秒为单位
+    private static void histogram(StringBuilder out, List<ExecutorSnapshot> snapshots, String metric, String help,
+                                  Function<ExecutorSnapshot, LatencyHistogram.Snapshot> histogram) {
+        header(out, metric, help, "histogram");
+        for (ExecutorSnapshot snapshot : snapshots) {
+            LatencyHistogram.Snapshot data = histogram.apply(snapshot);
+            long[] counts = data.bucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < LatencyHistogram.BOUNDS_MICROS.length
+                        ? BigDecimal.valueOf(LatencyHistogram.BOUNDS_MICROS[i], 6).stripTrailingZeros().toPlainString()
+                        : "+Inf";
+                sample(out, metric + "_bucket", snapshot.getName(), le, cumulative);
+            }
+            sample(out, metric + "_sum", snapshot.getName(), null, data.getSumMillis() / 1000);
+            sample(out, metric + "_count", snapshot.getName(), null, data.getCount());
+        }
+    }
+
+    private static void header(StringBuilder out, String metric, String help, String type) {
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String metric, String executor, String le, double value) {
+        out.append(metric).append("{executor=\"").append(executor.replace("\\", "\\\\").replace("\"", "\\\""))
+                .append('"');
+        if (le != null) {
+            out.append(",le=\"").append(le).append('"');
+        }
+        out.append("} ").append(number(value)).append('\n');
+    }
+
+    private static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
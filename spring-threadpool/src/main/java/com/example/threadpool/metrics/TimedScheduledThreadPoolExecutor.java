@@ -0,0 +1,65 @@
+package com.example.threadpool.metrics;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录任务指标的ScheduledThreadPoolExecutor
+ * 定时任务的"排队时间"是实际开始时间晚于计划时间的部分，开始执行时任务的getDelay为负，取反即是
+ */
+public class TimedScheduledThreadPoolExecutor extends ScheduledThreadPoolExecutor {
+    private final ExecutorMetrics metrics;
+    private final ThreadLocal<Long> startNanos = new ThreadLocal<>();
+
+    public TimedScheduledThreadPoolExecutor(ExecutorMetrics metrics, int corePoolSize, ThreadFactory threadFactory,
+                                            RejectedExecutionHandler handler) {
+        super(corePoolSize, threadFactory, metrics.countRejections(handler));
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        super.beforeExecute(thread, task);
+        long lateness = task instanceof Delayed ? -((Delayed) task).getDelay(TimeUnit.NANOSECONDS) : 0;
+        metrics.recordStart(Math.max(0, lateness));
+        startNanos.set(System.nanoTime());
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable error) {
+        super.afterExecute(task, error);
+        Long start = startNanos.get();
+        startNanos.remove();
+        if (start != null) {
+            metrics.recordEnd(System.nanoTime() - start, error == null && !failed(task));
+        }
+    }
+
+    // FutureTask把异常吞在自己里面，已完成的一次性任务要从get()里看
+    private static boolean failed(Runnable task) {
+        if (!(task instanceof Future) || !((Future<?>) task).isDone()) {
+            return false;
+        }
+        try {
+            ((Future<?>) task).get();
+            return false;
+        } catch (CancellationException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public ExecutorMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.threadpool.metrics;
+
+import com.example.threadpool.limit.AdaptiveConcurrencyLimiter;
+import com.example.threadpool.shedding.ExpirableFutureTask;
+import com.example.threadpool.shedding.TaskExpiredException;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录任务指标的ThreadPoolExecutor，submit和CompletableFuture最终都走execute；拒绝策略外面套一层计数。
+ * 设置了并发限制时，提交前先占用名额，超限直接拒绝。
+ * 设置了最长排队时间时，任务轮到执行时先检查排队了多久，超时的不再执行：submit返回的Future以TaskExpiredException结束，
+ * 其他Future（如Guava的ListenableFuture）被取消。
+ * 只丢弃调用方能从Future得知结果的任务：普通Runnable丢弃后没人知道（微批处理的批次还会占着名额不放），
+ * CompletableFuture.supplyAsync/runAsync提交的任务拿不到它对应的CompletableFuture，这两类都照常执行；
+ * 需要排队截止时间的CompletableFuture用QueueDeadline.supplyAsync提交
+ */
+public class TimedThreadPoolExecutor extends ThreadPoolExecutor {
+    private final ExecutorMetrics metrics;
+    private volatile AdaptiveConcurrencyLimiter limiter;
+    // 默认最长排队时间，0表示不限制
+    private volatile long maxQueueNanos;
+
+    public TimedThreadPoolExecutor(ExecutorMetrics metrics, int corePoolSize, int maximumPoolSize,
+                                   long keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue,
+                                   ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory,
+                metrics.countRejections(handler));
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        execute(command, maxQueueNanos);
+    }
+
+    /**
+     * 按指定的最长排队时间提交任务，超时未执行时返回的Future以TaskExpiredException结束
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task, Duration maxQueueTime) {
+        ExpirableFutureTask<T> future = new ExpirableFutureTask<>(task);
+        execute(future, maxQueueTime.toNanos());
+        return future.toCompletableFuture();
+    }
+
+    private void execute(Runnable command, long maxQueueNanos) {
+        AdaptiveConcurrencyLimiter current = limiter;
+        boolean expirable = maxQueueNanos > 0 && command instanceof Future
+                && !(command instanceof CompletableFuture.AsynchronousCompletionTask);
+        if (current == null && !expirable) {
+            super.execute(metrics.wrap(command));
+            return;
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = current == null ? null : current.acquire();
+        long submitted = System.nanoTime();
+        Runnable timed = metrics.wrap(command);
+        try {
+            super.execute(() -> {
+                try {
+                    long waited = System.nanoTime() - submitted;
+                    if (expirable && waited > maxQueueNanos) {
+                        shed(command, waited);
+                    } else {
+                        timed.run();
+                    }
+                } finally {
+                    if (permit != null) {
+                        permit.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (permit != null) {
+                permit.dropped();
+            }
+            throw e;
+        }
+    }
+
+    private void shed(Runnable command, long waitedNanos) {
+        metrics.recordShed(waitedNanos);
+        if (command instanceof ExpirableFutureTask) {
+            ((ExpirableFutureTask<?>) command).expire(new TaskExpiredException(waitedNanos / 1_000_000));
+        } else {
+            ((Future<?>) command).cancel(false);
+        }
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new ExpirableFutureTask<>(runnable, value);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new ExpirableFutureTask<>(callable);
+    }
+
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return limiter;
+    }
+
+    /**
+     * 设置默认最长排队时间，null或0表示不限制
+     */
+    public void setMaxQueueTime(Duration maxQueueTime) {
+        this.maxQueueNanos = maxQueueTime == null ? 0 : maxQueueTime.toNanos();
+    }
+
+    public ExecutorMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -1,16 +1,29 @@
 package com.example.threadpool.service;
 
+import com.example.threadpool.shedding.QueueDeadline;
+import com.example.threadpool.shedding.SheddingProperties;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 public class AsyncService {
 
+    private final Executor customThreadPoolExecutor;
+    private final SheddingProperties sheddingProperties;
+
+    public AsyncService(@Qualifier("customThreadPoolExecutor") Executor customThreadPoolExecutor,
+                        SheddingProperties sheddingProperties) {
+        this.customThreadPoolExecutor = customThreadPoolExecutor;
+        this.sheddingProperties = sheddingProperties;
+    }
+
     @Async("threadPoolTaskExecutor")
     public CompletableFuture<String> asyncMethod1() {
         log.info("执行异步任务1");
@@ -22,14 +35,17 @@ public class AsyncService {
         return CompletableFuture.completedFuture("异步任务1完成");
     }
 
-    @Async("customThreadPoolExecutor")
+    // 不用@Async("customThreadPoolExecutor")：返回CompletableFuture的@Async方法经supplyAsync提交，
+    // 排队超时也会照常执行，这里直接按排队截止时间提交，超时的任务以TaskExpiredException结束
     public CompletableFuture<String> asyncMethod2() {
-        log.info("执行异步任务2");
-        try {
-            TimeUnit.SECONDS.sleep(3);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        return CompletableFuture.completedFuture("异步任务2完成");
+        return QueueDeadline.supplyAsync(() -> {
+            log.info("执行异步任务2");
+            try {
+                TimeUnit.SECONDS.sleep(3);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "异步任务2完成";
+        }, customThreadPoolExecutor, sheddingProperties.getMaxQueueTime());
     }
 }
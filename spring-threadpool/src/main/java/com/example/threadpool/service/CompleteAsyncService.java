@@ -1,28 +1,47 @@
 package com.example.threadpool.service;
 
+import com.example.threadpool.shard.FanOutProperties;
+import com.example.threadpool.shard.PartialResult;
+import com.example.threadpool.shard.ShardedQueryEngine;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Recover;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 public class CompleteAsyncService {
 
-    private final ThreadPoolExecutor customThreadPoolExecutor;
-    private final ThreadPoolTaskExecutor threadPoolTaskExecutor;
+    // 分表查询每页读取的行数
+    private static final int SHARD_PAGE_SIZE = 500;
+    // parallelQueryAndSort默认最多返回的行数，要全量结果时用streamQueryAndSort逐行消费
+    private static final int DEFAULT_SORT_LIMIT = 10_000;
+    // 模拟数据：每张表的行数和订单号步长
+    private static final long SIMULATED_ROWS_PER_TABLE = 1_000_000;
+    private static final long SIMULATED_ID_STRIDE = 16;
 
-    public CompleteAsyncService(ThreadPoolExecutor customThreadPoolExecutor,
-                              ThreadPoolTaskExecutor threadPoolTaskExecutor) {
+    // 按Executor注入，平台线程池和虚拟线程模式都适用
+    private final Executor customThreadPoolExecutor;
+    private final Executor threadPoolTaskExecutor;
+    private final ShardedQueryEngine<String> shardedQueryEngine;
+
+    public CompleteAsyncService(@Qualifier("customThreadPoolExecutor") Executor customThreadPoolExecutor,
+                              @Qualifier("threadPoolTaskExecutor") Executor threadPoolTaskExecutor,
+                              FanOutProperties fanOutProperties) {
         this.customThreadPoolExecutor = customThreadPoolExecutor;
         this.threadPoolTaskExecutor = threadPoolTaskExecutor;
+        this.shardedQueryEngine = new ShardedQueryEngine<>(threadPoolTaskExecutor, Comparator.naturalOrder(),
+                SHARD_PAGE_SIZE, fanOutProperties);
     }
 
     @Async("threadPoolTaskExecutor")
@@ -44,44 +63,59 @@ public class CompleteAsyncService {
         return CompletableFuture.completedFuture("恢复后的结果");
     }
 
-    // 分表查询示例 - 最佳实践
+    // 分表查询示例 - 最佳实践：各表分页并行读取，k路归并后按序返回，不等最慢的表读完，也不在内存里排全量。
+    // 只返回合并后的前DEFAULT_SORT_LIMIT行：每张表有上百万行，读全量会超过总超时，结果也放不进一个List
     public List<String> parallelQueryAndSort(List<String> tableNames) {
-        try {
-            // 使用CompletableFuture进行并行查询
-            List<CompletableFuture<List<String>>> futures = tableNames.stream()
-                .map(tableName -> CompletableFuture.supplyAsync(() -> 
-                    queryTable(tableName), threadPoolTaskExecutor))
-                .collect(Collectors.toList());
+        return parallelQueryAndSort(tableNames, DEFAULT_SORT_LIMIT);
+    }
 
-            // 等待所有查询完成
-            CompletableFuture<Void> allOf = CompletableFuture.allOf(
-                futures.toArray(new CompletableFuture[0]));
+    /**
+     * 合并后的前limit行，整体放进List返回；行数较多时用streamQueryAndSort边读边处理，
+     * 接口场景用queryFirstPage（/shards），个别表失败时返回部分结果
+     */
+    public List<String> parallelQueryAndSort(List<String> tableNames, int limit) {
+        try (Stream<String> rows = streamQueryAndSort(tableNames, limit)) {
+            return rows.collect(Collectors.toList());
+        }
+    }
 
-            // 获取并合并结果
-            return allOf.thenApply(v -> futures.stream()
-                .map(CompletableFuture::join)
-                .flatMap(List::stream)
-                .sorted()
-                .collect(Collectors.toList())
-            ).get(30, TimeUnit.SECONDS); // 设置超时时间
+    /**
+     * 按订单号顺序返回各表合并后的前limit行；取够limit行或Stream关闭时取消还没完成的分表查询，
+     * 调用方要用try-with-resources关闭Stream
+     */
+    public Stream<String> streamQueryAndSort(List<String> tableNames, long limit) {
+        return shardedQueryEngine.stream(tableNames, this::queryTable, limit);
+    }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("查询被中断", e);
-        } catch (ExecutionException | TimeoutException e) {
-            throw new RuntimeException("查询执行失败", e);
-        }
+    /**
+     * 取合并后的前limit行；个别表超时或失败时不让整个请求失败，返回其余表的结果并注明缺失的表
+     */
+    public PartialResult<String> queryFirstPage(List<String> tableNames, int limit) {
+        return shardedQueryEngine.query(tableNames, this::queryTable, limit);
     }
 
-    private List<String> queryTable(String tableName) {
-        // 模拟数据库查询
+    // 模拟按订单号游标分页的查询：每张表的订单号按固定步长递增，行格式为"订单号:表名"，按字符串即按订单号排序
+    private List<String> queryTable(String tableName, String after, int limit) {
         try {
-            Thread.sleep(1000);
-            return List.of("Data from " + tableName);
+            // 每张表的响应时间不同，偶尔出现长尾
+            long latency = 50 + Math.floorMod(tableName.hashCode(), 150);
+            if (ThreadLocalRandom.current().nextInt(100) < 3) {
+                latency *= 20;
+            }
+            Thread.sleep(latency);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("查询中断", e);
         }
+        long offset = Math.floorMod(tableName.hashCode(), SIMULATED_ID_STRIDE);
+        long from = after == null ? 0 : (Long.parseLong(after.substring(0, after.indexOf(':'))) - offset)
+                / SIMULATED_ID_STRIDE + 1;
+        long to = Math.min(SIMULATED_ROWS_PER_TABLE, from + limit);
+        List<String> page = new ArrayList<>((int) Math.max(0, to - from));
+        for (long n = from; n < to; n++) {
+            page.add(String.format("%010d:%s", n * SIMULATED_ID_STRIDE + offset, tableName));
+        }
+        return page;
     }
 
     // 展示如何正确处理CompletableFuture的异常
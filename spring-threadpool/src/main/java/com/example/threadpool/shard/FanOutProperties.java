@@ -0,0 +1,26 @@
+package com.example.threadpool.shard;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分片查询的超时与对冲请求配置，前缀 thread-pool.fan-out
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "thread-pool.fan-out")
+public class FanOutProperties {
+    // 单个分片单页查询的超时，只用于允许部分结果的查询
+    private long shardTimeoutMs = 1000;
+    // 整个查询的超时
+    private long totalTimeoutMs = 30000;
+    // 是否开启对冲请求
+    private boolean hedgeEnabled = true;
+    // 分片查询耗时超过该分片最近耗时的这个分位数时，再发一个相同的请求
+    private double hedgePercentile = 95;
+    // 分片至少有这么多耗时样本才对冲
+    private int hedgeMinSamples = 20;
+    // 对冲请求数最多占全部请求的比例，避免下游变慢时请求量翻倍
+    private double maxHedgeRatio = 0.1;
+}
@@ -0,0 +1,146 @@
+package com.example.threadpool.shard;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 一次分片页查询：先发一个请求，等待超过该分片最近耗时的分位数仍未返回时再发一个相同的请求，
+ * 先返回的结果生效，其余请求被取消（中断）。
+ * 每个请求以成功、失败、被取消（包括排队超时被丢弃）或被线程池拒绝之一结束，全部请求都没有成功时才算失败，
+ * 结果为第一个请求失败的原因，都是被取消时为CancellationException
+ */
+class HedgedFetch<T> {
+    private final String shard;
+    private final Callable<List<T>> call;
+    private final Executor executor;
+    private final ShardLatencyTracker tracker;
+    private final long startNanos = System.nanoTime();
+    private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+    // 只包含已成功提交给线程池的请求
+    private final List<FutureTask<List<T>>> attempts = new CopyOnWriteArrayList<>();
+    // 已发出、还没有结束的请求数
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private boolean hedged;
+
+    HedgedFetch(String shard, Callable<List<T>> call, Executor executor, ShardLatencyTracker tracker) {
+        this.shard = shard;
+        this.call = call;
+        this.executor = executor;
+        this.tracker = tracker;
+        tracker.countRequest();
+        launch();
+    }
+
+    /**
+     * 等待结果直到deadlineNanos（System.nanoTime()时间），期间按需发出对冲请求
+     */
+    List<T> await(long deadlineNanos) throws InterruptedException, ExecutionException, TimeoutException {
+        long delay = tracker.hedgeDelayNanos(shard);
+        if (!hedged && delay >= 0 && startNanos + delay < deadlineNanos) {
+            try {
+                return result.get(Math.max(0, startNanos + delay - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (tracker.tryAcquireHedge()) {
+                    hedged = true;
+                    try {
+                        launch();
+                    } catch (RejectedExecutionException rejected) {
+                        // 线程池满了就不对冲，继续等第一个请求
+                    }
+                }
+            }
+        }
+        return result.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    boolean isHedged() {
+        return hedged;
+    }
+
+    /**
+     * 取消所有未完成的请求，返回实际取消的个数
+     */
+    int cancel() {
+        int cancelled = 0;
+        for (FutureTask<List<T>> attempt : attempts) {
+            if (attempt.cancel(true)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    // 先提交再加入列表，被拒绝的请求不会留在列表里
+    private void launch() {
+        Attempt attempt = new Attempt();
+        outstanding.incrementAndGet();
+        try {
+            executor.execute(attempt);
+        } catch (RejectedExecutionException e) {
+            finished(null);
+            throw e;
+        }
+        attempts.add(attempt);
+        // 提交后、加入列表前别的请求可能已经成功，这时它错过了取消
+        if (result.isDone()) {
+            attempt.cancel(true);
+        }
+    }
+
+    // 一个请求结束；失败时记下原因，最后一个结束且没有成功时整体失败
+    private void finished(Throwable failure) {
+        if (failure != null) {
+            firstFailure.compareAndSet(null, failure);
+        }
+        if (outstanding.decrementAndGet() == 0 && !result.isDone()) {
+            Throwable cause = firstFailure.get();
+            result.completeExceptionally(cause != null ? cause : new CancellationException("分片查询被取消"));
+        }
+    }
+
+    private class Attempt extends FutureTask<List<T>> {
+
+        Attempt() {
+            super(call);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                // 取消不是失败原因，别的请求真正失败时以它为准
+                finished(null);
+                return;
+            }
+            List<T> rows;
+            try {
+                rows = get();
+            } catch (ExecutionException e) {
+                finished(e.getCause());
+                return;
+            } catch (InterruptedException e) {
+                // 任务已结束，get()不会阻塞
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (result.complete(rows)) {
+                // 从发出请求算起（含排队），和对冲等待时间的口径一致
+                tracker.record(shard, System.nanoTime() - startNanos);
+                // 输掉的请求不再需要，自己已经结束，取消不会生效
+                HedgedFetch.this.cancel();
+            }
+            finished(null);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.threadpool.shard;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 允许部分分片缺失的查询结果：rows只包含成功的分片，missingShards是缺失的分片及原因
+ */
+@Getter
+public class PartialResult<T> {
+    private final List<T> rows;
+    private final Map<String, String> missingShards;
+    // 本次查询发出的对冲请求数
+    private final int hedgedRequests;
+
+    public PartialResult(List<T> rows, Map<String, String> missingShards, int hedgedRequests) {
+        this.rows = rows;
+        this.missingShards = missingShards;
+        this.hedgedRequests = hedgedRequests;
+    }
+
+    public boolean isComplete() {
+        return missingShards.isEmpty();
+    }
+}
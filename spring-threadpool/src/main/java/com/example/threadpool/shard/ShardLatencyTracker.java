@@ -0,0 +1,86 @@
+package com.example.threadpool.shard;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 记录各分片最近的查询耗时，算出对冲请求的等待时间，并控制对冲请求的总比例
+ */
+class ShardLatencyTracker {
+    // 每个分片保留最近多少个样本
+    private static final int WINDOW = 128;
+
+    private final FanOutProperties properties;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+
+    ShardLatencyTracker(FanOutProperties properties) {
+        this.properties = properties;
+    }
+
+    void record(String shard, long nanos) {
+        windows.computeIfAbsent(shard, k -> new Window()).add(nanos);
+    }
+
+    void countRequest() {
+        requests.incrementAndGet();
+    }
+
+    /**
+     * 发出请求后等待多久还没返回就对冲；未开启或样本不足时返回-1
+     */
+    long hedgeDelayNanos(String shard) {
+        if (!properties.isHedgeEnabled()) {
+            return -1;
+        }
+        Window window = windows.get(shard);
+        return window == null ? -1 : window.percentile(properties.getHedgePercentile(), properties.getHedgeMinSamples());
+    }
+
+    // 超出比例时不再对冲
+    boolean tryAcquireHedge() {
+        long limit = (long) (requests.get() * properties.getMaxHedgeRatio());
+        while (true) {
+            long current = hedges.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (hedges.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getHedges() {
+        return hedges.get();
+    }
+
+    private static class Window {
+        private final long[] samples = new long[WINDOW];
+        private int size;
+        private int next;
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % WINDOW;
+            size = Math.min(size + 1, WINDOW);
+        }
+
+        synchronized long percentile(double percentile, int minSamples) {
+            if (size < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(size * percentile / 100) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
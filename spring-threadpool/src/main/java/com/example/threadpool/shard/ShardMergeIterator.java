@@ -0,0 +1,248 @@
+package com.example.threadpool.shard;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 多个有序分片的k路归并。
+ * 每个分片只缓存当前页，并在拿到一页后立即预取下一页；小顶堆按各分片的当前行排序，
+ * 每次取出最小的一行。输出满limit行、调用方提前close()或出错时，取消还在进行中的分片查询。
+ * allowPartial时每页查询有单独的超时（从发出请求算起），失败、超时或被线程池拒绝的分片记为缺失，其余分片继续归并；
+ * 否则只受整个查询的超时限制
+ */
+@Slf4j
+public class ShardMergeIterator<T> implements Iterator<T>, AutoCloseable {
+
+    private final Executor executor;
+    private final ShardLatencyTracker tracker;
+    private final Comparator<? super T> comparator;
+    private final ShardPageFetcher<T> fetcher;
+    private final int pageSize;
+    private final long limit;
+    private final long shardTimeoutNanos;
+    private final long deadlineNanos;
+    private final boolean allowPartial;
+    private final List<ShardCursor<T>> cursors = new ArrayList<>();
+    private final PriorityQueue<ShardCursor<T>> heap;
+    private final Map<String, String> missingShards = new LinkedHashMap<>();
+    private boolean started;
+    private boolean closed;
+    private long emitted;
+    private int hedgedRequests;
+
+    ShardMergeIterator(Executor executor, ShardLatencyTracker tracker, Comparator<? super T> comparator,
+                       ShardPageFetcher<T> fetcher, List<String> shards, int pageSize, long limit,
+                       long shardTimeoutNanos, long totalTimeoutNanos, boolean allowPartial) {
+        this.executor = executor;
+        this.tracker = tracker;
+        this.comparator = comparator;
+        this.fetcher = fetcher;
+        this.pageSize = pageSize;
+        this.limit = limit;
+        this.shardTimeoutNanos = shardTimeoutNanos;
+        this.deadlineNanos = System.nanoTime() + totalTimeoutNanos;
+        this.allowPartial = allowPartial;
+        // 当前行相同时按分片顺序，保证结果稳定
+        this.heap = new PriorityQueue<>(Math.max(1, shards.size()),
+                Comparator.<ShardCursor<T>, T>comparing(c -> c.buffer.peek(), comparator)
+                        .thenComparingInt(c -> c.index));
+        for (int i = 0; i < shards.size(); i++) {
+            cursors.add(new ShardCursor<>(i, shards.get(i)));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!started) {
+            start();
+        }
+        if (closed || emitted >= limit || heap.isEmpty()) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ShardCursor<T> cursor = heap.poll();
+        T row = cursor.buffer.poll();
+        emitted++;
+        if (cursor.buffer.isEmpty() && !cursor.exhausted) {
+            // 这个分片的下一行可能比其它分片的都小，必须等它的下一页
+            await(cursor);
+        }
+        if (!cursor.buffer.isEmpty()) {
+            heap.add(cursor);
+        }
+        if (emitted >= limit) {
+            close();
+        }
+        return row;
+    }
+
+    /**
+     * 取消所有未完成的分片查询并释放缓存的行，可重复调用
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        int cancelled = 0;
+        for (ShardCursor<T> cursor : cursors) {
+            if (cursor.pending != null) {
+                cancelled += cursor.pending.cancel();
+            }
+            cursor.pending = null;
+            cursor.buffer.clear();
+        }
+        heap.clear();
+        log.debug("分片归并结束，输出 {} 行，取消 {} 个分片查询，对冲 {} 次，缺失分片 {}", emitted, cancelled,
+                hedgedRequests, missingShards.keySet());
+    }
+
+    /**
+     * 失败或超时的分片及原因，只在allowPartial时会有内容
+     */
+    public Map<String, String> getMissingShards() {
+        return missingShards;
+    }
+
+    public int getHedgedRequests() {
+        return hedgedRequests;
+    }
+
+    private void start() {
+        started = true;
+        try {
+            for (ShardCursor<T> cursor : cursors) {
+                try {
+                    fetchNext(cursor);
+                } catch (RejectedExecutionException e) {
+                    // 不允许部分结果时原样抛出，保留限流的429
+                    if (!allowPartial) {
+                        throw e;
+                    }
+                    fail(cursor, "查询被线程池拒绝", e);
+                }
+            }
+        } catch (RuntimeException e) {
+            // 出错时已经发出的分片查询也要取消
+            close();
+            throw e;
+        }
+        // 第一行要等所有分片的首页到齐，但不用等任何分片读完
+        for (ShardCursor<T> cursor : cursors) {
+            if (cursor.pending != null) {
+                await(cursor);
+            }
+            if (!cursor.buffer.isEmpty()) {
+                heap.add(cursor);
+            }
+        }
+    }
+
+    // 每个分片最多只需要limit行，超出的部分不再请求
+    private void fetchNext(ShardCursor<T> cursor) {
+        int want = (int) Math.min(pageSize, limit - cursor.fetched);
+        if (want <= 0) {
+            cursor.exhausted = true;
+            return;
+        }
+        T after = cursor.last;
+        cursor.requested = want;
+        cursor.pending = new HedgedFetch<>(cursor.shard, () -> fetcher.fetch(cursor.shard, after, want),
+                executor, tracker);
+        // 不允许部分结果时放弃一个慢分片就等于整个查询失败，不如等到总超时，慢请求交给对冲处理
+        cursor.pageDeadlineNanos = allowPartial
+                ? Math.min(deadlineNanos, System.nanoTime() + shardTimeoutNanos) : deadlineNanos;
+    }
+
+    private void await(ShardCursor<T> cursor) {
+        HedgedFetch<T> fetch = cursor.pending;
+        List<T> page;
+        try {
+            page = fetch.await(cursor.pageDeadlineNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RuntimeException("查询被中断", e);
+        } catch (ExecutionException | CancellationException e) {
+            fail(cursor, "查询失败: " + (e.getCause() != null ? e.getCause() : e), e);
+            return;
+        } catch (TimeoutException e) {
+            fail(cursor, "查询超时", e);
+            return;
+        } finally {
+            if (fetch.isHedged()) {
+                hedgedRequests++;
+            }
+        }
+        cursor.pending = null;
+        cursor.buffer.addAll(page);
+        cursor.fetched += page.size();
+        if (!page.isEmpty()) {
+            cursor.last = page.get(page.size() - 1);
+        }
+        if (page.size() < cursor.requested) {
+            cursor.exhausted = true;
+        } else {
+            try {
+                fetchNext(cursor);
+            } catch (RejectedExecutionException e) {
+                fail(cursor, "查询被线程池拒绝", e);
+            }
+        }
+    }
+
+    // 分片已输出的行仍然有效，缺失的是它之后的部分
+    private void fail(ShardCursor<T> cursor, String reason, Exception e) {
+        if (!allowPartial) {
+            close();
+            throw new RuntimeException("分片 " + cursor.shard + " " + reason, e);
+        }
+        if (cursor.pending != null) {
+            cursor.pending.cancel();
+            cursor.pending = null;
+        }
+        cursor.exhausted = true;
+        missingShards.put(cursor.shard, reason);
+        log.warn("分片 {} {}，返回部分结果", cursor.shard, reason);
+    }
+
+    private static class ShardCursor<T> {
+        final int index;
+        final String shard;
+        final ArrayDeque<T> buffer = new ArrayDeque<>();
+        HedgedFetch<T> pending;
+        long pageDeadlineNanos;
+        int requested;
+        long fetched;
+        T last;
+        boolean exhausted;
+
+        ShardCursor(int index, String shard) {
+            this.index = index;
+            this.shard = shard;
+        }
+    }
+}
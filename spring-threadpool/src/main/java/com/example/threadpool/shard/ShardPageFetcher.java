@@ -0,0 +1,17 @@
+package com.example.threadpool.shard;
+
+import java.util.List;
+
+/**
+ * 按游标分页读取单个分片，返回的行必须已按合并使用的比较器升序排列
+ */
+@FunctionalInterface
+public interface ShardPageFetcher<T> {
+
+    /**
+     * @param shard 分片（表）名
+     * @param after 上一页的最后一行，首页为null；只返回排在它之后的行
+     * @param limit 最多返回的行数，返回不足limit行表示分片已读完
+     */
+    List<T> fetch(String shard, T after, int limit) throws Exception;
+}
@@ -0,0 +1,81 @@
+package com.example.threadpool.shard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 分片查询：在线程池上分页并行读取各分片，按比较器做k路归并后以迭代器或Stream逐行返回，
+ * 内存只与分片数×页大小有关，与总行数无关。
+ * 慢于该分片近期耗时分位数时发对冲请求；query()允许分片缺失并返回部分结果，每页查询有单独的超时，
+ * iterator()和stream()只受整个查询的超时限制
+ */
+public class ShardedQueryEngine<T> {
+
+    // 不限制行数
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final Executor executor;
+    private final Comparator<? super T> comparator;
+    private final int pageSize;
+    private final FanOutProperties properties;
+    private final ShardLatencyTracker tracker;
+
+    public ShardedQueryEngine(Executor executor, Comparator<? super T> comparator, int pageSize,
+                              FanOutProperties properties) {
+        this.executor = executor;
+        this.comparator = comparator;
+        this.pageSize = pageSize;
+        this.properties = properties;
+        this.tracker = new ShardLatencyTracker(properties);
+    }
+
+    /**
+     * 返回前limit行的迭代器，任一分片失败或超时即抛出异常；没读完就不用了要调用close()，取消后台的分片查询
+     */
+    public ShardMergeIterator<T> iterator(List<String> shards, ShardPageFetcher<T> fetcher, long limit) {
+        return newIterator(shards, fetcher, limit, false);
+    }
+
+    /**
+     * 同iterator()，以Stream返回；Stream关闭时取消后台的分片查询，应放在try-with-resources里使用
+     */
+    public Stream<T> stream(List<String> shards, ShardPageFetcher<T> fetcher, long limit) {
+        ShardMergeIterator<T> iterator = iterator(shards, fetcher, limit);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+    }
+
+    /**
+     * 取前limit行，失败或超时的分片跳过，结果中注明缺失的分片
+     */
+    public PartialResult<T> query(List<String> shards, ShardPageFetcher<T> fetcher, long limit) {
+        List<T> rows = new ArrayList<>();
+        try (ShardMergeIterator<T> iterator = newIterator(shards, fetcher, limit, true)) {
+            iterator.forEachRemaining(rows::add);
+            return new PartialResult<>(rows, iterator.getMissingShards(), iterator.getHedgedRequests());
+        }
+    }
+
+    // 累计的分片请求数和对冲请求数
+    public long getRequests() {
+        return tracker.getRequests();
+    }
+
+    public long getHedges() {
+        return tracker.getHedges();
+    }
+
+    private ShardMergeIterator<T> newIterator(List<String> shards, ShardPageFetcher<T> fetcher, long limit,
+                                              boolean allowPartial) {
+        return new ShardMergeIterator<>(executor, tracker, comparator, fetcher, shards, pageSize, limit,
+                TimeUnit.MILLISECONDS.toNanos(properties.getShardTimeoutMs()),
+                TimeUnit.MILLISECONDS.toNanos(properties.getTotalTimeoutMs()), allowPartial);
+    }
+}
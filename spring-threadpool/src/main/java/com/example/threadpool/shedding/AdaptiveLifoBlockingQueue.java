@@ -0,0 +1,54 @@
+package com.example.threadpool.shedding;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 积压时后进先出的有界队列：平时按提交顺序取任务；队列占用超过一定比例时改为先取最新的任务，
+ * 最新的请求调用方最可能还在等待，积压在队头的旧任务多半已经超时，留给截止时间检查丢弃。
+ * 不能丢弃的任务（普通Runnable等）排在队头时会被一直跳过，所以积压期间每连续取maxLifoRun个最新任务后
+ * 从队头取一个，队头的任务不会无限期饿死；超时的队头任务取出后直接丢弃，代价很小
+ */
+public class AdaptiveLifoBlockingQueue<E> extends LinkedBlockingDeque<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int pressureThreshold;
+    private final int maxLifoRun;
+    // 积压期间连续从队尾取出的个数
+    private final AtomicInteger lifoRun = new AtomicInteger();
+
+    public AdaptiveLifoBlockingQueue(int capacity, double pressureRatio, int maxLifoRun) {
+        super(capacity);
+        this.pressureThreshold = Math.max(1, (int) (capacity * pressureRatio));
+        this.maxLifoRun = Math.max(1, maxLifoRun);
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return takeLifo() ? takeLast() : takeFirst();
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return takeLifo() ? pollLast(timeout, unit) : pollFirst(timeout, unit);
+    }
+
+    @Override
+    public E poll() {
+        return takeLifo() ? pollLast() : pollFirst();
+    }
+
+    private boolean takeLifo() {
+        if (size() < pressureThreshold) {
+            lifoRun.set(0);
+            return false;
+        }
+        if (lifoRun.incrementAndGet() > maxLifoRun) {
+            lifoRun.set(0);
+            return false;
+        }
+        return true;
+    }
+}
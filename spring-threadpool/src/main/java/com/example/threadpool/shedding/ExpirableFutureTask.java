@@ -0,0 +1,49 @@
+package com.example.threadpool.shedding;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 可以在执行前以TaskExpiredException结束的FutureTask，同时提供对应的CompletableFuture
+ */
+public class ExpirableFutureTask<T> extends FutureTask<T> {
+
+    private final CompletableFuture<T> completion = new CompletableFuture<>();
+
+    public ExpirableFutureTask(Callable<T> callable) {
+        super(callable);
+    }
+
+    public ExpirableFutureTask(Runnable runnable, T result) {
+        super(runnable, result);
+    }
+
+    /**
+     * 不执行任务，直接以异常结束
+     */
+    public void expire(TaskExpiredException e) {
+        setException(e);
+    }
+
+    public CompletableFuture<T> toCompletableFuture() {
+        return completion;
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            completion.cancel(false);
+            return;
+        }
+        try {
+            completion.complete(get());
+        } catch (ExecutionException e) {
+            completion.completeExceptionally(e.getCause());
+        } catch (InterruptedException e) {
+            // 任务已结束，get()不会阻塞
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.threadpool.shedding;
+
+import com.example.threadpool.metrics.TimedThreadPoolExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 带排队截止时间的CompletableFuture.supplyAsync。
+ * supplyAsync和返回CompletableFuture的@Async方法提交的任务，线程池拿不到对应的Future，无法替它们丢弃；
+ * 这里的任务在TimedThreadPoolExecutor上走submit(Callable, Duration)，由线程池丢弃并计入shed，
+ * 其它执行器（如虚拟线程模式）上在任务开始时检查等待了多久，超时直接以TaskExpiredException结束
+ */
+public final class QueueDeadline {
+
+    private QueueDeadline() {
+    }
+
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor,
+                                                       Duration maxQueueTime) {
+        if (maxQueueTime == null || maxQueueTime.isZero()) {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        }
+        if (executor instanceof TimedThreadPoolExecutor) {
+            return ((TimedThreadPoolExecutor) executor).submit(supplier::get, maxQueueTime);
+        }
+        return CompletableFuture.supplyAsync(withDeadline(supplier, maxQueueTime), executor);
+    }
+
+    /**
+     * 从调用时开始计时，执行时已超过maxQueueTime则不调用supplier，抛出TaskExpiredException
+     */
+    public static <T> Supplier<T> withDeadline(Supplier<T> supplier, Duration maxQueueTime) {
+        long submitted = System.nanoTime();
+        long maxQueueNanos = maxQueueTime.toNanos();
+        return () -> {
+            long waited = System.nanoTime() - submitted;
+            if (waited > maxQueueNanos) {
+                throw new TaskExpiredException(waited / 1_000_000);
+            }
+            return supplier.get();
+        };
+    }
+}
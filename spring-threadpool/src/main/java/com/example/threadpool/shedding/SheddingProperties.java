@@ -0,0 +1,39 @@
+package com.example.threadpool.shedding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 有界线程池的排队超时与丢弃配置，前缀 thread-pool.shedding
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "thread-pool.shedding")
+public class SheddingProperties {
+    // 任务默认最多排队多久，超过后不再执行；0表示不限制
+    private long maxQueueTimeMs = 5000;
+    // 队列积压时改为后进先出，优先处理调用方还在等的新任务
+    private boolean lifoUnderPressure = true;
+    // 队列占用超过容量的这个比例视为积压
+    private double lifoPressureRatio = 0.5;
+    // 积压期间最多连续取这么多个最新任务，之后从队头取一个，避免队头不能丢弃的任务饿死
+    private int lifoMaxRun = 8;
+
+    public Duration getMaxQueueTime() {
+        return Duration.ofMillis(maxQueueTimeMs);
+    }
+
+    /**
+     * 按配置创建有界任务队列
+     */
+    public BlockingQueue<Runnable> newQueue(int capacity) {
+        return lifoUnderPressure
+                ? new AdaptiveLifoBlockingQueue<>(capacity, lifoPressureRatio, lifoMaxRun)
+                : new LinkedBlockingQueue<>(capacity);
+    }
+}
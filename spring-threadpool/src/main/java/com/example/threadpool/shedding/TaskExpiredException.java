@@ -0,0 +1,20 @@
+package com.example.threadpool.shedding;
+
+/**
+ * 任务排队超过了截止时间，没有执行就被丢弃
+ */
+public class TaskExpiredException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long queuedMillis;
+
+    public TaskExpiredException(long queuedMillis) {
+        super("任务排队 " + queuedMillis + " ms，已超过截止时间");
+        this.queuedMillis = queuedMillis;
+    }
+
+    public long getQueuedMillis() {
+        return queuedMillis;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.threadpool.virtual;
+
+import com.example.threadpool.metrics.ExecutorGauges;
+import com.example.threadpool.metrics.ExecutorMetrics;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个任务一个虚拟线程，用信号量限制同时执行的任务数。
+ * 虚拟线程阻塞在I/O上几乎不占资源，不需要池化；但下游（数据库、远程服务）承受不了无限并发，
+ * 所以并发上限由信号量控制：拿不到许可的任务在自己的虚拟线程里等待，相当于线程池的队列，
+ * 等待的任务数超过maxPending时拒绝提交
+ */
+public class BoundedVirtualThreadExecutor implements TaskExecutor, ExecutorGauges {
+
+    private final ThreadFactory threadFactory;
+    private final int maxConcurrency;
+    private final int maxPending;
+    private final Semaphore permits;
+    private final ExecutorMetrics metrics;
+    // 已提交、尚未结束的任务数（包括等待许可的）
+    private final AtomicInteger live = new AtomicInteger();
+    private final AtomicInteger peakLive = new AtomicInteger();
+
+    public BoundedVirtualThreadExecutor(String threadNamePrefix, int maxConcurrency, int maxPending,
+                                        ExecutorMetrics metrics) {
+        this.threadFactory = VirtualThreads.factory(threadNamePrefix);
+        this.maxConcurrency = maxConcurrency;
+        this.maxPending = maxPending;
+        this.permits = new Semaphore(maxConcurrency);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        int current = live.incrementAndGet();
+        if (current - maxConcurrency > maxPending) {
+            live.decrementAndGet();
+            metrics.recordRejected();
+            throw new TaskRejectedException("虚拟线程执行器等待的任务数已达上限 " + maxPending);
+        }
+        peakLive.accumulateAndGet(current, Math::max);
+        Runnable timed = metrics.wrap(task);
+        threadFactory.newThread(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                live.decrementAndGet();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                timed.run();
+            } finally {
+                permits.release();
+                live.decrementAndGet();
+            }
+        }).start();
+    }
+
+    public ExecutorMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public int getMaxPoolSize() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public int getPoolSize() {
+        return live.get();
+    }
+
+    @Override
+    public int getLargestPoolSize() {
+        return peakLive.get();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return maxPending;
+    }
+}
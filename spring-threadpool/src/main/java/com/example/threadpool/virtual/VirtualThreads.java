@@ -0,0 +1,51 @@
+package com.example.threadpool.virtual;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程（JDK 21）的入口。主代码仍按Java 11编译，所以通过反射调用Thread.ofVirtual()，
+ * 在低版本JDK上运行时isSupported()返回false
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 创建虚拟线程的工厂，线程名为 prefix + 递增序号
+     */
+    public static ThreadFactory factory(String namePrefix) {
+        if (!isSupported()) {
+            throw new IllegalStateException("thread-pool.mode=virtual 需要JDK 21及以上，当前为 "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("创建虚拟线程工厂失败", e);
+        }
+    }
+
+    /**
+     * 每个任务一个虚拟线程、不限并发的执行器，用于Tomcat处理请求（并发由连接数限制）
+     */
+    public static Executor perTaskExecutor(String namePrefix) {
+        ThreadFactory factory = factory(namePrefix);
+        return task -> factory.newThread(task).start();
+    }
+}